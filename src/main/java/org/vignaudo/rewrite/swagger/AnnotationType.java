@@ -0,0 +1,64 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.AnnotationMatcher;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.TypeUtils;
+
+/**
+ * Immutable matcher on the type of an annotation only.
+ *
+ * <p>
+ * Unlike {@link AnnotationMatcher}, which keeps a parsed signature tree, it
+ * only holds a name and is therefore safe to share as a constant between
+ * visitors running on different threads.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+final class AnnotationType {
+	private final String fullyQualifiedName;
+
+	/**
+	 * @param signature Fully qualified name, with or without a leading {@code @}.
+	 */
+	AnnotationType(final String signature) {
+		this.fullyQualifiedName = signature.startsWith("@") ? signature.substring(1) : signature;
+	}
+
+	boolean matches(@Nullable final J.Annotation annotation) {
+		return annotation != null && TypeUtils.isOfClassType(annotation.getType(), fullyQualifiedName);
+	}
+
+	String getFullyQualifiedName() {
+		return fullyQualifiedName;
+	}
+
+	/**
+	 * A fresh {@link AnnotationMatcher} for APIs requiring one; never share it.
+	 */
+	AnnotationMatcher toMatcher() {
+		return new AnnotationMatcher("@" + fullyQualifiedName);
+	}
+
+	@Override
+	public String toString() {
+		return "@" + fullyQualifiedName;
+	}
+}
@@ -0,0 +1,163 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.Expression;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.java.tree.TypeUtils;
+
+/**
+ * Read-only helpers extracting constant values from annotation arguments.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+final class AnnotationValues {
+
+	private AnnotationValues() {
+		// Nothing.
+	}
+
+	static boolean is(final J.Annotation ann, final String simpleName, final String... packages) {
+		if (!simpleName.equals(ann.getSimpleName())) {
+			return false;
+		}
+		final JavaType.FullyQualified type = TypeUtils.asFullyQualified(ann.getType());
+		if (type == null) {
+			return true;
+		}
+		for (final String pkg : packages) {
+			if (type.getFullyQualifiedName().equals(pkg + "." + simpleName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static Optional<J.Annotation> find(final List<J.Annotation> annotations, final String simpleName, final String... packages) {
+		return annotations.stream().filter(x -> is(x, simpleName, packages)).findFirst();
+	}
+
+	static Map<String, Expression> attributes(final J.Annotation ann) {
+		final Map<String, Expression> ret = new LinkedHashMap<>();
+		if (ann.getArguments() == null) {
+			return ret;
+		}
+		for (final Expression expression : ann.getArguments()) {
+			if (expression instanceof final J.Assignment ass && ass.getVariable() instanceof final J.Identifier id) {
+				ret.put(id.getSimpleName(), ass.getAssignment());
+			} else if (!(expression instanceof J.Empty)) {
+				ret.put("value", expression);
+			}
+		}
+		return ret;
+	}
+
+	@Nullable
+	static String string(@Nullable final Expression expression) {
+		if (expression instanceof final J.Literal lit) {
+			return lit.getValue() == null ? null : String.valueOf(lit.getValue());
+		}
+		if (expression instanceof final J.Binary bin && bin.getOperator() == J.Binary.Type.Addition) {
+			final String left = string(bin.getLeft());
+			final String right = string(bin.getRight());
+			return left == null || right == null ? null : left + right;
+		}
+		if (expression instanceof final J.Parentheses<?> parentheses && parentheses.getTree() instanceof final Expression inner) {
+			return string(inner);
+		}
+		return null;
+	}
+
+	static List<String> strings(@Nullable final Expression expression) {
+		if (expression instanceof final J.NewArray array) {
+			return array.getInitializer() == null ? List.of()
+					: array.getInitializer().stream().map(AnnotationValues::string).filter(x -> x != null).toList();
+		}
+		final String value = string(expression);
+		return value == null ? List.of() : List.of(value);
+	}
+
+	@Nullable
+	static Boolean bool(@Nullable final Expression expression) {
+		if (expression instanceof final J.Literal lit && lit.getValue() instanceof final Boolean b) {
+			return b;
+		}
+		return null;
+	}
+
+	@Nullable
+	static String enumName(@Nullable final Expression expression) {
+		if (expression instanceof final J.FieldAccess fa) {
+			return fa.getSimpleName();
+		}
+		if (expression instanceof final J.Identifier id) {
+			return id.getSimpleName();
+		}
+		if (expression instanceof final J.Literal lit && lit.getValue() != null) {
+			return String.valueOf(lit.getValue());
+		}
+		return null;
+	}
+
+	static List<String> enumNames(@Nullable final Expression expression) {
+		if (expression instanceof final J.NewArray array) {
+			return array.getInitializer() == null ? List.of()
+					: array.getInitializer().stream().map(AnnotationValues::enumName).filter(x -> x != null).toList();
+		}
+		final String value = enumName(expression);
+		return value == null ? List.of() : List.of(value);
+	}
+
+	@Nullable
+	static String className(@Nullable final Expression expression) {
+		if (expression instanceof final J.FieldAccess fa && "class".equals(fa.getSimpleName())) {
+			final JavaType.FullyQualified type = TypeUtils.asFullyQualified(fa.getTarget().getType());
+			if (type != null) {
+				return type.getFullyQualifiedName();
+			}
+			if (fa.getTarget() instanceof final J.Identifier id) {
+				return id.getSimpleName();
+			}
+			if (fa.getTarget() instanceof final J.FieldAccess target) {
+				return target.getSimpleName();
+			}
+		}
+		return null;
+	}
+
+	@Nullable
+	static J.Annotation annotation(@Nullable final Expression expression) {
+		return expression instanceof final J.Annotation ann ? ann : null;
+	}
+
+	static List<J.Annotation> annotations(@Nullable final Expression expression) {
+		if (expression instanceof final J.NewArray array) {
+			return array.getInitializer() == null ? List.of()
+					: array.getInitializer().stream().filter(J.Annotation.class::isInstance).map(J.Annotation.class::cast).toList();
+		}
+		final J.Annotation ann = annotation(expression);
+		return ann == null ? List.of() : List.of(ann);
+	}
+}
@@ -0,0 +1,249 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.vignaudo.rewrite.swagger.AnnotationValues.attributes;
+import static org.vignaudo.rewrite.swagger.AnnotationValues.bool;
+import static org.vignaudo.rewrite.swagger.AnnotationValues.string;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Tree;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.Expression;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.java.tree.Statement;
+import org.openrewrite.java.tree.TypeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the {@code @ApiModel} classes of a run, built once during the
+ * scanning phase and shared through the {@link ExecutionContext} so that every
+ * recipe of the composite resolves model names in constant time.
+ *
+ * <p>
+ * Only names and attribute values are kept, never trees, so the index stays
+ * small even for very large code bases.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+public final class ApiModelIndex {
+	private static final Logger LOG = LoggerFactory.getLogger(ApiModelIndex.class);
+	private static final String KEY = ApiModelIndex.class.getName();
+	private static final String[] SW2 = { "io.swagger.annotations" };
+
+	private final Map<String, Model> models = new ConcurrentHashMap<>();
+	/** Fully qualified names by simple and {@code @ApiModel(value)} name. */
+	private final Map<String, Set<String>> names = new ConcurrentHashMap<>();
+	private final Set<Path> indexed = ConcurrentHashMap.newKeySet();
+
+	public static ApiModelIndex get(final ExecutionContext ctx) {
+		return ContextMessages.computeIfAbsent(ctx, KEY, ApiModelIndex::new);
+	}
+
+	/**
+	 * Index the models declared in {@code cu}; a unit is only indexed once per
+	 * run even when several recipes scan it.
+	 */
+	public void index(final J.CompilationUnit cu) {
+		if (indexed.add(cu.getSourcePath())) {
+			new Indexer().visit(cu, this);
+		}
+	}
+
+	/**
+	 * Scanning visitor feeding this index, shared by the recipes of the
+	 * composite.
+	 */
+	public TreeVisitor<?, ExecutionContext> scanner() {
+		return new TreeVisitor<Tree, ExecutionContext>() {
+			@Override
+			public @Nullable Tree visit(@Nullable final Tree tree, final ExecutionContext ctx) {
+				if (tree instanceof final J.CompilationUnit cu) {
+					index(cu);
+				}
+				return tree;
+			}
+		};
+	}
+
+	void put(final Model model) {
+		models.put(model.fqn(), model);
+		names.computeIfAbsent(model.simpleName(), x -> new ConcurrentSkipListSet<>()).add(model.fqn());
+		if (model.name() != null) {
+			names.computeIfAbsent(model.name(), x -> new ConcurrentSkipListSet<>()).add(model.fqn());
+		}
+	}
+
+	/**
+	 * Find a model by fully qualified name, or by simple or
+	 * {@code @ApiModel(value)} name when only one model has it.
+	 */
+	public Optional<Model> find(final String name) {
+		return find(name, null);
+	}
+
+	/**
+	 * Find a model by fully qualified name, simple name or
+	 * {@code @ApiModel(value)} name; a name shared by several models is
+	 * resolved through the imports and the package of {@code unit}, and left
+	 * unresolved when they do not tell the models apart. The answer never
+	 * depends on the order in which the units were scanned.
+	 */
+	public Optional<Model> find(final String name, @Nullable final J.CompilationUnit unit) {
+		final Model model = models.get(name);
+		if (model != null) {
+			return Optional.of(model);
+		}
+		final Set<String> candidates = names.getOrDefault(name, Set.of());
+		if (candidates.size() == 1) {
+			return Optional.ofNullable(models.get(candidates.iterator().next()));
+		}
+		if (candidates.isEmpty() || unit == null) {
+			return Optional.empty();
+		}
+		final Optional<Model> ret = resolve(candidates, unit);
+		if (ret.isEmpty()) {
+			LOG.debug("Model name {} is ambiguous in {}: {}.", name, unit.getSourcePath(), candidates);
+		}
+		return ret;
+	}
+
+	/**
+	 * The only candidate imported by name, else the only one in the package of
+	 * {@code unit}, else the only one imported on demand.
+	 */
+	private Optional<Model> resolve(final Set<String> candidates, final J.CompilationUnit unit) {
+		final List<String> imported = new ArrayList<>();
+		final List<String> onDemand = new ArrayList<>();
+		for (final J.Import imp : unit.getImports()) {
+			if (imp.isStatic()) {
+				continue;
+			}
+			final String typeName = imp.getTypeName();
+			if (candidates.contains(typeName)) {
+				imported.add(typeName);
+			} else if ("*".equals(imp.getQualid().getSimpleName())) {
+				candidates.stream().filter(x -> imp.getPackageName().equals(packageOf(x))).forEach(onDemand::add);
+			}
+		}
+		if (imported.size() == 1) {
+			return Optional.ofNullable(models.get(imported.get(0)));
+		}
+		final String pkg = unit.getPackageDeclaration() == null ? "" : unit.getPackageDeclaration().getExpression().printTrimmed();
+		final List<String> local = candidates.stream().filter(x -> pkg.equals(packageOf(x))).toList();
+		if (local.size() == 1) {
+			return Optional.ofNullable(models.get(local.get(0)));
+		}
+		if (imported.isEmpty() && local.isEmpty() && onDemand.size() == 1) {
+			return Optional.ofNullable(models.get(onDemand.get(0)));
+		}
+		return Optional.empty();
+	}
+
+	private static String packageOf(final String fqn) {
+		final int dot = fqn.lastIndexOf('.');
+		return dot < 0 ? "" : fqn.substring(0, dot);
+	}
+
+	public int size() {
+		return models.size();
+	}
+
+	public record Model(String fqn, String simpleName, @Nullable String name, Property[] properties) {
+		public Optional<Property> property(final String propertyName) {
+			for (final Property property : properties) {
+				if (property.name().equals(propertyName)) {
+					return Optional.of(property);
+				}
+			}
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * @param type Fully qualified name of the declared type, or its element type
+	 *             for arrays and collections.
+	 */
+	public record Property(String name, String type, boolean container, @Nullable String dataType, boolean required) {
+		//
+	}
+
+	private static class Indexer extends DeclarationVisitor<ApiModelIndex> {
+		@Override
+		public J.ClassDeclaration visitClassDeclaration(final J.ClassDeclaration classDecl, final ApiModelIndex index) {
+			AnnotationValues.find(classDecl.getLeadingAnnotations(), "ApiModel", SW2).ifPresent(x -> index.put(model(classDecl, x)));
+			return super.visitClassDeclaration(classDecl, index);
+		}
+
+		private static Model model(final J.ClassDeclaration classDecl, final J.Annotation apiModel) {
+			final Map<String, Expression> attrs = attributes(apiModel);
+			final String fqn = Optional.ofNullable(classDecl.getType())
+					.map(JavaType.FullyQualified::getFullyQualifiedName)
+					.orElse(classDecl.getSimpleName());
+			final String name = string(attrs.get("value"));
+			final List<Property> properties = new ArrayList<>();
+			for (final Statement statement : classDecl.getBody().getStatements()) {
+				if (statement instanceof final J.VariableDeclarations vd && !vd.hasModifier(J.Modifier.Type.Static)) {
+					final Map<String, Expression> prop = AnnotationValues.find(vd.getLeadingAnnotations(), "ApiModelProperty", SW2).map(AnnotationValues::attributes).orElseGet(Map::of);
+					for (final J.VariableDeclarations.NamedVariable variable : vd.getVariables()) {
+						properties.add(property(variable.getSimpleName(), vd.getType(), prop));
+					}
+				}
+			}
+			return new Model(fqn.intern(), classDecl.getSimpleName().intern(), name == null || name.isEmpty() ? null : name,
+					properties.toArray(Property[]::new));
+		}
+
+		private static Property property(final String name, @Nullable final JavaType type, final Map<String, Expression> attrs) {
+			JavaType element = type;
+			boolean container = false;
+			if (type instanceof final JavaType.Array array) {
+				element = array.getElemType();
+				container = true;
+			} else if (type instanceof final JavaType.Parameterized parameterized
+					&& TypeUtils.isAssignableTo("java.util.Collection", parameterized)
+					&& !parameterized.getTypeParameters().isEmpty()) {
+				element = parameterized.getTypeParameters().get(0);
+				container = true;
+			}
+			final JavaType.FullyQualified fq = TypeUtils.asFullyQualified(element);
+			final String typeName;
+			if (fq != null) {
+				typeName = fq.getFullyQualifiedName();
+			} else if (element instanceof final JavaType.Primitive primitive) {
+				typeName = primitive.getKeyword();
+			} else {
+				typeName = "java.lang.Object";
+			}
+			final String dataType = string(attrs.get("dataType"));
+			return new Property(name.intern(), typeName.intern(), container, dataType, Boolean.TRUE.equals(bool(attrs.get("required"))));
+		}
+	}
+}
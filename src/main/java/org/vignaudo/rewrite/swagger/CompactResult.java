@@ -0,0 +1,345 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.openrewrite.Result;
+import org.openrewrite.SourceFile;
+import org.openrewrite.internal.InMemoryDiffEntry;
+import org.openrewrite.internal.lang.Nullable;
+
+/**
+ * A {@link Result} reduced to the lines it replaces, with their offsets in
+ * the printed original.
+ *
+ * <p>
+ * The recipes only touch annotation and import lines, so once the result is
+ * compacted the before and after trees can be collected; the change is
+ * applied to the original text read back from the working tree, which must
+ * not have changed since it was parsed.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+final class CompactResult {
+	@Nullable
+	private final Path before;
+	@Nullable
+	private final Path after;
+	private final Charset charset;
+	private final int originalLength;
+	private final int originalHash;
+	private final List<Edit> edits;
+
+	/**
+	 * Replace {@code length} chars at {@code offset} of the original by
+	 * {@code replacement}; both ends are on line boundaries.
+	 */
+	record Edit(int offset, int length, String replacement) {
+		//
+	}
+
+	private CompactResult(@Nullable final Path before, @Nullable final Path after, final Charset charset, final String original, final List<Edit> edits) {
+		this.before = before;
+		this.after = after;
+		this.charset = charset;
+		this.originalLength = original.length();
+		this.originalHash = original.hashCode();
+		this.edits = edits;
+	}
+
+	static CompactResult of(final Result result) {
+		final SourceFile beforeFile = result.getBefore();
+		final SourceFile afterFile = result.getAfter();
+		final String original = beforeFile == null ? "" : beforeFile.printAll();
+		final List<Edit> edits = afterFile == null ? List.of() : edits(original, afterFile.printAll());
+		final Charset charset = charsetOf(afterFile == null ? beforeFile : afterFile);
+		return new CompactResult(beforeFile == null ? null : beforeFile.getSourcePath(), afterFile == null ? null : afterFile.getSourcePath(), charset, original,
+				edits);
+	}
+
+	private static Charset charsetOf(@Nullable final SourceFile sourceFile) {
+		return sourceFile == null || sourceFile.getCharset() == null ? StandardCharsets.UTF_8 : sourceFile.getCharset();
+	}
+
+	@Nullable
+	Path getBefore() {
+		return before;
+	}
+
+	@Nullable
+	Path getAfter() {
+		return after;
+	}
+
+	List<Edit> getEdits() {
+		return edits;
+	}
+
+	/**
+	 * Chars kept by this result, for reporting.
+	 */
+	long retainedChars() {
+		return edits.stream().mapToLong(x -> x.replacement().length()).sum();
+	}
+
+	/**
+	 * The after text, from {@code original} as printed when the result was
+	 * compacted.
+	 */
+	String apply(final String original) {
+		if (original.length() != originalLength || original.hashCode() != originalHash) {
+			throw new IllegalStateException("The original of " + (before == null ? after : before) + " changed since it was migrated.");
+		}
+		final StringBuilder sb = new StringBuilder(original.length());
+		int position = 0;
+		for (final Edit edit : edits) {
+			sb.append(original, position, edit.offset()).append(edit.replacement());
+			position = edit.offset() + edit.length();
+		}
+		return sb.append(original, position, original.length()).toString();
+	}
+
+	/**
+	 * The after text, applied to the original read below {@code baseDir}.
+	 */
+	String print(final Path baseDir) {
+		return apply(original(baseDir));
+	}
+
+	/**
+	 * Unified diff of this result against the original read below
+	 * {@code baseDir}.
+	 */
+	String diff(final Path baseDir) {
+		final String original = original(baseDir);
+		try (InMemoryDiffEntry diff = new InMemoryDiffEntry(before, after, null, original, after == null ? "" : apply(original), Set.of())) {
+			return diff.getDiff();
+		}
+	}
+
+	/**
+	 * Rewrite the working tree below {@code baseDir}, removing the original
+	 * when the file was deleted or moved.
+	 */
+	void write(final Path baseDir) {
+		try {
+			final String text = after == null ? null : print(baseDir);
+			if ((before != null) && ((after == null) || !before.equals(after))) {
+				Files.deleteIfExists(baseDir.resolve(before));
+			}
+			if (after != null) {
+				final Path target = baseDir.resolve(after);
+				Files.createDirectories(target.getParent());
+				Files.writeString(target, text, charset);
+			}
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private String original(final Path baseDir) {
+		if (before == null) {
+			return "";
+		}
+		try {
+			return Files.readString(baseDir.resolve(before), charset);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Line edits turning {@code original} into {@code revised}, from a
+	 * linear space Myers diff; unchanged lines are not retained.
+	 */
+	static List<Edit> edits(final String original, final String revised) {
+		final Lines a = new Lines(original);
+		final Lines b = new Lines(revised);
+		final LineDiff diff = new LineDiff(a, b);
+		diff.compare(0, a.size(), 0, b.size());
+		final List<Edit> ret = new ArrayList<>();
+		int i = 0;
+		int j = 0;
+		while ((i < a.size()) || (j < b.size())) {
+			if ((i < a.size()) && (j < b.size()) && diff.keptA[i] && diff.keptB[j]) {
+				i++;
+				j++;
+				continue;
+			}
+			final int i0 = i;
+			final int j0 = j;
+			while ((i < a.size()) && !diff.keptA[i]) {
+				i++;
+			}
+			while ((j < b.size()) && !diff.keptB[j]) {
+				j++;
+			}
+			ret.add(new Edit(a.start(i0), a.start(i) - a.start(i0), revised.substring(b.start(j0), b.start(j))));
+		}
+		return ret;
+	}
+
+	/**
+	 * Lines of a text, terminators included.
+	 */
+	private static final class Lines {
+		private final String text;
+		private final int[] starts;
+		private final int[] hashes;
+
+		Lines(final String text) {
+			this.text = text;
+			final List<Integer> list = new ArrayList<>();
+			int position = 0;
+			while (position < text.length()) {
+				list.add(position);
+				final int end = text.indexOf('\n', position);
+				position = end < 0 ? text.length() : end + 1;
+			}
+			starts = new int[list.size() + 1];
+			hashes = new int[list.size()];
+			for (int i = 0; i < list.size(); i++) {
+				starts[i] = list.get(i);
+			}
+			starts[list.size()] = text.length();
+			for (int i = 0; i < hashes.length; i++) {
+				int h = 0;
+				for (int c = starts[i]; c < starts[i + 1]; c++) {
+					h = (31 * h) + text.charAt(c);
+				}
+				hashes[i] = h;
+			}
+		}
+
+		int size() {
+			return hashes.length;
+		}
+
+		int start(final int line) {
+			return starts[line];
+		}
+
+		boolean same(final int line, final Lines other, final int otherLine) {
+			final int length = starts[line + 1] - starts[line];
+			return (hashes[line] == other.hashes[otherLine]) && (length == (other.starts[otherLine + 1] - other.starts[otherLine]))
+					&& text.regionMatches(starts[line], other.text, other.starts[otherLine], length);
+		}
+	}
+
+	/**
+	 * Myers' O(ND) difference with the middle snake refinement, marking the
+	 * lines of the longest common subsequence.
+	 */
+	private static final class LineDiff {
+		private final Lines a;
+		private final Lines b;
+		final boolean[] keptA;
+		final boolean[] keptB;
+
+		LineDiff(final Lines a, final Lines b) {
+			this.a = a;
+			this.b = b;
+			this.keptA = new boolean[a.size()];
+			this.keptB = new boolean[b.size()];
+		}
+
+		void compare(final int a0, final int a1, final int b0, final int b1) {
+			int aLo = a0;
+			int aHi = a1;
+			int bLo = b0;
+			int bHi = b1;
+			while ((aLo < aHi) && (bLo < bHi) && a.same(aLo, b, bLo)) {
+				keep(aLo++, bLo++);
+			}
+			while ((aLo < aHi) && (bLo < bHi) && a.same(aHi - 1, b, bHi - 1)) {
+				keep(--aHi, --bHi);
+			}
+			if ((aLo == aHi) || (bLo == bHi)) {
+				return;
+			}
+			final int[] snake = middleSnake(aLo, aHi, bLo, bHi);
+			compare(aLo, snake[0], bLo, snake[1]);
+			for (int i = snake[0], j = snake[1]; i < snake[2]; i++, j++) {
+				keep(i, j);
+			}
+			compare(snake[2], aHi, snake[3], bHi);
+		}
+
+		private void keep(final int i, final int j) {
+			keptA[i] = true;
+			keptB[j] = true;
+		}
+
+		/**
+		 * Start and end, as {@code {aStart, bStart, aEnd, bEnd}}, of the snake
+		 * where the forward and reverse paths of an optimal script meet.
+		 */
+		private int[] middleSnake(final int a0, final int a1, final int b0, final int b1) {
+			final int n = a1 - a0;
+			final int m = b1 - b0;
+			final int delta = n - m;
+			final boolean odd = (delta & 1) != 0;
+			final int max = (n + m + 1) / 2;
+			final int offset = max + 1;
+			final int[] forward = new int[(2 * max) + 3];
+			final int[] reverse = new int[(2 * max) + 3];
+			for (int d = 0; d <= max; d++) {
+				for (int k = -d; k <= d; k += 2) {
+					int x = ((k == -d) || ((k != d) && (forward[(offset + k) - 1] < forward[offset + k + 1]))) ? forward[offset + k + 1]
+							: forward[(offset + k) - 1] + 1;
+					int y = x - k;
+					final int startX = x;
+					final int startY = y;
+					while ((x < n) && (y < m) && a.same(a0 + x, b, b0 + y)) {
+						x++;
+						y++;
+					}
+					forward[offset + k] = x;
+					if (odd && (k >= (delta - (d - 1))) && (k <= (delta + (d - 1))) && ((x + reverse[(offset + delta) - k]) >= n)) {
+						return new int[] { a0 + startX, b0 + startY, a0 + x, b0 + y };
+					}
+				}
+				for (int k = -d; k <= d; k += 2) {
+					int x = ((k == -d) || ((k != d) && (reverse[(offset + k) - 1] < reverse[offset + k + 1]))) ? reverse[offset + k + 1]
+							: reverse[(offset + k) - 1] + 1;
+					int y = x - k;
+					final int startX = x;
+					final int startY = y;
+					while ((x < n) && (y < m) && a.same((a1 - x) - 1, b, (b1 - y) - 1)) {
+						x++;
+						y++;
+					}
+					reverse[offset + k] = x;
+					if (!odd && ((delta - k) >= -d) && ((delta - k) <= d) && ((x + forward[(offset + delta) - k]) >= n)) {
+						return new int[] { a1 - x, b1 - y, a1 - startX, b1 - startY };
+					}
+				}
+			}
+			throw new IllegalStateException("No middle snake between lines " + a0 + "-" + a1 + " and " + b0 + "-" + b1);
+		}
+	}
+}
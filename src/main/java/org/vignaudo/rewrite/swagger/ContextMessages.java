@@ -0,0 +1,53 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import java.util.function.Supplier;
+
+import org.openrewrite.ExecutionContext;
+
+/**
+ * Per run state shared through the {@link ExecutionContext} messages.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+final class ContextMessages {
+
+	private ContextMessages() {
+		// Nothing.
+	}
+
+	/**
+	 * The message of {@code key}, created by {@code factory} on first use;
+	 * concurrent callers on the same context get the same instance.
+	 */
+	static <T> T computeIfAbsent(final ExecutionContext ctx, final String key, final Supplier<T> factory) {
+		final T existing = ctx.getMessage(key);
+		if (existing != null) {
+			return existing;
+		}
+		synchronized (ctx) {
+			T ret = ctx.getMessage(key);
+			if (ret == null) {
+				ret = factory.get();
+				ctx.putMessage(key, ret);
+			}
+			return ret;
+		}
+	}
+}
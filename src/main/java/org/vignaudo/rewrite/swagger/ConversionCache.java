@@ -0,0 +1,200 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.openrewrite.Tree.randomId;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.openrewrite.Cursor;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.java.JavaVisitor;
+import org.openrewrite.java.tree.Comment;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.java.tree.Space;
+import org.openrewrite.java.tree.TypeUtils;
+
+/**
+ * Per run cache of annotation conversions.
+ *
+ * <p>
+ * Generated interfaces repeat the same annotations, with the same multi-KB
+ * messages, on thousands of operations. Conversions are keyed by a hash of
+ * the source annotation, its layout and the types it refers to, so identical
+ * annotations are converted once without printing them or keeping their
+ * text. Hits are returned with fresh ids, and the least recently used entries
+ * are evicted above {@link #DEFAULT_CAPACITY}.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+public final class ConversionCache {
+	private static final String KEY = ConversionCache.class.getName();
+	static final int DEFAULT_CAPACITY = 4096;
+	/** Nodes whose children hold all of their content. */
+	private static final Set<Class<?>> STRUCTURAL = Set.of(J.Annotation.class, J.Assignment.class, J.NewArray.class, J.FieldAccess.class,
+			J.Parentheses.class, J.ArrayType.class, J.Empty.class);
+
+	private final int capacity;
+	private final Map<String, Conversion> entries;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	ConversionCache(final int capacity) {
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, Conversion> eldest) {
+				if (size() > ConversionCache.this.capacity) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public static ConversionCache get(final ExecutionContext ctx) {
+		return ContextMessages.computeIfAbsent(ctx, KEY, () -> new ConversionCache(DEFAULT_CAPACITY));
+	}
+
+	/**
+	 * Key of {@code annotation}: the SHA-256, computed while walking it, of its
+	 * node kinds, names, literals, the types it references and the whitespace
+	 * and comments inside it, since conversions keep the layout of the values
+	 * they reuse. The prefix of {@code annotation} itself is left out, callers
+	 * set it. Nodes outside the constant expressions annotations are made of
+	 * are hashed in their printed form.
+	 */
+	static String key(final String kind, final J.Annotation annotation, final Cursor cursor) {
+		final MessageDigest digest = sha256();
+		update(digest, kind);
+		new JavaVisitor<MessageDigest>() {
+			@Override
+			public Space visitSpace(final Space space, final Space.Location loc, final MessageDigest p) {
+				update(p, space.getWhitespace());
+				for (final Comment comment : space.getComments()) {
+					update(p, comment.printComment(getCursor()));
+					update(p, comment.getSuffix());
+				}
+				return space;
+			}
+
+			@Override
+			public J preVisit(final J tree, final MessageDigest p) {
+				update(p, tree.getClass().getSimpleName());
+				if (tree instanceof final J.Identifier ident) {
+					update(p, ident.getSimpleName());
+					final JavaType.FullyQualified type = TypeUtils.asFullyQualified(ident.getType());
+					if (type != null) {
+						update(p, type.getFullyQualifiedName());
+					}
+				} else if (tree instanceof final J.Literal literal) {
+					update(p, literal.getValueSource() == null ? String.valueOf(literal.getValue()) : literal.getValueSource());
+				} else if (tree instanceof final J.Binary binary) {
+					update(p, binary.getOperator().name());
+				} else if (tree instanceof final J.Unary unary) {
+					update(p, unary.getOperator().name());
+				} else if (tree instanceof final J.Primitive primitive) {
+					update(p, primitive.getType().getKeyword());
+				} else if (!STRUCTURAL.contains(tree.getClass())) {
+					visitSpace(tree.getPrefix(), Space.Location.ANY, p);
+					update(p, tree.printTrimmed(cursor));
+					stopAfterPreVisit();
+				}
+				return tree;
+			}
+		}.visit(annotation.withPrefix(Space.EMPTY), digest, cursor);
+		return HexFormat.of().formatHex(digest.digest());
+	}
+
+	private static void update(final MessageDigest digest, final String value) {
+		digest.update(value.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Cached conversion for {@code key}, as a copy with fresh ids.
+	 */
+	public synchronized Optional<Conversion> get(final String key) {
+		final Conversion conversion = entries.get(key);
+		if (conversion == null) {
+			misses++;
+			return Optional.empty();
+		}
+		hits++;
+		return Optional.of(new Conversion(withFreshIds(conversion.tree()), conversion.imports()));
+	}
+
+	public synchronized void put(final String key, final Conversion conversion) {
+		entries.put(key, conversion);
+	}
+
+	public synchronized Stats stats() {
+		return new Stats(hits, misses, evictions, entries.size());
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T extends J> T withFreshIds(final T tree) {
+		return (T) new JavaVisitor<Integer>() {
+			@Override
+			public J preVisit(final J j, final Integer p) {
+				return j.withId(randomId());
+			}
+		}.visitNonNull(tree, 0);
+	}
+
+	/**
+	 * @param imports Types to add with {@code maybeAddImport} when the conversion
+	 *                is reused.
+	 */
+	public record Conversion(J tree, List<String> imports) {
+		//
+	}
+
+	public record Stats(long hits, long misses, long evictions, int size) {
+		public double hitRate() {
+			final long total = hits + misses;
+			return total == 0 ? 0 : (double) hits / total;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d hits, %d misses (%.1f%%), %d evictions, %d entries", hits, misses, hitRate() * 100, evictions, size);
+		}
+	}
+}
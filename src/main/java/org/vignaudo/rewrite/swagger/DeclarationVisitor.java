@@ -0,0 +1,234 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import org.openrewrite.Cursor;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Tree;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.JavaIsoVisitor;
+import org.openrewrite.java.style.Autodetect;
+import org.openrewrite.java.style.TabsAndIndentsStyle;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.Statement;
+import org.openrewrite.style.NamedStyles;
+
+/**
+ * Visitor restricted to declarations.
+ *
+ * <p>
+ * Swagger annotations only appear on types, members and parameters, so method
+ * bodies, initializer blocks, lambdas and variable initializers are returned
+ * untouched without being traversed.
+ *
+ * <p>
+ * Once {@link #parallelMethodThreshold(ExecutionContext, int, Executor)} is
+ * set, class bodies with at least that many methods have their methods
+ * visited in parallel on the given executor, each by a {@link #fork()} of the
+ * visitor with its own copy of the cursor. The visitors the forks schedule
+ * with {@code doAfterVisit}, such as import changes, are merged into this
+ * visitor in method order, each once, so the result is the same as a
+ * sequential visit.
+ *
+ * <p>
+ * {@code autoFormat} follows the styles of the compilation unit; when the
+ * parser attached none, the indentation is detected from its sources instead
+ * of the IntelliJ defaults that would re-indent a tab indented file with
+ * spaces.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+public abstract class DeclarationVisitor<P> extends JavaIsoVisitor<P> {
+	private static final String PARALLEL_THRESHOLD = DeclarationVisitor.class.getName() + ".parallelThreshold";
+	private static final String DETECTED = DeclarationVisitor.class.getName() + ".detected";
+
+	@Nullable
+	private List<TreeVisitor<?, P>> deferred;
+	@Nullable
+	private DeclarationVisitor<P> origin;
+	@Nullable
+	private J.CompilationUnit source;
+	@Nullable
+	private J.CompilationUnit styled;
+
+	/**
+	 * Visit the methods of class bodies holding at least {@code methods}
+	 * methods in parallel on {@code executor} during the run of {@code ctx}.
+	 * The visiting thread takes part, so {@code executor} may be the pool the
+	 * recipe runs on.
+	 */
+	public static void parallelMethodThreshold(final ExecutionContext ctx, final int methods, final Executor executor) {
+		ctx.putMessage(PARALLEL_THRESHOLD, new Parallel(methods, executor));
+	}
+
+	/**
+	 * Whether methods can be visited independently, each by a
+	 * {@link #fork()}.
+	 */
+	protected boolean canFork() {
+		return false;
+	}
+
+	/**
+	 * A new visitor with the same configuration, used to visit one method on
+	 * another thread; only called when {@link #canFork()}.
+	 */
+	protected DeclarationVisitor<P> fork() {
+		throw new UnsupportedOperationException(getClass().getName() + " cannot visit methods independently.");
+	}
+
+	@Override
+	public void doAfterVisit(final TreeVisitor<?, P> visitor) {
+		if (deferred == null) {
+			super.doAfterVisit(visitor);
+		} else if (!deferred.contains(visitor)) {
+			deferred.add(visitor);
+		}
+	}
+
+	@Override
+	public <J2 extends J> J2 autoFormat(final J2 j, @Nullable final J stopAfter, final P p, final Cursor cursor) {
+		final J.CompilationUnit cu = cursor.firstEnclosing(J.CompilationUnit.class);
+		return super.autoFormat(j, stopAfter, p, cu == null ? cursor : withUnit(cursor, styled(cu)));
+	}
+
+	/**
+	 * {@code cu} with the indentation detected from its sources, once per
+	 * unit; forks share the detection of the visitor they were forked from.
+	 * Only the indentation is taken, the other detected styles are guessed
+	 * from too few samples on interfaces made of annotated declarations.
+	 */
+	private J.CompilationUnit styled(final J.CompilationUnit cu) {
+		if (origin != null) {
+			return origin.styled(cu);
+		}
+		synchronized (this) {
+			if (source != cu || styled == null) {
+				source = cu;
+				if (cu.getMarkers().findFirst(NamedStyles.class).isPresent()) {
+					styled = cu;
+				} else {
+					final Autodetect.Detector detector = Autodetect.detector();
+					detector.sample(cu);
+					final TabsAndIndentsStyle indents = NamedStyles.merge(TabsAndIndentsStyle.class, List.of(detector.build()));
+					styled = cu.withMarkers(cu.getMarkers().add(new NamedStyles(Tree.randomId(), DETECTED, "Detected indentation", null, Set.of(),
+							indents == null ? List.of() : List.of(indents))));
+				}
+			}
+			return styled;
+		}
+	}
+
+	/**
+	 * Copy of the path of {@code cursor} with {@code cu} as compilation unit.
+	 */
+	private static Cursor withUnit(final Cursor cursor, final J.CompilationUnit cu) {
+		if (cursor.getValue() instanceof J.CompilationUnit) {
+			return new Cursor(cursor.getParent(), cu);
+		}
+		final Cursor parent = cursor.getParent();
+		return new Cursor(parent == null ? null : withUnit(parent, cu), cursor.getValue());
+	}
+
+	@Override
+	public J.CompilationUnit visitCompilationUnit(final J.CompilationUnit cu, final P p) {
+		final J.CompilationUnit ret = super.visitCompilationUnit(cu, p);
+		if (p instanceof final ExecutionContext ctx) {
+			HotSpotProfiler.traversed(ctx);
+		}
+		return ret;
+	}
+
+	@Override
+	public J.Block visitBlock(final J.Block block, final P p) {
+		// Only class bodies hold declarations.
+		if (!(getCursor().getParentTreeCursor().getValue() instanceof J.ClassDeclaration)) {
+			return block;
+		}
+		if (p instanceof final ExecutionContext ctx && canFork()) {
+			final Parallel parallel = ctx.getMessage(PARALLEL_THRESHOLD);
+			if (parallel != null && block.getStatements().stream().filter(J.MethodDeclaration.class::isInstance).count() >= parallel.methods()) {
+				return visitMethodsInParallel(block, p, parallel.executor());
+			}
+		}
+		return super.visitBlock(block, p);
+	}
+
+	private J.Block visitMethodsInParallel(final J.Block block, final P p, final Executor executor) {
+		final Cursor parent = getCursor();
+		final List<Statement> statements = block.getStatements();
+		final List<J.MethodDeclaration> declarations = statements.stream()
+				.filter(J.MethodDeclaration.class::isInstance)
+				.map(J.MethodDeclaration.class::cast)
+				.toList();
+		final Iterator<Forked<P>> methods = WorkScheduler.share(executor, Runtime.getRuntime().availableProcessors() - 1, declarations,
+				m -> Forked.visit(this, fork(), m, p, copy(parent))).iterator();
+		final List<Statement> ret = new ArrayList<>();
+		for (final Statement original : statements) {
+			final Forked<P> method = original instanceof J.MethodDeclaration ? methods.next() : null;
+			final Statement statement = method == null ? (Statement) visit(original, p) : method.result();
+			if (method != null) {
+				method.deferred().stream().filter(x -> !getAfterVisit().contains(x)).forEach(super::doAfterVisit);
+			}
+			if (statement != null) {
+				ret.add(statement);
+			}
+		}
+		return block.withStatements(ret);
+	}
+
+	/**
+	 * Copy of the path of {@code cursor}, without its messages; the formatters
+	 * run by a fork keep their state on the cursor.
+	 */
+	private static Cursor copy(final Cursor cursor) {
+		final Cursor parent = cursor.getParent();
+		return new Cursor(parent == null ? null : copy(parent), cursor.getValue());
+	}
+
+	@Override
+	public J.Lambda visitLambda(final J.Lambda lambda, final P p) {
+		return lambda;
+	}
+
+	@Override
+	public J.VariableDeclarations.NamedVariable visitVariable(final J.VariableDeclarations.NamedVariable variable, final P p) {
+		// Annotations belong to the enclosing J.VariableDeclarations.
+		return variable;
+	}
+
+	private record Parallel(int methods, Executor executor) {
+		//
+	}
+
+	private record Forked<P>(@Nullable Statement result, List<TreeVisitor<?, P>> deferred) {
+		static <P> Forked<P> visit(final DeclarationVisitor<P> origin, final DeclarationVisitor<P> worker, final J.MethodDeclaration method, final P p,
+				final Cursor parent) {
+			worker.deferred = new ArrayList<>();
+			worker.origin = origin;
+			return new Forked<>((Statement) worker.visit(method, p, parent), worker.deferred);
+		}
+	}
+}
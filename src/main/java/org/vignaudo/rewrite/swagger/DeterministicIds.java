@@ -0,0 +1,117 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.SourceFile;
+import org.openrewrite.Tree;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.JavaVisitor;
+import org.openrewrite.java.tree.J;
+
+/**
+ * Replace the random ids of the nodes created by a visitor with ids derived
+ * from the source tree.
+ *
+ * <p>
+ * Every node absent from the input gets a name based UUID built from the id of
+ * its closest ancestor that was already in the input and its rank below that
+ * ancestor. Running the same visitor twice on the same LST therefore produces
+ * identical trees, ids included.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+final class DeterministicIds {
+	private static final UUID ROOT = new UUID(0, 0);
+
+	private DeterministicIds() {
+		// Nothing.
+	}
+
+	/**
+	 * Wrap {@code visitor} when {@code enabled}, return it untouched otherwise.
+	 */
+	static TreeVisitor<?, ExecutionContext> wrap(final boolean enabled, final TreeVisitor<?, ExecutionContext> visitor) {
+		if (!enabled) {
+			return visitor;
+		}
+		return new TreeVisitor<Tree, ExecutionContext>() {
+			@Override
+			public boolean isAcceptable(final SourceFile sourceFile, final ExecutionContext ctx) {
+				return visitor.isAcceptable(sourceFile, ctx);
+			}
+
+			@Override
+			public @Nullable Tree visit(@Nullable final Tree tree, final ExecutionContext ctx) {
+				final Tree after = visitor.visit(tree, ctx);
+				if ((after == tree) || !(tree instanceof final J before) || !(after instanceof final J j)) {
+					return after;
+				}
+				return reseed(before, j);
+			}
+		};
+	}
+
+	static J reseed(final J before, final J after) {
+		final Set<UUID> existing = new HashSet<>();
+		new JavaVisitor<Set<UUID>>() {
+			@Override
+			public J preVisit(final J tree, final Set<UUID> ids) {
+				ids.add(tree.getId());
+				return tree;
+			}
+		}.visit(before, existing);
+		return new Reseeder(existing).visitNonNull(after, 0);
+	}
+
+	static UUID derive(final UUID seed, final int rank) {
+		return UUID.nameUUIDFromBytes((seed + "/" + rank).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static class Reseeder extends JavaVisitor<Integer> {
+		private final Set<UUID> existing;
+		private final Map<UUID, Integer> ranks = new HashMap<>();
+
+		Reseeder(final Set<UUID> existing) {
+			this.existing = existing;
+		}
+
+		@Override
+		public J preVisit(final J tree, final Integer p) {
+			if (existing.contains(tree.getId())) {
+				return tree;
+			}
+			final UUID seed = getCursor().getPathAsStream()
+					.skip(1)
+					.filter(J.class::isInstance)
+					.map(x -> ((J) x).getId())
+					.filter(existing::contains)
+					.findFirst()
+					.orElse(ROOT);
+			return tree.withId(derive(seed, ranks.merge(seed, 1, Integer::sum)));
+		}
+	}
+}
@@ -0,0 +1,888 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.openrewrite.internal.lang.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Token level conversion of the Swagger 2 annotations of generated sources,
+ * such as the openapi-generator output, without building an LST.
+ *
+ * <p>
+ * Only files carrying a {@code @Generated} marker are considered, and only
+ * the regular layouts produced by generators are recognized: single type
+ * imports, literal attribute values and the {@code @Api},
+ * {@code @ApiOperation}, {@code @ApiResponses}, {@code @ApiParam},
+ * {@code @ApiModel} and {@code @ApiModelProperty} attributes the recipes map
+ * without looking at types. Anything else makes {@link #rewrite(String)}
+ * return nothing so the file goes through the recipes. The output mirrors the
+ * recipes token for token but not their layout, see
+ * {@link #equivalent(String, String)}.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+final class GeneratedSourceRewriter {
+	private static final Logger LOG = LoggerFactory.getLogger(GeneratedSourceRewriter.class);
+
+	private static final String SW2 = "io.swagger.annotations.";
+	private static final String API_RESPONSES = Swagger3Converter.SW3 + ".responses.ApiResponses";
+	private static final Set<String> SUPPORTED = Set.of("Api", "ApiOperation", "ApiResponses", "ApiResponse", "ApiParam", "ApiModel", "ApiModelProperty");
+	private static final Set<String> GENERATED = Set.of("javax.annotation.Generated", "jakarta.annotation.Generated", "javax.annotation.processing.Generated");
+	private static final Set<String> VOID = Set.of("Void", "java.lang.Void", "void");
+	/** In the order {@code SwaggerUpgrade3Recipe} looks for them. */
+	private static final List<Map.Entry<String, String>> PARAMETER_IN = List.of(
+			Map.entry("org.springframework.web.bind.annotation.CookieValue", "COOKIE"),
+			Map.entry("org.springframework.web.bind.annotation.RequestHeader", "HEADER"),
+			Map.entry("org.springframework.web.bind.annotation.PathVariable", "PATH"),
+			Map.entry("org.springframework.web.bind.annotation.RequestParam", "QUERY"),
+			Map.entry("javax.ws.rs.PathParam", "PATH"),
+			Map.entry("jakarta.ws.rs.PathParam", "PATH"),
+			Map.entry("javax.ws.rs.QueryParam", "QUERY"),
+			Map.entry("jakarta.ws.rs.QueryParam", "QUERY"));
+
+	private final String source;
+	private final boolean models;
+	private final List<Token> tokens;
+	private final List<Import> imports = new ArrayList<>();
+	private final List<Import> sw2Imports = new ArrayList<>();
+	private final Set<String> sw2 = new TreeSet<>();
+	private final Map<String, String> types = new HashMap<>();
+	private final List<String> wildcards = new ArrayList<>();
+	private final List<Use> uses = new ArrayList<>();
+	private final Set<String> sw3Imports = new TreeSet<>();
+	private int pos;
+
+	private GeneratedSourceRewriter(final String source, final boolean models) {
+		this.source = source;
+		this.models = models;
+		this.tokens = tokenize(source, false);
+	}
+
+	/**
+	 * {@code source} converted to Swagger 3, unchanged when it does not use
+	 * Swagger 2, or nothing when it must go through the recipes.
+	 */
+	static Optional<String> rewrite(final String source) {
+		return rewrite(source, true);
+	}
+
+	/**
+	 * As {@link #rewrite(String)}, leaving the {@code @ApiModel} classes to the
+	 * recipes unless {@code models}, so that they are in the
+	 * {@link ApiModelIndex} of the run.
+	 */
+	static Optional<String> rewrite(final String source, final boolean models) {
+		try {
+			return Optional.of(new GeneratedSourceRewriter(source, models).rewrite());
+		} catch (final Unsupported e) {
+			LOG.debug("Lexical fast path not applicable: {}", e.getMessage());
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Same tokens and comments once the imports are sorted; layout and import
+	 * order are left to the formatter and differ between the lexical and the
+	 * LST paths.
+	 */
+	static boolean equivalent(final String a, final String b) {
+		try {
+			return normalize(a).equals(normalize(b));
+		} catch (final Unsupported e) {
+			return a.equals(b);
+		}
+	}
+
+	private static List<String> normalize(final String source) {
+		final List<Token> tokens = tokenize(source, true);
+		final List<String> importLines = new ArrayList<>();
+		final List<String> ret = new ArrayList<>();
+		for (int i = 0; i < tokens.size(); i++) {
+			if (!"import".equals(tokens.get(i).text())) {
+				ret.add(tokens.get(i).text());
+				continue;
+			}
+			final StringBuilder sb = new StringBuilder();
+			for (; i < tokens.size() && !";".equals(tokens.get(i).text()); i++) {
+				sb.append(tokens.get(i).text()).append(' ');
+			}
+			importLines.add(sb.toString());
+		}
+		importLines.sort(null);
+		ret.addAll(0, importLines);
+		return ret;
+	}
+
+	private String rewrite() {
+		final int body = readImports();
+		scan(body);
+		if (uses.stream().noneMatch(x -> GENERATED.contains(resolve(x.name())))) {
+			throw new Unsupported("no @Generated marker");
+		}
+		if (sw2.isEmpty()) {
+			if (source.contains("io.swagger.annotations")) {
+				throw new Unsupported("qualified Swagger 2 reference");
+			}
+			return source;
+		}
+		if (!models && sw2.contains("ApiModel")) {
+			throw new Unsupported("@ApiModel left to the model index");
+		}
+		checkReferences(body);
+		if (sw2.contains("ApiModelProperty") && !sw2.contains("ApiModel")) {
+			// SwaggerModelRecipe only runs on files using @ApiModel.
+			throw new Unsupported("@ApiModelProperty without @ApiModel");
+		}
+		final List<Replacement> edits = new ArrayList<>();
+		for (final Use use : uses) {
+			if (use.name().startsWith("io.swagger.")) {
+				throw new Unsupported("qualified annotation @" + use.name());
+			}
+			if (!sw2.contains(use.name())) {
+				continue;
+			}
+			pos = use.at();
+			final Ann ann = annotation();
+			edits.add(new Replacement(ann.start(), ann.end(), convert(ann, use)));
+		}
+		editImports(edits);
+		return apply(edits);
+	}
+
+	private String convert(final Ann ann, final Use use) {
+		return switch (ann.name()) {
+		case "Api" -> api(ann);
+		case "ApiOperation" -> operation(ann, group(use).stream()
+				.map(x -> simpleName(x.name()))
+				.anyMatch(x -> "ApiResponses".equals(x) || "ApiResponse".equals(x)));
+		case "ApiResponses" -> responses(ann);
+		case "ApiParam" -> parameter(ann, use);
+		case "ApiModel" -> model(ann);
+		case "ApiModelProperty" -> modelProperty(ann);
+		default -> throw new Unsupported("standalone @" + ann.name());
+		};
+	}
+
+	private String api(final Ann ann) {
+		final Map<String, Value> attrs = ann.attrs();
+		List<Value> names = nonEmpty(elements(attrs.get("tags")));
+		if (names.isEmpty()) {
+			names = nonEmpty(elements(attrs.get("value")));
+		}
+		if (!elements(attrs.get("authorizations")).isEmpty()) {
+			throw new Unsupported("@Api authorizations");
+		}
+		final List<String> ret = new ArrayList<>();
+		for (final Value name : names) {
+			final List<String> args = new ArrayList<>();
+			args.add("name = " + name.source());
+			copy(attrs, "description", "description", args);
+			ret.add(create(Swagger3Converter.TAG, args));
+		}
+		if (isTrue(attrs.get("hidden"))) {
+			ret.add(create(Swagger3Converter.HIDDEN, List.of()));
+		}
+		return String.join(newline() + indent(ann.start()), ret);
+	}
+
+	private String operation(final Ann ann, final boolean hasResponses) {
+		final Map<String, Value> attrs = ann.attrs();
+		final List<String> args = new ArrayList<>();
+		final Value value = attrs.get("value");
+		final Value notes = attrs.get("notes");
+		if (!isEmpty(notes)) {
+			if (!isEmpty(value)) {
+				args.add("summary = " + value.source());
+			}
+			args.add("description = " + notes.source());
+		} else if (value != null) {
+			args.add("description = " + value.source());
+		}
+		copy(attrs, "nickname", "operationId", args);
+		copy(attrs, "httpMethod", "method", args);
+		final List<Value> tags = nonEmpty(elements(attrs.get("tags")));
+		if (!tags.isEmpty()) {
+			args.add("tags = " + array(tags));
+		}
+		if (!elements(attrs.get("authorizations")).isEmpty()) {
+			throw new Unsupported("@ApiOperation authorizations");
+		}
+		final boolean converted = !hasResponses && !isVoid(attrs.get("response"));
+		if (converted) {
+			final List<String> response = new ArrayList<>();
+			response.add("responseCode = \"" + responseCode(attrs.get("code")) + "\"");
+			response.add("content = " + content(attrs.get("response").source(), string(attrs.get("responseContainer"))));
+			args.add("responses = " + create(Swagger3Converter.API_RESPONSE, response));
+		}
+		if (isTrue(attrs.get("hidden"))) {
+			args.add("hidden = true");
+		}
+		Swagger3Converter.logDropped(attrs.keySet(), converted, Optional.ofNullable(string(attrs.get("nickname"))).orElseGet(() -> string(value)));
+		return create(Swagger3Converter.OPERATION, args);
+	}
+
+	private static String responseCode(@Nullable final Value code) {
+		if (code == null || code.kind() == ValueKind.NAME) {
+			return "200";
+		}
+		if (code.kind() != ValueKind.NUMBER) {
+			throw new Unsupported("@ApiOperation code " + code.source());
+		}
+		try {
+			return String.valueOf(Integer.parseInt(code.source()));
+		} catch (final NumberFormatException e) {
+			throw new Unsupported("@ApiOperation code " + code.source());
+		}
+	}
+
+	private String content(final String implementation, @Nullable final String container) {
+		final String schema = create(Swagger3Converter.SCHEMA, List.of("implementation = " + implementation));
+		if (!"List".equals(container) && !"Set".equals(container)) {
+			return create(Swagger3Converter.CONTENT, List.of("schema = " + schema));
+		}
+		final List<String> array = new ArrayList<>();
+		array.add("schema = " + schema);
+		if ("Set".equals(container)) {
+			array.add("uniqueItems = true");
+		}
+		return create(Swagger3Converter.CONTENT, List.of("array = " + create(Swagger3Converter.ARRAY_SCHEMA, array)));
+	}
+
+	private String responses(final Ann ann) {
+		final List<String> ret = new ArrayList<>();
+		for (final Value value : elements(ann.attrs().get("value"))) {
+			if (value.kind() != ValueKind.ANNOTATION || !"ApiResponse".equals(value.annotation().name()) || !sw2.contains("ApiResponse")) {
+				throw new Unsupported("@ApiResponses element " + value.source());
+			}
+			ret.add(response(value.annotation()));
+		}
+		sw3Imports.add(API_RESPONSES);
+		if (ret.isEmpty()) {
+			return "@ApiResponses(value = {})";
+		}
+		final String separator = newline() + indent(ann.start()) + "\t\t";
+		return "@ApiResponses(value = {" + separator + String.join("," + separator, ret) + " })";
+	}
+
+	private String response(final Ann ann) {
+		if (ann.positional() || ann.attrs().isEmpty()) {
+			throw new Unsupported("@ApiResponse without attributes");
+		}
+		final List<String> args = new ArrayList<>();
+		for (final Map.Entry<String, Value> entry : ann.attrs().entrySet()) {
+			final Value value = entry.getValue();
+			switch (entry.getKey()) {
+			case "code" -> args.add("responseCode = \"" + literal(value, ValueKind.NUMBER).source() + "\"");
+			case "message" -> args.add("description = " + literal(value, ValueKind.STRING).source());
+			case "response" -> args.add("content = " + content(value.source(), string(ann.attrs().get("responseContainer"))));
+			case "responseContainer", "examples" -> {
+				// Dropped, as by Sw3ResponseRecipe.
+			}
+			default -> throw new Unsupported("@ApiResponse " + entry.getKey());
+			}
+		}
+		return create(Swagger3Converter.API_RESPONSE, args);
+	}
+
+	private String parameter(final Ann ann, final Use use) {
+		if (ann.positional()) {
+			throw new Unsupported("positional @ApiParam");
+		}
+		final List<String> args = new ArrayList<>();
+		sw3Imports.add(Swagger3Converter.PARAMETER_IN);
+		args.add("in = ParameterIn." + parameterIn(use));
+		Value defaultValue = null;
+		for (final Map.Entry<String, Value> entry : ann.attrs().entrySet()) {
+			final Value value = entry.getValue();
+			switch (entry.getKey()) {
+			case "required", "name", "example", "hidden", "allowEmptyValue" -> args.add(entry.getKey() + " = " + literal(value).source());
+			case "value" -> args.add("description = " + literal(value).source());
+			case "allowMultiple", "access", "examples", "format", "collectionFormat", "readOnly" -> {
+				// No Swagger 3 equivalent.
+			}
+			case "defaultValue" -> defaultValue = value;
+			case "type", "allowableValues" -> {
+				if (!isEmpty(value)) {
+					throw new Unsupported("@ApiParam " + entry.getKey());
+				}
+			}
+			default -> throw new Unsupported("@ApiParam " + entry.getKey());
+			}
+		}
+		if (!isEmpty(defaultValue)) {
+			args.add("schema = " + create(Swagger3Converter.SCHEMA, List.of("defaultValue = " + defaultValue.source())));
+		}
+		return create(Swagger3Converter.PARAMETER, args);
+	}
+
+	/**
+	 * Location from the binding annotations of the same parameter, which must
+	 * follow {@code @ApiParam} for the annotation order to match the recipe.
+	 */
+	private String parameterIn(final Use use) {
+		final List<Use> group = group(use);
+		if (group.get(0) != use) {
+			throw new Unsupported("@ApiParam after another annotation");
+		}
+		final Set<String> candidates = new TreeSet<>();
+		for (final Use sibling : group) {
+			final String resolved = resolve(sibling.name());
+			if (resolved != null) {
+				candidates.add(resolved);
+			} else {
+				wildcards.forEach(x -> candidates.add(x + "." + sibling.name()));
+			}
+		}
+		return PARAMETER_IN.stream()
+				.filter(x -> candidates.contains(x.getKey()))
+				.map(Map.Entry::getValue)
+				.findFirst()
+				.orElse("DEFAULT");
+	}
+
+	private String model(final Ann ann) {
+		if (ann.positional()) {
+			throw new Unsupported("positional @ApiModel");
+		}
+		final List<String> args = new ArrayList<>();
+		for (final Map.Entry<String, Value> entry : ann.attrs().entrySet()) {
+			final String value = entry.getValue().source();
+			switch (entry.getKey()) {
+			case "description", "subTypes" -> args.add(entry.getKey() + " = " + value);
+			case "value" -> args.add("name = " + value);
+			case "discriminator" -> args.add("discriminatorProperty = " + value);
+			case "parent" -> {
+				// Implied by the class hierarchy.
+			}
+			default -> throw new Unsupported("@ApiModel " + entry.getKey());
+			}
+		}
+		if (args.isEmpty()) {
+			throw new Unsupported("@ApiModel without attributes");
+		}
+		return create(Swagger3Converter.SCHEMA, args);
+	}
+
+	private String modelProperty(final Ann ann) {
+		if (ann.positional()) {
+			throw new Unsupported("positional @ApiModelProperty");
+		}
+		final List<String> args = new ArrayList<>();
+		for (final Map.Entry<String, Value> entry : ann.attrs().entrySet()) {
+			final String value = entry.getValue().source();
+			switch (entry.getKey()) {
+			case "name", "required", "example", "hidden" -> args.add(entry.getKey() + " = " + value);
+			case "value" -> args.add("description = " + value);
+			case "notes", "position", "allowEmptyValue", "extensions" -> {
+				// No Swagger 3 equivalent.
+			}
+			default -> throw new Unsupported("@ApiModelProperty " + entry.getKey());
+			}
+		}
+		if (args.isEmpty()) {
+			throw new Unsupported("@ApiModelProperty without attributes");
+		}
+		return create(Swagger3Converter.SCHEMA, args);
+	}
+
+	private String create(final String fqn, final List<String> args) {
+		sw3Imports.add(fqn);
+		final String name = "@" + simpleName(fqn);
+		return args.isEmpty() ? name : name + "(" + String.join(", ", args) + ")";
+	}
+
+	private void copy(final Map<String, Value> attrs, final String from, final String to, final List<String> args) {
+		final Value value = attrs.get(from);
+		if (!isEmpty(value)) {
+			args.add(to + " = " + value.source());
+		}
+	}
+
+	private static String array(final List<Value> elements) {
+		if (elements.size() == 1) {
+			return elements.get(0).source();
+		}
+		return "{" + String.join(", ", elements.stream().map(Value::source).toList()) + "}";
+	}
+
+	/**
+	 * Every use of an imported Swagger 2 type must be an annotation converted
+	 * here, otherwise removing its import would break the file.
+	 */
+	private void checkReferences(final int body) {
+		for (int i = body; i < tokens.size(); i++) {
+			final Token token = tokens.get(i);
+			if (token.kind() == Kind.IDENT && sw2.contains(token.text()) && !symbol(i - 1, '@')) {
+				throw new Unsupported("non annotation reference to " + token.text());
+			}
+		}
+	}
+
+	private void editImports(final List<Replacement> edits) {
+		imports.stream().filter(x -> !x.isStatic()).map(Import::name).forEach(sw3Imports::remove);
+		final StringBuilder added = new StringBuilder();
+		for (final String fqn : sw3Imports) {
+			added.append("import ").append(fqn).append(';').append(newline());
+		}
+		boolean first = true;
+		for (final Import imp : sw2Imports) {
+			int end = imp.end();
+			while (end < source.length() && (source.charAt(end) == ' ' || source.charAt(end) == '\t')) {
+				end++;
+			}
+			if (source.startsWith(newline(), end)) {
+				end += newline().length();
+			} else {
+				end = imp.end();
+			}
+			edits.add(new Replacement(imp.start(), end, first ? added.toString() : ""));
+			first = false;
+		}
+	}
+
+	private String apply(final List<Replacement> edits) {
+		edits.sort((a, b) -> Integer.compare(a.start(), b.start()));
+		final StringBuilder sb = new StringBuilder(source.length());
+		int last = 0;
+		for (final Replacement edit : edits) {
+			if (edit.start() < last) {
+				throw new Unsupported("overlapping annotations");
+			}
+			sb.append(source, last, edit.start()).append(edit.text());
+			last = edit.end();
+		}
+		return sb.append(source, last, source.length()).toString();
+	}
+
+	private String newline() {
+		return source.contains("\r\n") ? "\r\n" : "\n";
+	}
+
+	private String indent(final int offset) {
+		final int lineStart = source.lastIndexOf('\n', offset - 1) + 1;
+		int end = lineStart;
+		while (end < offset && Character.isWhitespace(source.charAt(end))) {
+			end++;
+		}
+		return source.substring(lineStart, end);
+	}
+
+	private List<Use> group(final Use use) {
+		return uses.stream().filter(x -> x.group() == use.group()).toList();
+	}
+
+	@Nullable
+	private String resolve(final String name) {
+		return name.indexOf('.') >= 0 ? name : types.get(name);
+	}
+
+	private static String simpleName(final String name) {
+		return name.substring(name.lastIndexOf('.') + 1);
+	}
+
+	// Imports and annotation uses.
+
+	private int readImports() {
+		int i = 0;
+		if (is(i, "package")) {
+			i = skipTo(i, ";") + 1;
+		}
+		while (is(i, "import")) {
+			final boolean isStatic = is(i + 1, "static");
+			final int end = skipTo(i, ";");
+			final StringBuilder name = new StringBuilder();
+			for (int j = isStatic ? i + 2 : i + 1; j < end; j++) {
+				name.append(tokens.get(j).text());
+			}
+			final Import imp = new Import(name.toString(), isStatic, tokens.get(i).start(), tokens.get(end).end());
+			imports.add(imp);
+			classify(imp);
+			i = end + 1;
+		}
+		return i;
+	}
+
+	private void classify(final Import imp) {
+		final String name = imp.name();
+		if (imp.isStatic() || name.endsWith(".*")) {
+			if (name.startsWith(SW2)) {
+				throw new Unsupported("import " + name);
+			}
+			if (!imp.isStatic()) {
+				wildcards.add(name.substring(0, name.length() - 2));
+			}
+			return;
+		}
+		final String simpleName = simpleName(name);
+		types.put(simpleName, name);
+		if (name.equals(SW2 + simpleName)) {
+			if (!SUPPORTED.contains(simpleName)) {
+				throw new Unsupported("import " + name);
+			}
+			sw2.add(simpleName);
+			sw2Imports.add(imp);
+		}
+	}
+
+	/**
+	 * Top level annotations, grouped when they directly follow each other as on
+	 * a declaration or a parameter. Annotation arguments are skipped.
+	 */
+	private void scan(final int from) {
+		int group = -1;
+		int groupEnd = -1;
+		for (int i = from; i < tokens.size(); i++) {
+			if (!symbol(i, '@') || i + 1 >= tokens.size() || tokens.get(i + 1).kind() != Kind.IDENT || is(i + 1, "interface")) {
+				continue;
+			}
+			final StringBuilder name = new StringBuilder(tokens.get(i + 1).text());
+			int j = i + 2;
+			while (symbol(j, '.') && j + 1 < tokens.size() && tokens.get(j + 1).kind() == Kind.IDENT) {
+				name.append('.').append(tokens.get(j + 1).text());
+				j += 2;
+			}
+			if (symbol(j, '(')) {
+				j = closing(j) + 1;
+			}
+			if (i != groupEnd) {
+				group++;
+			}
+			uses.add(new Use(name.toString(), i, group));
+			groupEnd = j;
+			i = j - 1;
+		}
+	}
+
+	private int closing(final int open) {
+		int depth = 0;
+		for (int i = open; i < tokens.size(); i++) {
+			if (symbol(i, '(')) {
+				depth++;
+			} else if (symbol(i, ')') && --depth == 0) {
+				return i;
+			}
+		}
+		throw new Unsupported("unbalanced parentheses");
+	}
+
+	private int skipTo(final int from, final String text) {
+		for (int i = from; i < tokens.size(); i++) {
+			if (text.equals(tokens.get(i).text())) {
+				return i;
+			}
+		}
+		throw new Unsupported("missing " + text);
+	}
+
+	private boolean is(final int i, final String text) {
+		return i >= 0 && i < tokens.size() && tokens.get(i).kind() == Kind.IDENT && text.equals(tokens.get(i).text());
+	}
+
+	private boolean symbol(final int i, final char c) {
+		return i >= 0 && i < tokens.size() && tokens.get(i).kind() == Kind.SYMBOL && tokens.get(i).text().charAt(0) == c;
+	}
+
+	// Annotation parser, restricted to literal values.
+
+	private Ann annotation() {
+		final int start = tokens.get(pos).start();
+		expect('@');
+		final StringBuilder name = new StringBuilder(ident());
+		while (symbol(pos, '.')) {
+			pos++;
+			name.append('.').append(ident());
+		}
+		final Map<String, Value> attrs = new LinkedHashMap<>();
+		boolean positional = false;
+		if (symbol(pos, '(')) {
+			pos++;
+			if (symbol(pos, ')')) {
+				// Nothing.
+			} else if (pos + 1 < tokens.size() && tokens.get(pos).kind() == Kind.IDENT && symbol(pos + 1, '=')) {
+				do {
+					final String key = ident();
+					expect('=');
+					if (attrs.put(key, value()) != null) {
+						throw new Unsupported("duplicate attribute " + key);
+					}
+				} while (accept(','));
+			} else {
+				attrs.put("value", value());
+				positional = true;
+			}
+			expect(')');
+		}
+		return new Ann(name.toString(), attrs, positional, start, tokens.get(pos - 1).end());
+	}
+
+	private Value value() {
+		if (pos >= tokens.size()) {
+			throw new Unsupported("truncated annotation");
+		}
+		final Token token = tokens.get(pos);
+		switch (token.kind()) {
+		case STRING:
+			pos++;
+			return new Value(ValueKind.STRING, token.text(), List.of(), null);
+		case NUMBER:
+			pos++;
+			return new Value(ValueKind.NUMBER, token.text(), List.of(), null);
+		case IDENT:
+			if ("true".equals(token.text()) || "false".equals(token.text())) {
+				pos++;
+				return new Value(ValueKind.BOOLEAN, token.text(), List.of(), null);
+			}
+			final StringBuilder name = new StringBuilder(ident());
+			while (symbol(pos, '.')) {
+				pos++;
+				name.append('.').append(ident());
+			}
+			return new Value(name.toString().endsWith(".class") ? ValueKind.CLASS : ValueKind.NAME, name.toString(), List.of(), null);
+		case SYMBOL:
+			if (symbol(pos, '@')) {
+				final Ann ann = annotation();
+				return new Value(ValueKind.ANNOTATION, source.substring(ann.start(), ann.end()), List.of(), ann);
+			}
+			if (symbol(pos, '{')) {
+				pos++;
+				final List<Value> elements = new ArrayList<>();
+				while (!symbol(pos, '}')) {
+					elements.add(value());
+					if (!accept(',')) {
+						break;
+					}
+				}
+				expect('}');
+				return new Value(ValueKind.ARRAY, source.substring(token.start(), tokens.get(pos - 1).end()), elements, null);
+			}
+			throw new Unsupported("expression at " + token.text());
+		default:
+			throw new Unsupported("value " + token.text());
+		}
+	}
+
+	private String ident() {
+		if (pos >= tokens.size() || tokens.get(pos).kind() != Kind.IDENT) {
+			throw new Unsupported("identifier expected");
+		}
+		return tokens.get(pos++).text();
+	}
+
+	private void expect(final char c) {
+		if (!accept(c)) {
+			throw new Unsupported("'" + c + "' expected");
+		}
+	}
+
+	private boolean accept(final char c) {
+		if (symbol(pos, c)) {
+			pos++;
+			return true;
+		}
+		return false;
+	}
+
+	private static Value literal(final Value value, final ValueKind kind) {
+		if (value.kind() != kind) {
+			throw new Unsupported("literal expected: " + value.source());
+		}
+		return value;
+	}
+
+	private static Value literal(final Value value) {
+		if (value.kind() != ValueKind.STRING && value.kind() != ValueKind.NUMBER && value.kind() != ValueKind.BOOLEAN) {
+			throw new Unsupported("literal expected: " + value.source());
+		}
+		return value;
+	}
+
+	private static List<Value> elements(@Nullable final Value value) {
+		if (value == null) {
+			return List.of();
+		}
+		return value.kind() == ValueKind.ARRAY ? value.elements() : List.of(value);
+	}
+
+	private static List<Value> nonEmpty(final List<Value> values) {
+		return values.stream().filter(x -> !isEmpty(x)).toList();
+	}
+
+	private static boolean isEmpty(@Nullable final Value value) {
+		return value == null || (value.kind() == ValueKind.STRING && "\"\"".equals(value.source()));
+	}
+
+	private static boolean isTrue(@Nullable final Value value) {
+		return value != null && value.kind() == ValueKind.BOOLEAN && "true".equals(value.source());
+	}
+
+	private static boolean isVoid(@Nullable final Value value) {
+		return value == null || value.kind() != ValueKind.CLASS || VOID.contains(value.source().substring(0, value.source().length() - ".class".length()));
+	}
+
+	/**
+	 * Value of a plain string literal, {@code null} for anything else.
+	 */
+	@Nullable
+	private static String string(@Nullable final Value value) {
+		if (value == null || value.kind() != ValueKind.STRING || value.source().startsWith("\"\"\"") || value.source().indexOf('\\') >= 0) {
+			return null;
+		}
+		return value.source().substring(1, value.source().length() - 1);
+	}
+
+	// Tokenizer.
+
+	/**
+	 * Tokens of {@code source}; comments are skipped unless {@code comments},
+	 * which gives them as single tokens without their trailing blanks.
+	 */
+	private static List<Token> tokenize(final String source, final boolean comments) {
+		final List<Token> ret = new ArrayList<>();
+		final int n = source.length();
+		int i = 0;
+		while (i < n) {
+			final char c = source.charAt(i);
+			final int start = i;
+			final Kind kind;
+			if (Character.isWhitespace(c)) {
+				i++;
+				continue;
+			}
+			if (source.startsWith("//", i)) {
+				final int end = source.indexOf('\n', i);
+				i = end < 0 ? n : end;
+				if (comments) {
+					ret.add(new Token(Kind.COMMENT, source.substring(start, i).stripTrailing(), start, i));
+				}
+				continue;
+			}
+			if (source.startsWith("/*", i)) {
+				final int end = source.indexOf("*/", i + 2);
+				if (end < 0) {
+					throw new Unsupported("unterminated comment");
+				}
+				i = end + 2;
+				if (comments) {
+					ret.add(new Token(Kind.COMMENT, source.substring(start, i), start, i));
+				}
+				continue;
+			}
+			if (source.startsWith("\"\"\"", i)) {
+				i = quoted(source, i + 3, "\"\"\"", true);
+				kind = Kind.STRING;
+			} else if (c == '"') {
+				i = quoted(source, i + 1, "\"", false);
+				kind = Kind.STRING;
+			} else if (c == '\'') {
+				i = quoted(source, i + 1, "'", false);
+				kind = Kind.CHAR;
+			} else if (Character.isJavaIdentifierStart(c)) {
+				while (i < n && Character.isJavaIdentifierPart(source.charAt(i))) {
+					i++;
+				}
+				kind = Kind.IDENT;
+			} else if (Character.isDigit(c)) {
+				while (i < n && (Character.isLetterOrDigit(source.charAt(i)) || source.charAt(i) == '_' || source.charAt(i) == '.')) {
+					i++;
+				}
+				kind = Kind.NUMBER;
+			} else {
+				i++;
+				kind = Kind.SYMBOL;
+			}
+			ret.add(new Token(kind, source.substring(start, i), start, i));
+		}
+		return ret;
+	}
+
+	private static int quoted(final String source, final int from, final String close, final boolean multiline) {
+		int i = from;
+		while (i < source.length()) {
+			final char c = source.charAt(i);
+			if (c == '\\') {
+				i += 2;
+				continue;
+			}
+			if (!multiline && c == '\n') {
+				break;
+			}
+			if (source.startsWith(close, i)) {
+				return i + close.length();
+			}
+			i++;
+		}
+		throw new Unsupported("unterminated literal");
+	}
+
+	private enum Kind {
+		IDENT, STRING, CHAR, NUMBER, SYMBOL, COMMENT
+	}
+
+	private enum ValueKind {
+		STRING, NUMBER, BOOLEAN, CLASS, NAME, ARRAY, ANNOTATION
+	}
+
+	private record Token(Kind kind, String text, int start, int end) {
+		//
+	}
+
+	private record Import(String name, boolean isStatic, int start, int end) {
+		//
+	}
+
+	/**
+	 * Top level annotation starting at token {@code at}.
+	 */
+	private record Use(String name, int at, int group) {
+		//
+	}
+
+	private record Ann(String name, Map<String, Value> attrs, boolean positional, int start, int end) {
+		//
+	}
+
+	private record Value(ValueKind kind, String source, List<Value> elements, @Nullable Ann annotation) {
+		//
+	}
+
+	private record Replacement(int start, int end, String text) {
+		//
+	}
+
+	/**
+	 * Layout the fast path does not handle; the file goes through the recipes.
+	 */
+	private static final class Unsupported extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		Unsupported(final String message) {
+			super(message, null, false, false);
+		}
+	}
+}
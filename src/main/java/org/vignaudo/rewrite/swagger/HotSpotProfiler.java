@@ -0,0 +1,234 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.internal.lang.Nullable;
+
+/**
+ * Time spent on each source file, by phase, to find the files that make a
+ * migration slow and why.
+ *
+ * <p>
+ * Like {@link MigrationMetrics}, the instance is shared through the
+ * {@link ExecutionContext} but only when profiling was requested; the hooks
+ * are no-ops otherwise. {@link MigrationMetrics#check} times the precondition
+ * and the visitor of each recipe, {@link DeclarationVisitor} marks the end of
+ * the traversal so the {@code doAfterVisit} import changes that follow are
+ * timed apart, and {@link #time(ExecutionContext, MigrationMetrics.Phase, Supplier)}
+ * takes the {@code maybeAutoFormat} calls out of the visit time. Files are
+ * visited one at a time by a recipe run, so the visit in progress is kept on
+ * the instance; its methods may still be visited in parallel.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+public final class HotSpotProfiler {
+	private static final String KEY = HotSpotProfiler.class.getName();
+
+	public enum Phase {
+		PARSE, PRECONDITION, VISIT, FORMAT, IMPORTS, PRINT
+	}
+
+	private final Map<Path, Map<String, LongAdder>> files = new ConcurrentHashMap<>();
+	@Nullable
+	private volatile Visit current;
+
+	@Nullable
+	public static HotSpotProfiler get(final ExecutionContext ctx) {
+		return ctx.getMessage(KEY);
+	}
+
+	/**
+	 * Make {@code ctx} report into this instance.
+	 */
+	public void attach(final ExecutionContext ctx) {
+		ctx.putMessage(KEY, this);
+	}
+
+	public void record(final Path file, final Phase phase, final long nanos) {
+		record(file, label(phase, null), nanos);
+	}
+
+	void record(final Path file, final String label, final long nanos) {
+		files.computeIfAbsent(file, x -> new ConcurrentHashMap<>()).computeIfAbsent(label, x -> new LongAdder()).add(nanos);
+	}
+
+	/**
+	 * Start timing the visit of {@code file} by {@code recipe}; the visit ends
+	 * when the returned value is closed.
+	 */
+	Visit enter(final Path file, final String recipe) {
+		final Visit ret = new Visit(file, recipe);
+		current = ret;
+		return ret;
+	}
+
+	/**
+	 * The visitor of {@code ctx} has traversed the whole tree; the remaining
+	 * visit time goes to the import changes.
+	 */
+	static void traversed(final ExecutionContext ctx) {
+		final HotSpotProfiler profiler = get(ctx);
+		final Visit visit = profiler == null ? null : profiler.current;
+		if (visit != null && visit.traversed == 0) {
+			visit.traversed = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Run {@code action}, timed as {@code phase} in the metrics and, when
+	 * profiling, as part of the visit in progress.
+	 */
+	static <T> T time(final ExecutionContext ctx, final MigrationMetrics.Phase phase, final Supplier<T> action) {
+		final long start = System.nanoTime();
+		try {
+			return action.get();
+		} finally {
+			final long nanos = System.nanoTime() - start;
+			MigrationMetrics.get(ctx).record(phase, nanos);
+			final HotSpotProfiler profiler = get(ctx);
+			final Visit visit = profiler == null ? null : profiler.current;
+			if (visit != null && phase == MigrationMetrics.Phase.FORMAT) {
+				visit.format.add(nanos);
+			}
+		}
+	}
+
+	/**
+	 * Files by decreasing total time, at most {@code count}.
+	 */
+	public List<FileProfile> top(final int count) {
+		return files.entrySet().stream()
+				.map(x -> profile(x.getKey(), x.getValue()))
+				.sorted(Comparator.comparing(FileProfile::total).reversed().thenComparing(FileProfile::file))
+				.limit(count)
+				.toList();
+	}
+
+	private static FileProfile profile(final Path file, final Map<String, LongAdder> phases) {
+		final Map<String, Duration> ret = new TreeMap<>();
+		phases.forEach((k, v) -> ret.put(k, Duration.ofNanos(v.sum())));
+		return new FileProfile(file, ret);
+	}
+
+	/**
+	 * The {@code count} slowest files, one per line, with their dominant phase
+	 * and the time of every phase.
+	 */
+	public String report(final int count) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("Slowest ").append(Math.min(count, files.size())).append(" of ").append(files.size()).append(" files:\n");
+		for (final FileProfile profile : top(count)) {
+			sb.append(String.format(Locale.ROOT, "%10.1f ms  %s  dominant: %s (%d%%)  ", millis(profile.total()), profile.file(), profile.dominant(),
+					Math.round(profile.share(profile.dominant()) * 100)));
+			sb.append(profile.phases().entrySet().stream()
+					.map(x -> String.format(Locale.ROOT, "%s=%.1f", x.getKey(), millis(x.getValue())))
+					.collect(Collectors.joining(" ")));
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	public void writeReport(final Path target, final int count) {
+		try {
+			Files.writeString(target, report(count), StandardCharsets.UTF_8);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static double millis(final Duration duration) {
+		return duration.toNanos() / 1e6;
+	}
+
+	static String label(final Phase phase, @Nullable final String recipe) {
+		final String name = phase.name().toLowerCase(Locale.ROOT);
+		return recipe == null ? name : name + " " + recipe;
+	}
+
+	/**
+	 * Time of one file by phase; precondition, visit and import times are
+	 * labelled with their recipe, as in {@code "visit Sw3ResponseRecipe"}.
+	 */
+	public record FileProfile(Path file, Map<String, Duration> phases) {
+		public Duration total() {
+			return phases.values().stream().reduce(Duration.ZERO, Duration::plus);
+		}
+
+		public String dominant() {
+			return phases.entrySet().stream()
+					.max(Map.Entry.comparingByValue())
+					.map(Map.Entry::getKey)
+					.orElse("");
+		}
+
+		public double share(final String phase) {
+			final long total = total().toNanos();
+			return total == 0 ? 0 : (double) phases.getOrDefault(phase, Duration.ZERO).toNanos() / total;
+		}
+	}
+
+	/**
+	 * Visit of one file by one recipe; its time is split on close between the
+	 * traversal, the formatting done during the traversal and the import
+	 * changes run after it.
+	 */
+	final class Visit implements AutoCloseable {
+		private final Path file;
+		private final String recipe;
+		private final long start = System.nanoTime();
+		private final LongAdder format = new LongAdder();
+		private volatile long traversed;
+
+		private Visit(final Path file, final String recipe) {
+			this.file = file;
+			this.recipe = recipe;
+		}
+
+		@Override
+		public void close() {
+			final long end = System.nanoTime();
+			final long traversal = (traversed == 0 ? end : traversed) - start;
+			final long formatting = Math.min(format.sum(), traversal);
+			record(file, label(Phase.VISIT, recipe), traversal - formatting);
+			if (formatting > 0) {
+				record(file, label(Phase.FORMAT, null), formatting);
+			}
+			record(file, label(Phase.IMPORTS, recipe), end - start - traversal);
+			if (current == this) {
+				current = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,212 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.openrewrite.Recipe;
+import org.openrewrite.SourceFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.cfg.ConstructorDetector;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+
+/**
+ * On-disk cache of parsed, type-attributed source files.
+ *
+ * <p>
+ * Entries are keyed by the SHA-256 of the source path, the file content, the
+ * classpath used to attribute it and the rewrite version, and stored as Smile
+ * encoded LSTs. The path is part of the key so that identical files never
+ * share the node ids of one tree. The file attributes are not stored: they
+ * describe the file on disk, not its content, and are read again by the
+ * caller. Loading maps the entry in memory instead of copying it on the heap.
+ * A corrupted or incompatible entry is deleted and reported as a miss so the
+ * file gets parsed again.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+public class LstCache {
+	private static final Logger LOG = LoggerFactory.getLogger(LstCache.class);
+	private static final String SUFFIX = ".lst";
+
+	private final Path directory;
+	private final byte[] salt;
+	private final ObjectMapper mapper;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param classpathKey Identifies the classpath the parser attributes types
+	 *                     with, see {@link #classpathKey(Collection)}; entries
+	 *                     of another classpath are never reused.
+	 */
+	public LstCache(final Path directory, final String classpathKey) {
+		this.directory = directory;
+		this.salt = (classpathKey + '|' + Recipe.class.getPackage().getImplementationVersion() + '|').getBytes(StandardCharsets.UTF_8);
+		this.mapper = newMapper();
+	}
+
+	/**
+	 * Key of a parser classpath, the SHA-256 of the name and content of each
+	 * jar, and of the relative path, size and modification time of each file
+	 * of a class directory, so that upgrading or rebuilding an entry
+	 * invalidates the trees attributed with it.
+	 */
+	public static String classpathKey(final Collection<Path> classpath) {
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			for (final Path entry : classpath) {
+				digest.update(entry.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) 0);
+				if (Files.isDirectory(entry)) {
+					try (Stream<Path> files = Files.walk(entry)) {
+						for (final Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+							digest.update((entry.relativize(file).toString().replace('\\', '/') + '|' + Files.size(file) + '|'
+									+ Files.getLastModifiedTime(file).toMillis()).getBytes(StandardCharsets.UTF_8));
+						}
+					}
+				} else if (Files.isRegularFile(entry)) {
+					try (InputStream in = new DigestInputStream(Files.newInputStream(entry), digest)) {
+						in.transferTo(OutputStream.nullOutputStream());
+					}
+				}
+				digest.update((byte) 0);
+			}
+			return HexFormat.of().formatHex(digest.digest());
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static ObjectMapper newMapper() {
+		final ObjectMapper ret = new ObjectMapper(new SmileFactory());
+		ret.setConstructorDetector(ConstructorDetector.USE_PROPERTIES_BASED);
+		ret.registerModule(new ParameterNamesModule());
+		ret.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+		ret.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+		ret.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+		ret.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE);
+		ret.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+		ret.setVisibility(PropertyAccessor.CREATOR, JsonAutoDetect.Visibility.PUBLIC_ONLY);
+		return ret;
+	}
+
+	/**
+	 * Tree previously stored for {@code content} at {@code sourcePath}, without
+	 * file attributes.
+	 */
+	public Optional<SourceFile> load(final byte[] content, final Path sourcePath) {
+		final Path entry = entry(content, sourcePath);
+		if (!Files.isRegularFile(entry)) {
+			misses.incrementAndGet();
+			return Optional.empty();
+		}
+		try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+			final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			try (InputStream in = new ByteBufferBackedInputStream(buffer)) {
+				final SourceFile ret = mapper.readValue(in, SourceFile.class);
+				hits.incrementAndGet();
+				return Optional.of(ret.withSourcePath(sourcePath));
+			}
+		} catch (final IOException | RuntimeException e) {
+			LOG.warn("Dropping unreadable cache entry {}.", entry, e);
+			delete(entry);
+			misses.incrementAndGet();
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Store {@code sourceFile} for {@code content}; the entry is written to a
+	 * temporary file first so concurrent readers never see a partial entry.
+	 */
+	public void store(final byte[] content, final SourceFile sourceFile) {
+		final Path entry = entry(content, sourceFile.getSourcePath());
+		try {
+			Files.createDirectories(directory);
+			final Path tmp = Files.createTempFile(directory, entry.getFileName().toString(), ".tmp");
+			try (OutputStream out = Files.newOutputStream(tmp)) {
+				mapper.writeValue(out, sourceFile.withFileAttributes(null));
+			} catch (final IOException | RuntimeException e) {
+				delete(tmp);
+				throw e;
+			}
+			Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	private Path entry(final byte[] content, final Path sourcePath) {
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(salt);
+			digest.update(sourcePath.toString().replace('\\', '/').getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			return directory.resolve(HexFormat.of().formatHex(digest.digest(content)) + SUFFIX);
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void delete(final Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (final IOException e) {
+			LOG.debug("Unable to delete {}.", path, e);
+		}
+	}
+}
@@ -0,0 +1,332 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openrewrite.internal.lang.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vignaudo.rewrite.swagger.MigrationRunner.RunSummary;
+
+import jdk.net.ExtendedSocketOptions;
+import jdk.net.UnixDomainPrincipal;
+
+/**
+ * Keeps a {@link MigrationRunner} in a long lived JVM behind a UNIX domain
+ * socket, so the parser classpaths, the {@link LstCache} when one is set and
+ * the JIT stay warm between invocations.
+ *
+ * <p>
+ * Each request is still a run of its own, with a new
+ * {@link org.openrewrite.ExecutionContext}: the {@link ConversionCache}, the
+ * {@link ApiModelIndex} and the {@link TypeUsageIndex} depend on the sources
+ * of the request and are rebuilt every time, so that a model edited between
+ * two requests is never converted from a stale index.
+ *
+ * <p>
+ * Requests are lines of text, one connection per request:
+ * <ul>
+ * <li>{@code MIGRATE <baseDir>}, one relative path per line and an empty
+ * line; answered by {@code OK <files> <changed> <millis>};</li>
+ * <li>{@code PING}, answered by {@code OK};</li>
+ * <li>{@code SHUTDOWN}, answered by {@code OK} before the daemon stops.</li>
+ * </ul>
+ * Failures are answered by {@code ERROR <message>} on a single line. Requests
+ * are served one at a time on the daemon thread, which therefore keeps its
+ * parser.
+ *
+ * <p>
+ * The socket is only accessible to its owner, and connections of other users
+ * are dropped where the platform reports the peer. The base directory of a
+ * request must be absolute and, when the daemon has a root, inside it; the
+ * sources must stay inside the base directory.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+public class MigrationDaemon implements AutoCloseable {
+	private static final Logger LOG = LoggerFactory.getLogger(MigrationDaemon.class);
+
+	private final Path socket;
+	private final MigrationRunner runner;
+	private final ServerSocketChannel server;
+	@Nullable
+	private final Path root;
+	private final String owner;
+	private final Thread thread;
+
+	private MigrationDaemon(final Path socket, final MigrationRunner runner, final ServerSocketChannel server, @Nullable final Path root, final String owner) {
+		this.socket = socket;
+		this.runner = runner;
+		this.server = server;
+		this.root = root;
+		this.owner = owner;
+		this.thread = new Thread(this::serve, "migration-daemon");
+	}
+
+	/**
+	 * Listen on {@code socket} and serve requests with {@code runner}, which is
+	 * closed with the daemon.
+	 */
+	public static MigrationDaemon start(final Path socket, final MigrationRunner runner) {
+		return start(socket, runner, null);
+	}
+
+	/**
+	 * As {@link #start(Path, MigrationRunner)}, refusing base directories
+	 * outside {@code root} when it is not {@code null}.
+	 */
+	public static MigrationDaemon start(final Path socket, final MigrationRunner runner, @Nullable final Path root) {
+		try {
+			final Path realRoot = root == null ? null : root.toRealPath();
+			Files.deleteIfExists(socket);
+			final ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+			server.bind(UnixDomainSocketAddress.of(socket));
+			ownerOnly(socket);
+			final MigrationDaemon ret = new MigrationDaemon(socket, runner, server, realRoot, Files.getOwner(socket).getName());
+			ret.thread.start();
+			LOG.info("Migration daemon listening on {}.", socket);
+			return ret;
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public static void main(final String[] args) throws InterruptedException {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("Usage: MigrationDaemon <socket> [<root>]");
+			System.exit(1);
+		}
+		final MigrationDaemon daemon = start(Path.of(args[0]), MigrationRunner.composite(), args.length == 2 ? Path.of(args[1]) : null);
+		Runtime.getRuntime().addShutdownHook(new Thread(daemon::close));
+		daemon.thread.join();
+	}
+
+	/**
+	 * Client side of {@code MIGRATE}.
+	 */
+	public static RunSummary migrate(final Path socket, final Path baseDir, final List<Path> sources) {
+		final List<String> request = new ArrayList<>();
+		request.add("MIGRATE " + baseDir.toAbsolutePath());
+		sources.forEach(x -> request.add(x.toString()));
+		request.add("");
+		final String[] answer = send(socket, request).split(" ");
+		return new RunSummary(Integer.parseInt(answer[1]), Integer.parseInt(answer[2]), Duration.ofMillis(Long.parseLong(answer[3])));
+	}
+
+	/**
+	 * Client side of {@code SHUTDOWN}.
+	 */
+	public static void shutdown(final Path socket) {
+		send(socket, List.of("SHUTDOWN"));
+	}
+
+	/**
+	 * Restrict {@code socket} to its owner; connecting to a UNIX domain socket
+	 * requires write access to it.
+	 */
+	private static void ownerOnly(final Path socket) throws IOException {
+		if (Files.getFileAttributeView(socket, PosixFileAttributeView.class) == null) {
+			LOG.warn("Unable to restrict {} to its owner on this file system.", socket);
+			return;
+		}
+		Files.setPosixFilePermissions(socket, PosixFilePermissions.fromString("rw-------"));
+	}
+
+	private static String send(final Path socket, final List<String> lines) {
+		try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+				PrintWriter out = new PrintWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+				BufferedReader in = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8))) {
+			lines.forEach(out::println);
+			out.flush();
+			final String answer = in.readLine();
+			if (answer == null || !answer.startsWith("OK")) {
+				throw new IllegalStateException("Daemon request failed: " + answer);
+			}
+			return answer;
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void serve() {
+		while (server.isOpen()) {
+			try (SocketChannel channel = server.accept()) {
+				if (!trusted(channel)) {
+					continue;
+				}
+				if (!handle(channel)) {
+					break;
+				}
+			} catch (final AsynchronousCloseException e) {
+				break;
+			} catch (final IOException e) {
+				LOG.warn("Daemon connection failed.", e);
+			}
+		}
+		closeServer();
+	}
+
+	/**
+	 * Serve one request; {@code false} once the daemon must stop.
+	 */
+	private boolean handle(final SocketChannel channel) throws IOException {
+		final BufferedReader in = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+		final PrintWriter out = new PrintWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+		final String command = in.readLine();
+		boolean ret = true;
+		if (command == null) {
+			return true;
+		}
+		if ("PING".equals(command)) {
+			out.println("OK");
+		} else if ("SHUTDOWN".equals(command)) {
+			out.println("OK");
+			ret = false;
+		} else if (command.startsWith("MIGRATE ")) {
+			final List<String> lines = new ArrayList<>();
+			for (String line = in.readLine(); line != null && !line.isEmpty(); line = in.readLine()) {
+				lines.add(line);
+			}
+			try {
+				final Path baseDir = baseDir(command.substring("MIGRATE ".length()));
+				final RunSummary summary = runner.run(baseDir, sources(baseDir, lines));
+				out.println("OK " + summary.files() + " " + summary.changed() + " " + summary.wallTime().toMillis());
+			} catch (final RuntimeException e) {
+				LOG.warn("Request {} failed.", command, e);
+				out.println("ERROR " + message(e));
+			}
+		} else {
+			out.println("ERROR Unknown command: " + command);
+		}
+		out.flush();
+		return ret;
+	}
+
+	/**
+	 * {@code false} when the peer of {@code channel} is another user than the
+	 * owner of the socket.
+	 */
+	private boolean trusted(final SocketChannel channel) throws IOException {
+		if (!channel.supportedOptions().contains(ExtendedSocketOptions.SO_PEERCRED)) {
+			return true;
+		}
+		final UnixDomainPrincipal peer = channel.getOption(ExtendedSocketOptions.SO_PEERCRED);
+		if (owner.equals(peer.user().getName())) {
+			return true;
+		}
+		LOG.warn("Connection of {} refused.", peer.user().getName());
+		return false;
+	}
+
+	private Path baseDir(final String value) {
+		final Path path = Path.of(value);
+		if (!path.isAbsolute()) {
+			throw new IllegalArgumentException("Base directory is not absolute: " + value);
+		}
+		final Path ret;
+		try {
+			ret = path.toRealPath();
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if (!Files.isDirectory(ret)) {
+			throw new IllegalArgumentException("Base directory is not a directory: " + value);
+		}
+		if (root != null && !ret.startsWith(root)) {
+			throw new IllegalArgumentException("Base directory is outside of " + root + ": " + value);
+		}
+		return ret;
+	}
+
+	/**
+	 * The relative paths in {@code lines}, refusing those that resolve outside
+	 * {@code baseDir}, following symbolic links when the file exists.
+	 */
+	private static List<Path> sources(final Path baseDir, final List<String> lines) {
+		final List<Path> ret = new ArrayList<>();
+		for (final String line : lines) {
+			final Path source = Path.of(line).normalize();
+			final Path resolved = baseDir.resolve(source);
+			if (source.isAbsolute() || !resolved.startsWith(baseDir) || !inside(baseDir, resolved)) {
+				throw new IllegalArgumentException("Source is outside of the base directory: " + line);
+			}
+			ret.add(source);
+		}
+		return ret;
+	}
+
+	private static boolean inside(final Path baseDir, final Path file) {
+		if (!Files.exists(file)) {
+			return true;
+		}
+		try {
+			return file.toRealPath().startsWith(baseDir);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * The message of {@code e} on one line, or its class name when it has none.
+	 */
+	static String message(final Throwable e) {
+		final String message = e.getMessage();
+		if (message == null || message.isBlank()) {
+			return e.getClass().getName();
+		}
+		return message.replace("\\", "\\\\").replace("\r", "\\r").replace("\n", "\\n");
+	}
+
+	private void closeServer() {
+		try {
+			server.close();
+			Files.deleteIfExists(socket);
+		} catch (final IOException e) {
+			LOG.warn("Unable to remove {}.", socket, e);
+		}
+	}
+
+	@Override
+	public void close() {
+		closeServer();
+		try {
+			thread.join();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		runner.close();
+	}
+}
@@ -0,0 +1,260 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.SourceFile;
+import org.openrewrite.Tree;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.lang.Nullable;
+
+/**
+ * Live counters and timers of a migration run.
+ *
+ * <p>
+ * The instance is shared through the {@link ExecutionContext}; recipes update
+ * it while they visit and the {@link MigrationRunner} exposes it through JMX
+ * and a Prometheus text file. Updates only touch {@link LongAdder}s, so
+ * concurrent visitors do not contend on them.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+public final class MigrationMetrics implements MigrationMetricsMXBean {
+	private static final String KEY = MigrationMetrics.class.getName();
+
+	public enum Phase {
+		PARSE, VISIT, FORMAT, PRINT
+	}
+
+	private final Map<String, FileCounters> files = new ConcurrentHashMap<>();
+	private final LongAdder runFiles = new LongAdder();
+	private final LongAdder runChanged = new LongAdder();
+	private final Map<String, LongAdder> conversions = new ConcurrentHashMap<>();
+	private final Map<Phase, Timer> timers = new EnumMap<>(Phase.class);
+
+	public MigrationMetrics() {
+		for (final Phase phase : Phase.values()) {
+			timers.put(phase, new Timer());
+		}
+	}
+
+	public static MigrationMetrics get(final ExecutionContext ctx) {
+		return ContextMessages.computeIfAbsent(ctx, KEY, MigrationMetrics::new);
+	}
+
+	/**
+	 * Make {@code ctx} report into this instance.
+	 */
+	public void attach(final ExecutionContext ctx) {
+		ctx.putMessage(KEY, this);
+	}
+
+	/**
+	 * Same as {@code Preconditions.check(precondition, visitor)}, counting
+	 * each source file as skipped, visited or changed for {@code recipe} and
+	 * timing the visit, per file as well when a {@link HotSpotProfiler} is
+	 * attached.
+	 */
+	static TreeVisitor<?, ExecutionContext> check(final String recipe, final TreeVisitor<?, ExecutionContext> precondition, final TreeVisitor<?, ExecutionContext> visitor) {
+		return new TreeVisitor<Tree, ExecutionContext>() {
+			@Override
+			public boolean isAcceptable(final SourceFile sourceFile, final ExecutionContext ctx) {
+				return visitor.isAcceptable(sourceFile, ctx);
+			}
+
+			@Override
+			public @Nullable Tree visit(@Nullable final Tree tree, final ExecutionContext ctx) {
+				final MigrationMetrics metrics = get(ctx);
+				final FileCounters counters = metrics.files.computeIfAbsent(recipe, x -> new FileCounters());
+				final HotSpotProfiler profiler = tree instanceof SourceFile ? HotSpotProfiler.get(ctx) : null;
+				final long start = System.nanoTime();
+				final boolean skipped = precondition.visit(tree, ctx) == tree;
+				if (profiler != null) {
+					profiler.record(((SourceFile) tree).getSourcePath(), HotSpotProfiler.label(HotSpotProfiler.Phase.PRECONDITION, recipe), System.nanoTime() - start);
+				}
+				if (skipped) {
+					counters.skipped.increment();
+					return tree;
+				}
+				counters.visited.increment();
+				final Tree ret;
+				if (profiler == null) {
+					ret = metrics.time(Phase.VISIT, () -> visitor.visit(tree, ctx));
+				} else {
+					try (HotSpotProfiler.Visit visit = profiler.enter(((SourceFile) tree).getSourcePath(), recipe)) {
+						ret = metrics.time(Phase.VISIT, () -> visitor.visit(tree, ctx));
+					}
+				}
+				if (ret != tree) {
+					counters.changed.increment();
+				}
+				return ret;
+			}
+		};
+	}
+
+	/**
+	 * Count the files of a run once each, whatever the number of recipes that
+	 * visited them.
+	 */
+	public void migrated(final int fileCount, final int changed) {
+		runFiles.add(fileCount);
+		runChanged.add(changed);
+	}
+
+	public void converted(final String kind) {
+		conversions.computeIfAbsent(kind, x -> new LongAdder()).increment();
+	}
+
+	public <T> T time(final Phase phase, final Supplier<T> action) {
+		final long start = System.nanoTime();
+		try {
+			return action.get();
+		} finally {
+			record(phase, System.nanoTime() - start);
+		}
+	}
+
+	public void record(final Phase phase, final long nanos) {
+		final Timer timer = timers.get(phase);
+		timer.count.increment();
+		timer.nanos.add(nanos);
+	}
+
+	@Override
+	public long getFiles() {
+		return runFiles.sum();
+	}
+
+	@Override
+	public long getFilesChanged() {
+		return runChanged.sum();
+	}
+
+	@Override
+	public Map<String, Long> getFilesVisitedByRecipe() {
+		return byRecipe(x -> x.visited);
+	}
+
+	@Override
+	public Map<String, Long> getFilesSkippedByRecipe() {
+		return byRecipe(x -> x.skipped);
+	}
+
+	@Override
+	public Map<String, Long> getFilesChangedByRecipe() {
+		return byRecipe(x -> x.changed);
+	}
+
+	private Map<String, Long> byRecipe(final Function<FileCounters, LongAdder> counter) {
+		final Map<String, Long> ret = new TreeMap<>();
+		files.forEach((k, v) -> ret.put(k, counter.apply(v).sum()));
+		return ret;
+	}
+
+	@Override
+	public Map<String, Long> getConversions() {
+		final Map<String, Long> ret = new TreeMap<>();
+		conversions.forEach((k, v) -> ret.put(k, v.sum()));
+		return ret;
+	}
+
+	@Override
+	public Map<String, Long> getPhaseMillis() {
+		final Map<String, Long> ret = new TreeMap<>();
+		timers.forEach((k, v) -> ret.put(label(k), v.nanos.sum() / 1_000_000));
+		return ret;
+	}
+
+	/**
+	 * The metrics in the Prometheus text exposition format.
+	 */
+	public String toPrometheus() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("# HELP swagger_migration_run_files_total Source files given to the runner, each counted once, by outcome.\n");
+		sb.append("# TYPE swagger_migration_run_files_total counter\n");
+		sample(sb, "swagger_migration_run_files_total", "outcome=\"migrated\"", runFiles.sum());
+		sample(sb, "swagger_migration_run_files_total", "outcome=\"changed\"", runChanged.sum());
+		sb.append("# HELP swagger_migration_files_total Source files seen by each recipe, by outcome.\n");
+		sb.append("# TYPE swagger_migration_files_total counter\n");
+		new TreeMap<>(files).forEach((recipe, v) -> {
+			sample(sb, "swagger_migration_files_total", "recipe=\"" + recipe + "\",outcome=\"skipped\"", v.skipped.sum());
+			sample(sb, "swagger_migration_files_total", "recipe=\"" + recipe + "\",outcome=\"visited\"", v.visited.sum());
+			sample(sb, "swagger_migration_files_total", "recipe=\"" + recipe + "\",outcome=\"changed\"", v.changed.sum());
+		});
+		sb.append("# HELP swagger_migration_conversions_total Converted Swagger 2 annotations, by annotation.\n");
+		sb.append("# TYPE swagger_migration_conversions_total counter\n");
+		getConversions().forEach((k, v) -> sample(sb, "swagger_migration_conversions_total", "annotation=\"" + k + "\"", v));
+		sb.append("# HELP swagger_migration_phase_seconds Time spent in each phase.\n");
+		sb.append("# TYPE swagger_migration_phase_seconds summary\n");
+		timers.forEach((k, v) -> {
+			sb.append("swagger_migration_phase_seconds_sum{phase=\"").append(label(k)).append("\"} ")
+					.append(String.format(Locale.ROOT, "%.6f", v.nanos.sum() / 1e9)).append('\n');
+			sample(sb, "swagger_migration_phase_seconds_count", "phase=\"" + label(k) + "\"", v.count.sum());
+		});
+		return sb.toString();
+	}
+
+	/**
+	 * Replace {@code target} with the current metrics; scrapers never see a
+	 * partially written file.
+	 */
+	public void writePrometheus(final Path target) {
+		try {
+			final Path tmp = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+			Files.writeString(tmp, toPrometheus(), StandardCharsets.UTF_8);
+			Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void sample(final StringBuilder sb, final String name, final String labels, final long value) {
+		sb.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+	}
+
+	private static String label(final Phase phase) {
+		return phase.name().toLowerCase(Locale.ROOT);
+	}
+
+	private static final class FileCounters {
+		private final LongAdder visited = new LongAdder();
+		private final LongAdder skipped = new LongAdder();
+		private final LongAdder changed = new LongAdder();
+	}
+
+	private static final class Timer {
+		private final LongAdder count = new LongAdder();
+		private final LongAdder nanos = new LongAdder();
+	}
+}
@@ -0,0 +1,49 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link MigrationMetrics}.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+public interface MigrationMetricsMXBean {
+
+	/** Source files given to the runner, each counted once. */
+	long getFiles();
+
+	/** Source files changed by the runner, each counted once. */
+	long getFilesChanged();
+
+	/** Source files visited by each recipe. */
+	Map<String, Long> getFilesVisitedByRecipe();
+
+	/** Source files skipped by the precondition of each recipe. */
+	Map<String, Long> getFilesSkippedByRecipe();
+
+	/** Source files changed by each recipe. */
+	Map<String, Long> getFilesChangedByRecipe();
+
+	/** Converted annotations, by Swagger 2 annotation name. */
+	Map<String, Long> getConversions();
+
+	/** Total time of each phase, in milliseconds. */
+	Map<String, Long> getPhaseMillis();
+}
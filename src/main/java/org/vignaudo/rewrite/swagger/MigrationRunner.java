@@ -0,0 +1,885 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.openrewrite.DataTable;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.FileAttributes;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Parser;
+import org.openrewrite.Recipe;
+import org.openrewrite.RecipeRun;
+import org.openrewrite.Result;
+import org.openrewrite.SourceFile;
+import org.openrewrite.config.Environment;
+import org.openrewrite.internal.InMemoryDiffEntry;
+import org.openrewrite.internal.InMemoryLargeSourceSet;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.properties.PropertiesParser;
+import org.openrewrite.xml.XmlParser;
+import org.openrewrite.yaml.YamlParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vignaudo.rewrite.swagger.MigrationMetrics.Phase;
+
+/**
+ * Runs a recipe (by default the Swagger 3 composite) over a set of files of
+ * the working tree and writes the results back in place. Besides Java
+ * sources, {@code pom.xml} and Spring YAML/properties files may be given so
+ * the build is migrated in the same run.
+ *
+ * <p>
+ * In {@link ExecutionMode#VIRTUAL_THREADS} mode, file reading and writing run
+ * on virtual threads while parsing and the recipe run stay on a bounded pool
+ * of platform threads. The recipe itself is executed as a single run over all
+ * parsed files so scanning recipes still see the whole source set.
+ *
+ * <p>
+ * With {@link FastPath#ENABLED}, generated sources are converted by
+ * {@link GeneratedSourceRewriter} without being parsed. Scanning recipes do
+ * not see them, so the fast path leaves to the recipes the {@code @ApiModel}
+ * classes, which feed the {@link ApiModelIndex}, and the sources of modules
+ * with a build or Spring file among the sources, which
+ * {@link SwaggerBuildRecipe} scans; it is off when the recipe generates
+ * OpenAPI documents with {@link OpenApiSpecRecipe}.
+ *
+ * <p>
+ * With {@link #patch(Path)}, the working tree is left untouched and a unified
+ * diff of every changed file is written to a single patch file instead. Each
+ * diff is printed and written as its result is taken from the changeset, and
+ * the result is released before the next one; the recipe run itself still
+ * holds every tree until it returns.
+ *
+ * <p>
+ * With {@link #compactResults(boolean)}, each result is reduced to a
+ * {@link CompactResult} as soon as it is taken from the changeset, and only
+ * the compact result is queued for writing, so the before and after trees of
+ * a file can be collected before the other files are written. The recipe run
+ * holds every before and after tree until it returns, which sets the peak;
+ * compaction lowers the heap retained by the results waiting to be written,
+ * which {@code CompactResultTest} measures.
+ *
+ * <p>
+ * With {@link #hotSpots(Path, int)}, a {@link HotSpotProfiler} times every
+ * file by phase and the slowest files are reported at the end of each run.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+public class MigrationRunner implements AutoCloseable {
+	private static final Logger LOG = LoggerFactory.getLogger(MigrationRunner.class);
+	private static final Duration REPORTER_TIMEOUT = Duration.ofSeconds(10);
+
+	public static final String COMPOSITE_RECIPE = "org.vignaudo.Sw3ResponseRecipe";
+	private static final String[] DEFAULT_CLASSPATH = { "swagger-annotations", "jboss-jaxrs-api" };
+
+	public enum ExecutionMode {
+		/** Everything on the caller thread. */
+		SEQUENTIAL,
+		/** I/O on virtual threads, parsing and visiting on a bounded platform pool. */
+		VIRTUAL_THREADS,
+		/**
+		 * As {@link #VIRTUAL_THREADS}, parsing the files by decreasing estimated
+		 * cost; see {@link WorkScheduler}. Only parsing is scheduled: the recipe
+		 * still visits the files in a single run, in submission order.
+		 */
+		SIZE_AWARE
+	}
+
+	public enum FastPath {
+		/** Every file goes through the recipe. */
+		DISABLED,
+		/**
+		 * Generated sources recognized by {@link GeneratedSourceRewriter} skip the
+		 * recipe. Their output is not formatted: converted annotations keep the
+		 * line layout of the source and the new imports take the place of the
+		 * first Swagger 2 import, so it can differ from the recipe output in
+		 * whitespace and import order, and only there.
+		 */
+		ENABLED,
+		/**
+		 * Both paths run, the recipe output is written and a unified diff is
+		 * logged for each file where the paths differ in more than whitespace and
+		 * import order.
+		 */
+		VERIFY
+	}
+
+	private final Recipe recipe;
+	private final Supplier<JavaParser.Builder<?, ?>> parserFactory;
+	private final ThreadLocal<JavaParser> parsers;
+	private ExecutionMode executionMode = ExecutionMode.SEQUENTIAL;
+	private FastPath fastPath = FastPath.DISABLED;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	@Nullable
+	private LstCache lstCache;
+	private final MigrationMetrics metrics = new MigrationMetrics();
+	@Nullable
+	private Path patchFile;
+	private boolean compactResults;
+	@Nullable
+	private HotSpotProfiler profiler;
+	@Nullable
+	private Path hotSpotReport;
+	private int hotSpotCount;
+	@Nullable
+	private Path metricsFile;
+	private Duration metricsPeriod = Duration.ofSeconds(15);
+	@Nullable
+	private ObjectName mbeanName;
+	@Nullable
+	private Integer parallelMethodThreshold;
+	@Nullable
+	private Consumer<Map<DataTable<?>, List<?>>> dataTables;
+	@Nullable
+	private ExecutorService cpuExecutor;
+	@Nullable
+	private ExecutorService ioExecutor;
+
+	public MigrationRunner(final Recipe recipe, final Supplier<JavaParser.Builder<?, ?>> parserFactory) {
+		this.recipe = recipe;
+		this.parserFactory = parserFactory;
+		this.parsers = ThreadLocal.withInitial(() -> parserFactory.get().build());
+	}
+
+	public static MigrationRunner composite() {
+		return new MigrationRunner(compositeRecipe(), MigrationRunner::defaultParser);
+	}
+
+	/**
+	 * The Swagger 3 composite; the instance is stateless and may be shared by
+	 * concurrent runs.
+	 */
+	public static Recipe compositeRecipe() {
+		return Environment.builder()
+				.scanRuntimeClasspath()
+				.build()
+				.activateRecipes(COMPOSITE_RECIPE);
+	}
+
+	static JavaParser.Builder<?, ?> defaultParser() {
+		return JavaParser.fromJavaVersion()
+				.classpath(DefaultClasspath.ENTRIES);
+	}
+
+	/**
+	 * {@link LstCache} key of the classpath used by {@link #defaultParser()}.
+	 */
+	public static String defaultClasspathKey() {
+		return DefaultClasspath.KEY;
+	}
+
+	public MigrationRunner executionMode(final ExecutionMode mode) {
+		this.executionMode = mode;
+		return this;
+	}
+
+	/**
+	 * Rewrite the Swagger 2 annotations of generated sources at the token level
+	 * instead of parsing them; unrecognized files still go through the recipe.
+	 */
+	public MigrationRunner fastPath(final FastPath mode) {
+		this.fastPath = mode;
+		return this;
+	}
+
+	public MigrationRunner parallelism(final int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Parallelism must be positive: " + threads);
+		}
+		this.parallelism = threads;
+		return this;
+	}
+
+	/**
+	 * Load parsed trees from {@code cache} when the file content is unchanged and
+	 * store the others after parsing.
+	 */
+	public MigrationRunner lstCache(@Nullable final LstCache cache) {
+		this.lstCache = cache;
+		return this;
+	}
+
+	/**
+	 * Convert the methods of classes holding at least {@code methods} methods
+	 * in parallel on the CPU pool of the runner, for giant generated
+	 * interfaces; {@code null} disables it.
+	 */
+	public MigrationRunner parallelMethodThreshold(@Nullable final Integer methods) {
+		this.parallelMethodThreshold = methods;
+		return this;
+	}
+
+	/**
+	 * Write the changes as a unified diff to {@code file}, truncated at the
+	 * start of each run, instead of rewriting the working tree; {@code null}
+	 * restores in place output. The diffs are written one result at a time as
+	 * the changeset is drained.
+	 */
+	public MigrationRunner patch(@Nullable final Path file) {
+		this.patchFile = file;
+		return this;
+	}
+
+	/**
+	 * Reduce each result to its replaced lines as soon as it is taken from the
+	 * changeset, re-applied to the original file when it is written, instead
+	 * of keeping its before and after trees until then.
+	 */
+	public MigrationRunner compactResults(final boolean compact) {
+		this.compactResults = compact;
+		return this;
+	}
+
+	/**
+	 * Profile every file by phase and log the {@code count} slowest at the end
+	 * of each run, also writing them to {@code report} when not {@code null}.
+	 */
+	public MigrationRunner hotSpots(@Nullable final Path report, final int count) {
+		this.profiler = new HotSpotProfiler();
+		this.hotSpotReport = report;
+		this.hotSpotCount = count;
+		return this;
+	}
+
+	/**
+	 * Rewrite {@code file} with the metrics in the Prometheus text format every
+	 * {@code period} while a run is in progress, and once at its end.
+	 */
+	public MigrationRunner metricsFile(@Nullable final Path file, final Duration period) {
+		this.metricsFile = file;
+		this.metricsPeriod = period;
+		return this;
+	}
+
+	/**
+	 * Register the metrics as an MXBean of the platform server under
+	 * {@code org.vignaudo.rewrite.swagger:type=MigrationMetrics,name=<name>};
+	 * it is unregistered by {@link #close()}.
+	 */
+	public synchronized MigrationRunner registerMBean(final String name) {
+		try {
+			final ObjectName objectName = new ObjectName("org.vignaudo.rewrite.swagger:type=MigrationMetrics,name=" + ObjectName.quote(name));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+			mbeanName = objectName;
+		} catch (final JMException e) {
+			throw new IllegalStateException("Unable to register the metrics MBean " + name, e);
+		}
+		return this;
+	}
+
+	/**
+	 * Hand the data tables of each recipe run to {@code consumer}.
+	 */
+	public MigrationRunner dataTables(@Nullable final Consumer<Map<DataTable<?>, List<?>>> consumer) {
+		this.dataTables = consumer;
+		return this;
+	}
+
+	public Recipe getRecipe() {
+		return recipe;
+	}
+
+	/**
+	 * Cumulated over all the runs of this runner.
+	 */
+	public MigrationMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Cumulated over all the runs of this runner; {@code null} unless
+	 * {@link #hotSpots(Path, int)} was called.
+	 */
+	@Nullable
+	public HotSpotProfiler getHotSpots() {
+		return profiler;
+	}
+
+	/**
+	 * Migrate {@code sources}, relative to {@code baseDir}, and rewrite the
+	 * changed files in place or add them to the patch.
+	 */
+	public RunSummary run(final Path baseDir, final List<Path> sources) {
+		final long start = System.nanoTime();
+		final ExecutionContext ctx = newExecutionContext();
+		metrics.attach(ctx);
+		if (profiler != null) {
+			profiler.attach(ctx);
+		}
+		if (parallelMethodThreshold != null) {
+			DeclarationVisitor.parallelMethodThreshold(ctx, parallelMethodThreshold, cpuExecutor());
+		}
+		final ScheduledExecutorService reporter = metricsReporter();
+		final Map<Path, Lexical> lexical = new HashMap<>();
+		final Map<Path, Supplier<String>> recipeOutput = new HashMap<>();
+		int changed = 0;
+		try (Writer patch = patchFile == null ? null : Files.newBufferedWriter(patchFile, StandardCharsets.UTF_8)) {
+			final Output output = new Output(baseDir, patch, recipeOutput);
+			if (fastPath == FastPath.ENABLED) {
+				final AtomicInteger generated = new AtomicInteger();
+				final Set<Path> rewritten = rewriteGenerated(baseDir, fastPathSources(sources), false, (source, x) -> {
+					if (x.changed()) {
+						writeGenerated(baseDir, source, x, patch);
+						generated.incrementAndGet();
+					}
+				});
+				changed = generated.get() + migrate(baseDir, sources.stream().filter(x -> !rewritten.contains(x)).toList(), ctx, output);
+			} else {
+				if (fastPath == FastPath.VERIFY) {
+					rewriteGenerated(baseDir, sources, true, lexical::put);
+					output.verify(lexical.keySet());
+				}
+				changed = migrate(baseDir, sources, ctx, output);
+			}
+			metrics.migrated(sources.size(), changed);
+			if (patch != null) {
+				LOG.info("Patch written to {}.", patchFile);
+			}
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			if (reporter != null) {
+				stop(reporter);
+				try {
+					metrics.writePrometheus(metricsFile);
+				} catch (final UncheckedIOException e) {
+					LOG.warn("Unable to write metrics to {}.", metricsFile, e);
+				}
+			}
+		}
+		if (fastPath == FastPath.VERIFY) {
+			verify(baseDir, lexical, recipeOutput);
+		}
+		final RunSummary summary = new RunSummary(sources.size(), changed, Duration.ofNanos(System.nanoTime() - start));
+		LOG.info("Migrated {} files ({} changed) in {} ms using {}.", summary.files(), summary.changed(), summary.wallTime().toMillis(), executionMode);
+		LOG.info("Conversion cache: {}.", ConversionCache.get(ctx).stats());
+		if (lstCache != null) {
+			LOG.info("LST cache: {} hits, {} misses.", lstCache.getHits(), lstCache.getMisses());
+		}
+		if (profiler != null) {
+			LOG.info("{}", profiler.report(hotSpotCount));
+			if (hotSpotReport != null) {
+				profiler.writeReport(hotSpotReport, hotSpotCount);
+			}
+		}
+		return summary;
+	}
+
+	/**
+	 * Parse {@code sources}, run the recipe over them and hand each result to
+	 * {@code output} as the changeset is drained, dropping it from the
+	 * changeset first so that it can be collected once written.
+	 *
+	 * @return The number of results.
+	 */
+	private int migrate(final Path baseDir, final List<Path> sources, final ExecutionContext ctx, final Output output) {
+		final List<Result> results = visit(baseDir, sources, ctx);
+		final int ret = results.size();
+		for (int i = 0; i < ret; i++) {
+			output.accept(results.set(i, null));
+		}
+		output.join();
+		if (compactResults) {
+			LOG.info("Compacted {} results to {} chars.", ret, output.retainedChars);
+		}
+		return ret;
+	}
+
+	/**
+	 * Parse {@code sources} and run the recipe over them; once this returns
+	 * the parsed trees are only reachable from the results.
+	 */
+	private List<Result> visit(final Path baseDir, final List<Path> sources, final ExecutionContext ctx) {
+		if (executionMode == ExecutionMode.SEQUENTIAL) {
+			return visit(parse(baseDir, sources, ctx), ctx);
+		}
+		final ExecutorService cpu = cpuExecutor();
+		final ExecutorService io = ioExecutor();
+		final List<SourceFile> parsed;
+		if (executionMode == ExecutionMode.SIZE_AWARE) {
+			final List<Source> inputs = join(sources.stream()
+					.map(x -> CompletableFuture.supplyAsync(() -> read(baseDir, x), io))
+					.toList());
+			final WorkScheduler.Run<SourceFile> parsing = WorkScheduler.run(cpu, parallelism, inputs, x -> WorkScheduler.estimate(x.content()),
+					WorkScheduler.Order.LARGEST_FIRST, x -> parse(x, baseDir, ctx));
+			LOG.info("Parsing: {}.", parsing.report());
+			parsed = parsing.results();
+		} else {
+			parsed = join(sources.stream()
+					.map(x -> CompletableFuture.supplyAsync(() -> read(baseDir, x), io)
+							.thenApplyAsync(input -> parse(input, baseDir, ctx), cpu))
+					.toList());
+		}
+		return join(List.of(CompletableFuture.supplyAsync(() -> visit(parsed, ctx), cpu))).get(0);
+	}
+
+	/**
+	 * Hand each generated source rewritten by {@link GeneratedSourceRewriter}
+	 * to {@code sink} as soon as it is rewritten, so that the text of only one
+	 * file is held at a time unless {@code sink} keeps it.
+	 *
+	 * @return The sources handed to {@code sink}.
+	 */
+	private static Set<Path> rewriteGenerated(final Path baseDir, final List<Path> sources, final boolean models, final BiConsumer<Path, Lexical> sink) {
+		final Set<Path> ret = new HashSet<>();
+		for (final Path source : sources) {
+			if (!source.getFileName().toString().endsWith(".java")) {
+				continue;
+			}
+			try {
+				final String before = Files.readString(baseDir.resolve(source));
+				final Optional<String> after = GeneratedSourceRewriter.rewrite(before, models);
+				if (after.isPresent()) {
+					ret.add(source);
+					sink.accept(source, new Lexical(before, after.get()));
+				}
+			} catch (final IOException e) {
+				LOG.debug("Unable to read {}, left to the recipe.", source, e);
+			}
+		}
+		LOG.info("Lexical fast path: {} of {} candidate files.", ret.size(), sources.size());
+		return ret;
+	}
+
+	/**
+	 * The Java sources the lexical fast path may take away from the scanning
+	 * recipes: none when the recipe generates OpenAPI documents from the
+	 * operations, otherwise those outside the modules whose build or Spring
+	 * files are among {@code sources}.
+	 */
+	private List<Path> fastPathSources(final List<Path> sources) {
+		if (includes(recipe, OpenApiSpecRecipe.class)) {
+			return List.of();
+		}
+		final Set<Path> scanned = new HashSet<>();
+		for (final Path source : sources) {
+			if (!source.getFileName().toString().endsWith(".java")) {
+				scanned.add(SwaggerBuildRecipe.moduleOf(source));
+			}
+		}
+		return sources.stream()
+				.filter(x -> !scanned.contains(SwaggerBuildRecipe.moduleOf(x)))
+				.toList();
+	}
+
+	private static boolean includes(final Recipe recipe, final Class<? extends Recipe> type) {
+		return type.isInstance(recipe) || recipe.getRecipeList().stream().anyMatch(x -> includes(x, type));
+	}
+
+	/**
+	 * Rewrite {@code source} in place, or append its diff to {@code patch}.
+	 */
+	private static void writeGenerated(final Path baseDir, final Path source, final Lexical lexical, @Nullable final Writer patch) {
+		try {
+			if (patch == null) {
+				Files.writeString(baseDir.resolve(source), lexical.after());
+				return;
+			}
+			try (InMemoryDiffEntry diff = new InMemoryDiffEntry(source, source, null, lexical.before(), lexical.after(), Set.of())) {
+				patch.write(diff.getDiff());
+			}
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Compare the lexical output with the recipe output, already written, and
+	 * log the unified diff from the recipe output to the lexical one of each
+	 * mismatch.
+	 */
+	private static void verify(final Path baseDir, final Map<Path, Lexical> lexical, final Map<Path, Supplier<String>> recipe) {
+		int mismatches = 0;
+		for (final Map.Entry<Path, Lexical> entry : lexical.entrySet()) {
+			final Supplier<String> output = recipe.get(baseDir.resolve(entry.getKey()).normalize());
+			final String expected = output == null ? entry.getValue().before() : output.get();
+			if (!GeneratedSourceRewriter.equivalent(entry.getValue().after(), expected)) {
+				mismatches++;
+				try (InMemoryDiffEntry diff = new InMemoryDiffEntry(entry.getKey(), entry.getKey(), null, expected, entry.getValue().after(), Set.of())) {
+					LOG.warn("Lexical fast path differs from the recipe on {}:\n{}", entry.getKey(), diff.getDiff());
+				}
+			}
+		}
+		LOG.info("Lexical fast path verified on {} files: {} mismatches.", lexical.size(), mismatches);
+	}
+
+	private static String written(final Path file) {
+		try {
+			return Files.readString(file);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Nullable
+	private ScheduledExecutorService metricsReporter() {
+		if (metricsFile == null) {
+			return null;
+		}
+		final Path target = metricsFile;
+		final ScheduledExecutorService ret = Executors.newSingleThreadScheduledExecutor(r -> {
+			final Thread thread = new Thread(r, "migration-metrics");
+			thread.setDaemon(true);
+			return thread;
+		});
+		final long period = metricsPeriod.toMillis();
+		ret.scheduleAtFixedRate(() -> {
+			try {
+				metrics.writePrometheus(target);
+			} catch (final UncheckedIOException e) {
+				LOG.warn("Unable to write metrics to {}.", target, e);
+			}
+		}, 0, period, TimeUnit.MILLISECONDS);
+		return ret;
+	}
+
+	/**
+	 * Stop {@code reporter} and wait for the write in progress, which would
+	 * otherwise replace the final metrics with older ones.
+	 */
+	private static void stop(final ScheduledExecutorService reporter) {
+		reporter.shutdown();
+		try {
+			if (!reporter.awaitTermination(REPORTER_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+				reporter.shutdownNow();
+				if (!reporter.awaitTermination(REPORTER_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+					LOG.warn("The metrics reporter did not stop within {} ms.", REPORTER_TIMEOUT.toMillis());
+				}
+			}
+		} catch (final InterruptedException e) {
+			reporter.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	protected ExecutionContext newExecutionContext() {
+		return new InMemoryExecutionContext(t -> LOG.warn("Error during migration.", t));
+	}
+
+	/**
+	 * Parse, or load from the LST cache, {@code sources} on the caller thread.
+	 */
+	List<SourceFile> parse(final Path baseDir, final List<Path> sources, final ExecutionContext ctx) {
+		final List<SourceFile> ret = new ArrayList<>();
+		for (final Path source : sources) {
+			ret.add(parse(read(baseDir, source), baseDir, ctx));
+		}
+		return ret;
+	}
+
+	private static Source read(final Path baseDir, final Path source) {
+		final Path path = baseDir.resolve(source);
+		try {
+			return new Source(path, Files.readAllBytes(path));
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private SourceFile parse(final Source source, final Path baseDir, final ExecutionContext ctx) {
+		if (lstCache != null) {
+			final Optional<SourceFile> cached = lstCache.load(source.content(), baseDir.relativize(source.path()));
+			if (cached.isPresent()) {
+				return cached.get().withFileAttributes(FileAttributes.fromPath(source.path()));
+			}
+		}
+		final Parser parser = resourceParser(source.path()).orElseGet(parsers::get);
+		final long start = System.nanoTime();
+		final SourceFile ret;
+		try {
+			ret = parser.parseInputs(List.of(new Parser.Input(source.path(), () -> new ByteArrayInputStream(source.content()))), baseDir, ctx)
+					.findFirst()
+					.orElseThrow(() -> new IllegalStateException("Unable to parse " + source.path()));
+		} finally {
+			parser.reset();
+			final long nanos = System.nanoTime() - start;
+			metrics.record(Phase.PARSE, nanos);
+			if (profiler != null) {
+				profiler.record(baseDir.relativize(source.path()), HotSpotProfiler.Phase.PARSE, nanos);
+			}
+		}
+		if (lstCache != null) {
+			try {
+				lstCache.store(source.content(), ret);
+			} catch (final RuntimeException e) {
+				LOG.warn("Unable to cache the tree of {}, continuing without it.", source.path(), e);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Build files and Spring properties are migrated in the same run as the
+	 * Java sources; the POM is read as plain XML so no repository is needed.
+	 */
+	private static Optional<Parser> resourceParser(final Path path) {
+		final String name = path.getFileName().toString();
+		if (name.endsWith(".xml")) {
+			return Optional.of(new XmlParser());
+		}
+		if (name.endsWith(".yml") || name.endsWith(".yaml")) {
+			return Optional.of(new YamlParser());
+		}
+		if (name.endsWith(".properties")) {
+			return Optional.of(new PropertiesParser());
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * The results in a list of their own, which the caller may release entry
+	 * by entry; the run and its source set are unreachable once this returns.
+	 */
+	private List<Result> visit(final List<SourceFile> sources, final ExecutionContext ctx) {
+		final RecipeRun run = recipe.run(new InMemoryLargeSourceSet(sources), ctx);
+		if (dataTables != null) {
+			dataTables.accept(run.getDataTables());
+		}
+		return new ArrayList<>(run.getChangeset().getAllResults());
+	}
+
+	private void write(final Path baseDir, final Result result) {
+		try {
+			final SourceFile before = result.getBefore();
+			final SourceFile after = result.getAfter();
+			if ((before != null) && ((after == null) || !before.getSourcePath().equals(after.getSourcePath()))) {
+				Files.deleteIfExists(baseDir.resolve(before.getSourcePath()));
+			}
+			if (after != null) {
+				final Path target = baseDir.resolve(after.getSourcePath());
+				final Charset charset = after.getCharset() == null ? StandardCharsets.UTF_8 : after.getCharset();
+				Files.createDirectories(target.getParent());
+				final long start = System.nanoTime();
+				final String printed = after.printAll();
+				printed(result, System.nanoTime() - start);
+				Files.writeString(target, printed, charset);
+			}
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void printed(final Result result, final long nanos) {
+		metrics.record(Phase.PRINT, nanos);
+		final SourceFile sourceFile = result.getAfter() == null ? result.getBefore() : result.getAfter();
+		if (profiler != null && sourceFile != null) {
+			profiler.record(sourceFile.getSourcePath(), HotSpotProfiler.Phase.PRINT, nanos);
+		}
+	}
+
+	private static <T> List<T> join(final List<CompletableFuture<T>> futures) {
+		try {
+			return futures.stream().map(CompletableFuture::join).toList();
+		} catch (final CompletionException e) {
+			if (e.getCause() instanceof final RuntimeException re) {
+				throw re;
+			}
+			throw e;
+		}
+	}
+
+	private synchronized ExecutorService cpuExecutor() {
+		if (cpuExecutor == null) {
+			cpuExecutor = Executors.newFixedThreadPool(parallelism);
+		}
+		return cpuExecutor;
+	}
+
+	private synchronized ExecutorService ioExecutor() {
+		if (ioExecutor == null) {
+			ioExecutor = newVirtualThreadExecutor();
+		}
+		return ioExecutor;
+	}
+
+	/**
+	 * The module targets Java 17, so the Java 21 virtual thread executor is
+	 * looked up reflectively, falling back to a cached pool on older runtimes.
+	 */
+	static ExecutorService newVirtualThreadExecutor() {
+		try {
+			final Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (final ReflectiveOperationException | UnsupportedOperationException e) {
+			LOG.debug("Virtual threads are not available, using a cached thread pool for I/O.");
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		if (mbeanName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+			} catch (final JMException e) {
+				LOG.warn("Unable to unregister {}.", mbeanName, e);
+			}
+			mbeanName = null;
+		}
+		if (cpuExecutor != null) {
+			cpuExecutor.shutdown();
+			cpuExecutor = null;
+		}
+		if (ioExecutor != null) {
+			ioExecutor.shutdown();
+			ioExecutor = null;
+		}
+	}
+
+	/**
+	 * The jars of the default parser, extracted from the resources once.
+	 */
+	private static final class DefaultClasspath {
+		static final List<Path> ENTRIES = JavaParser.dependenciesFromResources(new InMemoryExecutionContext(), DEFAULT_CLASSPATH);
+		static final String KEY = LstCache.classpathKey(ENTRIES);
+	}
+
+	private record Source(Path path, byte[] content) {
+		//
+	}
+
+	/**
+	 * Where the results of a run go, one at a time: the patch, written on the
+	 * caller thread, or the working tree, on the I/O pool unless the run is
+	 * sequential. With {@link FastPath#VERIFY}, the recipe output of the files
+	 * also rewritten lexically is kept for {@link MigrationRunner#verify}.
+	 */
+	private final class Output {
+		private final Path baseDir;
+		@Nullable
+		private final Writer patch;
+		private final Map<Path, Supplier<String>> recipeOutput;
+		private final Set<Path> verified = new HashSet<>();
+		private final List<CompletableFuture<Void>> writes = new ArrayList<>();
+		private long retainedChars;
+
+		Output(final Path baseDir, @Nullable final Writer patch, final Map<Path, Supplier<String>> recipeOutput) {
+			this.baseDir = baseDir;
+			this.patch = patch;
+			this.recipeOutput = recipeOutput;
+		}
+
+		void verify(final Set<Path> sources) {
+			sources.forEach(x -> verified.add(baseDir.resolve(x).normalize()));
+		}
+
+		void accept(final Result result) {
+			if (compactResults) {
+				final long start = System.nanoTime();
+				final CompactResult compact = CompactResult.of(result);
+				printed(result, System.nanoTime() - start);
+				retainedChars += compact.retainedChars();
+				accept(compact);
+				return;
+			}
+			final SourceFile before = result.getBefore();
+			final SourceFile after = result.getAfter();
+			if (before != null && after != null && verified.contains(baseDir.resolve(before.getSourcePath()).normalize())) {
+				final String text = after.printAll();
+				recipeOutput.put(baseDir.resolve(before.getSourcePath()).normalize(), () -> text);
+			}
+			if (patch == null) {
+				submit(() -> write(baseDir, result));
+				return;
+			}
+			final long start = System.nanoTime();
+			final String diff = result.diff();
+			printed(result, System.nanoTime() - start);
+			append(diff);
+		}
+
+		void accept(final CompactResult result) {
+			if (result.getBefore() != null && result.getAfter() != null && verified.contains(baseDir.resolve(result.getBefore()).normalize())) {
+				final Path target = baseDir.resolve(result.getAfter());
+				recipeOutput.put(baseDir.resolve(result.getBefore()).normalize(), patch == null ? () -> written(target) : () -> result.print(baseDir));
+			}
+			if (patch == null) {
+				submit(() -> result.write(baseDir));
+				return;
+			}
+			append(result.diff(baseDir));
+		}
+
+		private void append(final String diff) {
+			try {
+				patch.write(diff);
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void submit(final Runnable write) {
+			if (executionMode == ExecutionMode.SEQUENTIAL) {
+				write.run();
+			} else {
+				writes.add(CompletableFuture.runAsync(write, ioExecutor()));
+			}
+		}
+
+		/**
+		 * Wait for the writes submitted to the I/O pool.
+		 */
+		void join() {
+			MigrationRunner.join(writes);
+			writes.clear();
+		}
+	}
+
+	private record Lexical(String before, String after) {
+		boolean changed() {
+			return !before.equals(after);
+		}
+	}
+
+	public record RunSummary(int files, int changed, Duration wallTime) {
+		//
+	}
+}
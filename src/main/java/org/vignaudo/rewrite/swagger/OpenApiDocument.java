@@ -0,0 +1,380 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.openrewrite.Tree.randomId;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.marker.Markers;
+import org.openrewrite.yaml.tree.Yaml;
+import org.openrewrite.yaml.tree.YamlKey;
+
+/**
+ * Minimal OpenAPI 3 document collected from Swagger 3 annotations, turned
+ * into a YAML tree without any intermediate text.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+public class OpenApiDocument {
+	private static final List<String> HTTP_METHODS = List.of("get", "put", "post", "delete", "options", "head", "patch", "trace");
+
+	private String title;
+	private String version = "1.0.0";
+	@Nullable
+	private String description;
+	private final Map<String, String> tags = new TreeMap<>();
+	private final Map<String, Map<String, Operation>> paths = new TreeMap<>();
+	private final Map<String, SchemaModel> schemas = new TreeMap<>();
+
+	public OpenApiDocument(final String title) {
+		this.title = title;
+	}
+
+	public synchronized void info(@Nullable final String infoTitle, @Nullable final String infoVersion, @Nullable final String infoDescription) {
+		if (infoTitle != null) {
+			this.title = infoTitle;
+		}
+		if (infoVersion != null) {
+			this.version = infoVersion;
+		}
+		if (infoDescription != null) {
+			this.description = infoDescription;
+		}
+	}
+
+	public synchronized void addTag(final String name, @Nullable final String tagDescription) {
+		if ((tagDescription != null) || !tags.containsKey(name)) {
+			tags.put(name, tagDescription);
+		}
+	}
+
+	public synchronized void addOperation(final String path, final String httpMethod, final Operation operation) {
+		paths.computeIfAbsent(path, x -> new TreeMap<>(OpenApiDocument::compareMethods)).put(httpMethod, operation);
+	}
+
+	public synchronized void addSchema(final SchemaModel schema) {
+		schemas.put(schema.name(), schema);
+	}
+
+	public synchronized boolean isEmpty() {
+		return paths.isEmpty() && schemas.isEmpty();
+	}
+
+	private static int compareMethods(final String a, final String b) {
+		return Integer.compare(HTTP_METHODS.indexOf(a), HTTP_METHODS.indexOf(b));
+	}
+
+	/**
+	 * The document as an OpenAPI 3.0 YAML source file, built directly as a
+	 * tree without printing and parsing it back.
+	 */
+	public synchronized Yaml.Documents toYaml(final Path sourcePath) {
+		final MappingBuilder root = MappingBuilder.root();
+		root.plain("openapi", "3.0.1");
+		root.put("info", root.nested()
+				.quoted("title", title)
+				.quoted("version", version)
+				.quoted("description", description));
+		if (!tags.isEmpty()) {
+			final List<Yaml.Block> items = new ArrayList<>();
+			for (final Map.Entry<String, String> tag : tags.entrySet()) {
+				items.add(root.item().quoted("name", tag.getKey()).quoted("description", tag.getValue()).build());
+			}
+			root.sequence("tags", items);
+		}
+		if (paths.isEmpty()) {
+			root.put(plain("paths"), new Yaml.Mapping(randomId(), Markers.EMPTY, " ", List.of(), "", null));
+		} else {
+			final MappingBuilder pathsNode = root.nested();
+			for (final Map.Entry<String, Map<String, Operation>> path : paths.entrySet()) {
+				final MappingBuilder pathNode = pathsNode.nested();
+				for (final Map.Entry<String, Operation> op : path.getValue().entrySet()) {
+					pathNode.put(op.getKey(), operation(pathNode.nested(), op.getValue()));
+				}
+				pathsNode.put(doubleQuoted("", path.getKey()), pathNode.build());
+			}
+			root.put("paths", pathsNode);
+		}
+		final Map<String, SchemaModel> components = components();
+		if (!components.isEmpty()) {
+			final MappingBuilder componentsNode = root.nested();
+			final MappingBuilder schemasNode = componentsNode.nested();
+			for (final SchemaModel schema : components.values()) {
+				schemasNode.put(schema.name(), schemaModel(schemasNode.nested(), schema));
+			}
+			root.put("components", componentsNode.put("schemas", schemasNode));
+		}
+		final Yaml.Document document = new Yaml.Document(randomId(), "", Markers.EMPTY, false, root.build(),
+				new Yaml.Document.End(randomId(), "\n", Markers.EMPTY, false));
+		return new Yaml.Documents(randomId(), Markers.EMPTY, sourcePath, null, StandardCharsets.UTF_8.name(), false, null, List.of(document));
+	}
+
+	/**
+	 * The collected schemas, plus an empty {@code type: object} schema for
+	 * every class referenced without being annotated with {@code @Schema}, so
+	 * that no {@code $ref} of the document is left dangling.
+	 */
+	private Map<String, SchemaModel> components() {
+		final Map<String, SchemaModel> ret = new TreeMap<>(schemas);
+		for (final Map<String, Operation> operations : paths.values()) {
+			for (final Operation op : operations.values()) {
+				op.parameters().forEach(x -> addUnresolved(ret, x.schema()));
+				addUnresolved(ret, op.requestBody());
+				op.responses().forEach(x -> addUnresolved(ret, x.schema()));
+			}
+		}
+		for (final SchemaModel schema : schemas.values()) {
+			schema.properties().values().forEach(x -> addUnresolved(ret, x.schema()));
+		}
+		return ret;
+	}
+
+	private static void addUnresolved(final Map<String, SchemaModel> components, @Nullable final SchemaRef schema) {
+		if (schema == null) {
+			return;
+		}
+		if (schema.items() != null) {
+			addUnresolved(components, schema.items());
+		} else if (schema.ref() != null) {
+			components.computeIfAbsent(schema.ref(), x -> new SchemaModel(x, null));
+		}
+	}
+
+	private static MappingBuilder operation(final MappingBuilder node, final Operation op) {
+		if (!op.tags().isEmpty()) {
+			node.sequence("tags", op.tags().stream().<Yaml.Block>map(x -> doubleQuoted(" ", x)).toList());
+		}
+		node.quoted("summary", op.summary());
+		node.quoted("description", op.description());
+		node.quoted("operationId", op.operationId());
+		if (!op.parameters().isEmpty()) {
+			final List<Yaml.Block> items = new ArrayList<>();
+			for (final Param p : op.parameters()) {
+				final MappingBuilder item = node.item()
+						.quoted("name", p.name())
+						.plain("in", p.in())
+						.quoted("description", p.description());
+				if (p.required()) {
+					item.plain("required", "true");
+				}
+				items.add(item.put("schema", schema(item.nested(), p.schema())).build());
+			}
+			node.sequence("parameters", items);
+		}
+		if (op.requestBody() != null) {
+			final MappingBuilder body = node.nested();
+			node.put("requestBody", body.put("content", content(body.nested(), op.requestBody())));
+		}
+		final MappingBuilder responses = node.nested();
+		if (op.responses().isEmpty()) {
+			responses.put("default", responses.nested().plain("description", "default response"));
+		}
+		for (final Response r : op.responses()) {
+			final MappingBuilder response = responses.nested().quoted("description", r.description() == null ? "" : r.description());
+			if (r.schema() != null) {
+				response.put("content", content(response.nested(), r.schema()));
+			}
+			responses.put(doubleQuoted("", r.code()), response.build());
+		}
+		node.put("responses", responses);
+		if (op.deprecated()) {
+			node.plain("deprecated", "true");
+		}
+		return node;
+	}
+
+	private static MappingBuilder content(final MappingBuilder node, final SchemaRef schema) {
+		final MappingBuilder media = node.nested();
+		return node.put(new Yaml.Scalar(randomId(), "", Markers.EMPTY, Yaml.Scalar.Style.SINGLE_QUOTED, null, "*/*"),
+				media.put("schema", schema(media.nested(), schema)).build());
+	}
+
+	private static MappingBuilder schemaModel(final MappingBuilder node, final SchemaModel schema) {
+		node.plain("type", "object");
+		node.quoted("description", schema.description());
+		final List<Yaml.Block> required = schema.properties().values().stream()
+				.filter(Property::required)
+				.<Yaml.Block>map(x -> doubleQuoted(" ", x.name()))
+				.toList();
+		if (!required.isEmpty()) {
+			node.sequence("required", required);
+		}
+		if (!schema.properties().isEmpty()) {
+			final MappingBuilder properties = node.nested();
+			for (final Property p : schema.properties().values()) {
+				properties.put(p.name(), schema(properties.nested(), p.schema())
+						.quoted("description", p.description())
+						.quoted("example", p.example()));
+			}
+			node.put("properties", properties);
+		}
+		return node;
+	}
+
+	private static MappingBuilder schema(final MappingBuilder node, final SchemaRef schema) {
+		if (schema.items() != null) {
+			return node.plain("type", "array").put("items", schema(node.nested(), schema.items()));
+		}
+		if (schema.ref() != null) {
+			return node.quoted("$ref", "#/components/schemas/" + schema.ref());
+		}
+		return node.plain("type", schema.type()).quoted("format", schema.format());
+	}
+
+	private static Yaml.Scalar plain(final String value) {
+		return new Yaml.Scalar(randomId(), "", Markers.EMPTY, Yaml.Scalar.Style.PLAIN, null, value);
+	}
+
+	/**
+	 * Double quoted scalar; the printer writes the value as is, so it is kept
+	 * escaped.
+	 */
+	private static Yaml.Scalar doubleQuoted(final String prefix, final String value) {
+		return new Yaml.Scalar(randomId(), prefix, Markers.EMPTY, Yaml.Scalar.Style.DOUBLE_QUOTED, null, escape(value));
+	}
+
+	private static String escape(final String value) {
+		final StringBuilder sb = new StringBuilder(value.length());
+		for (final char c : value.toCharArray()) {
+			switch (c) {
+			case '"' -> sb.append("\\\"");
+			case '\\' -> sb.append("\\\\");
+			case '\n' -> sb.append("\\n");
+			case '\r' -> sb.append("\\r");
+			case '\t' -> sb.append("\\t");
+			default -> sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Block mapping under construction; entries go on their own line at the
+	 * mapping indentation, except the first entry of a sequence item which
+	 * follows its dash.
+	 */
+	private static final class MappingBuilder {
+		private static final String INDENT = "  ";
+
+		private final int indent;
+		private final String firstPrefix;
+		private final List<Yaml.Mapping.Entry> entries = new ArrayList<>();
+
+		private MappingBuilder(final int indent, final String firstPrefix) {
+			this.indent = indent;
+			this.firstPrefix = firstPrefix;
+		}
+
+		static MappingBuilder root() {
+			return new MappingBuilder(0, "");
+		}
+
+		/**
+		 * Mapping to be put under a key of this one.
+		 */
+		MappingBuilder nested() {
+			return new MappingBuilder(indent + 1, "\n" + INDENT.repeat(indent + 1));
+		}
+
+		/**
+		 * Mapping to be an item of a sequence put under a key of this one.
+		 */
+		MappingBuilder item() {
+			return new MappingBuilder(indent + 2, " ");
+		}
+
+		MappingBuilder plain(final String key, final String value) {
+			return put(OpenApiDocument.plain(key), new Yaml.Scalar(randomId(), " ", Markers.EMPTY, Yaml.Scalar.Style.PLAIN, null, value));
+		}
+
+		MappingBuilder quoted(final String key, @Nullable final String value) {
+			return value == null ? this : put(OpenApiDocument.plain(key), doubleQuoted(" ", value));
+		}
+
+		MappingBuilder put(final String key, final MappingBuilder value) {
+			return put(OpenApiDocument.plain(key), value.build());
+		}
+
+		MappingBuilder put(final YamlKey key, final Yaml.Block value) {
+			entries.add(new Yaml.Mapping.Entry(randomId(), entries.isEmpty() ? firstPrefix : "\n" + INDENT.repeat(indent), Markers.EMPTY, key, "", value));
+			return this;
+		}
+
+		MappingBuilder sequence(final String key, final List<Yaml.Block> items) {
+			final List<Yaml.Sequence.Entry> ret = new ArrayList<>(items.size());
+			for (final Yaml.Block item : items) {
+				ret.add(new Yaml.Sequence.Entry(randomId(), "\n" + INDENT.repeat(indent + 1), Markers.EMPTY, item, true, null));
+			}
+			return put(OpenApiDocument.plain(key), new Yaml.Sequence(randomId(), Markers.EMPTY, null, ret, null, null));
+		}
+
+		Yaml.Mapping build() {
+			return new Yaml.Mapping(randomId(), Markers.EMPTY, null, entries, null, null);
+		}
+	}
+
+	public record Operation(String operationId, @Nullable String summary, @Nullable String description, List<String> tags, List<Param> parameters,
+			@Nullable SchemaRef requestBody, List<Response> responses, boolean deprecated) {
+		//
+	}
+
+	public record Param(String name, String in, @Nullable String description, boolean required, SchemaRef schema) {
+		//
+	}
+
+	public record Response(String code, @Nullable String description, @Nullable SchemaRef schema) {
+		//
+	}
+
+	/**
+	 * Either a primitive {@code type}/{@code format}, a {@code ref} to a
+	 * component schema or an array of {@code items}, themselves possibly
+	 * arrays.
+	 */
+	public record SchemaRef(String type, @Nullable String format, @Nullable String ref, @Nullable SchemaRef items) {
+		public static SchemaRef primitive(final String type, @Nullable final String format) {
+			return new SchemaRef(type, format, null, null);
+		}
+
+		public static SchemaRef component(final String name) {
+			return new SchemaRef("object", null, name, null);
+		}
+
+		public static SchemaRef arrayOf(final SchemaRef items) {
+			return new SchemaRef("array", null, null, items);
+		}
+	}
+
+	public record Property(String name, SchemaRef schema, @Nullable String description, @Nullable String example, boolean required) {
+		//
+	}
+
+	public record SchemaModel(String name, @Nullable String description, Map<String, Property> properties) {
+		public SchemaModel(final String name, @Nullable final String description) {
+			this(name, description, new LinkedHashMap<>());
+		}
+	}
+}
@@ -0,0 +1,572 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.vignaudo.rewrite.swagger.AnnotationValues.annotation;
+import static org.vignaudo.rewrite.swagger.AnnotationValues.annotations;
+import static org.vignaudo.rewrite.swagger.AnnotationValues.attributes;
+import static org.vignaudo.rewrite.swagger.AnnotationValues.bool;
+import static org.vignaudo.rewrite.swagger.AnnotationValues.className;
+import static org.vignaudo.rewrite.swagger.AnnotationValues.enumName;
+import static org.vignaudo.rewrite.swagger.AnnotationValues.enumNames;
+import static org.vignaudo.rewrite.swagger.AnnotationValues.find;
+import static org.vignaudo.rewrite.swagger.AnnotationValues.is;
+import static org.vignaudo.rewrite.swagger.AnnotationValues.string;
+import static org.vignaudo.rewrite.swagger.AnnotationValues.strings;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Option;
+import org.openrewrite.ScanningRecipe;
+import org.openrewrite.SourceFile;
+import org.openrewrite.Tree;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.Expression;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.java.tree.Statement;
+import org.openrewrite.java.tree.TypeUtils;
+import org.vignaudo.rewrite.swagger.OpenApiDocument.Operation;
+import org.vignaudo.rewrite.swagger.OpenApiDocument.Param;
+import org.vignaudo.rewrite.swagger.OpenApiDocument.Property;
+import org.vignaudo.rewrite.swagger.OpenApiDocument.Response;
+import org.vignaudo.rewrite.swagger.OpenApiDocument.SchemaModel;
+import org.vignaudo.rewrite.swagger.OpenApiDocument.SchemaRef;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Generate one OpenAPI 3 document per service from the Swagger 3 annotations
+ * and the JAX-RS/Spring mappings, without starting the application.
+ *
+ * <p>
+ * A service is the directory holding {@code src/main/java}; sources outside
+ * of such a layout belong to the root service.
+ *
+ * <p>
+ * The document describes the migrated sources: a service with sources still
+ * using Swagger 2 annotations when scanned is left out of the cycle. When an
+ * earlier recipe of the same run migrates them, the visitor records it in the
+ * {@link ExecutionContext}, which counts as a change, and the next cycle
+ * scans the migrated sources.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+public class OpenApiSpecRecipe extends ScanningRecipe<OpenApiSpecRecipe.Accumulator> {
+	private static final String DEFAULT_OUTPUT = "openapi.yaml";
+	private static final String SWAGGER2 = "io.swagger.annotations.*";
+	private static final String MIGRATED = OpenApiSpecRecipe.class.getName() + ".migrated";
+	private static final String[] JAXRS = { "javax.ws.rs", "jakarta.ws.rs" };
+	private static final String[] SPRING = { "org.springframework.web.bind.annotation" };
+	private static final String[] SW3 = { "io.swagger.v3.oas.annotations" };
+	private static final String[] SW3_MEDIA = { "io.swagger.v3.oas.annotations.media" };
+	private static final String[] SW3_RESPONSES = { "io.swagger.v3.oas.annotations.responses" };
+	private static final String[] SW3_TAGS = { "io.swagger.v3.oas.annotations.tags" };
+	private static final String[] SW3_INFO = { "io.swagger.v3.oas.annotations.info" };
+	private static final List<String> JAXRS_METHODS = List.of("GET", "POST", "PUT", "DELETE", "PATCH", "HEAD", "OPTIONS");
+	private static final List<String> SPRING_METHODS = List.of("Get", "Post", "Put", "Delete", "Patch");
+
+	@Option(displayName = "Output file",
+			description = "Path of the generated document, relative to each service root.",
+			example = "target/openapi.yaml",
+			required = false)
+	@Nullable
+	private final String outputFile;
+
+	public OpenApiSpecRecipe() {
+		this(null);
+	}
+
+	@JsonCreator
+	public OpenApiSpecRecipe(@Nullable @JsonProperty("outputFile") final String outputFile) {
+		this.outputFile = outputFile;
+	}
+
+	@Nullable
+	public String getOutputFile() {
+		return outputFile;
+	}
+
+	@Override
+	public String getDisplayName() {
+		return "Generate OpenAPI 3 documents";
+	}
+
+	@Override
+	public String getDescription() {
+		return "Generate an OpenAPI 3 YAML document per service from Swagger 3 annotations and JAX-RS/Spring mappings.";
+	}
+
+	@Override
+	public boolean causesAnotherCycle() {
+		return true;
+	}
+
+	public static class Accumulator {
+		private final Map<Path, OpenApiDocument> documents = new ConcurrentHashMap<>();
+		private final Map<Path, Path> existing = new ConcurrentHashMap<>();
+		private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+
+		OpenApiDocument document(final Path serviceRoot) {
+			return documents.computeIfAbsent(serviceRoot, x -> new OpenApiDocument(x.getFileName() == null || x.toString().isEmpty() ? "api" : x.getFileName().toString()));
+		}
+
+		public Map<Path, OpenApiDocument> getDocuments() {
+			return documents;
+		}
+	}
+
+	@Override
+	public Accumulator getInitialValue(final ExecutionContext ctx) {
+		return new Accumulator();
+	}
+
+	@Override
+	public TreeVisitor<?, ExecutionContext> getScanner(final Accumulator acc) {
+		return new TreeVisitor<Tree, ExecutionContext>() {
+			@Override
+			public @Nullable Tree visit(@Nullable final Tree tree, final ExecutionContext ctx) {
+				if (tree instanceof final J.CompilationUnit cu) {
+					final Path serviceRoot = serviceRoot(cu.getSourcePath());
+					if (TypeUsageIndex.get(cu, ctx).uses(SWAGGER2)) {
+						acc.pending.add(serviceRoot);
+					} else {
+						new SpecCollector(acc.document(serviceRoot)).visit(cu, ctx);
+					}
+				} else if (tree instanceof final SourceFile sf) {
+					outputRoot(sf.getSourcePath()).ifPresent(x -> acc.existing.put(sf.getSourcePath(), x));
+				}
+				return tree;
+			}
+		};
+	}
+
+	@Override
+	public Collection<? extends SourceFile> generate(final Accumulator acc, final ExecutionContext ctx) {
+		final List<SourceFile> ret = new ArrayList<>();
+		for (final Map.Entry<Path, OpenApiDocument> entry : acc.documents.entrySet()) {
+			final Path target = outputPath(entry.getKey());
+			if (!entry.getValue().isEmpty() && !acc.pending.contains(entry.getKey()) && !acc.existing.containsKey(target)) {
+				ret.add(entry.getValue().toYaml(target));
+			}
+		}
+		return ret;
+	}
+
+	@Override
+	public TreeVisitor<?, ExecutionContext> getVisitor(final Accumulator acc) {
+		return new TreeVisitor<Tree, ExecutionContext>() {
+			@Override
+			public @Nullable Tree visit(@Nullable final Tree tree, final ExecutionContext ctx) {
+				if (tree instanceof final J.CompilationUnit cu && acc.pending.contains(serviceRoot(cu.getSourcePath()))
+						&& !TypeUsageIndex.get(cu, ctx).uses(SWAGGER2)) {
+					ctx.putMessage(MIGRATED, Boolean.TRUE);
+					return tree;
+				}
+				if (!(tree instanceof final SourceFile sf) || !acc.existing.containsKey(sf.getSourcePath())) {
+					return tree;
+				}
+				final Path serviceRoot = acc.existing.get(sf.getSourcePath());
+				final OpenApiDocument doc = acc.documents.get(serviceRoot);
+				if (doc == null || doc.isEmpty() || acc.pending.contains(serviceRoot)) {
+					return tree;
+				}
+				final SourceFile generated = doc.toYaml(sf.getSourcePath());
+				if (generated.printAll().equals(sf.printAll())) {
+					return tree;
+				}
+				return generated.withId(sf.getId());
+			}
+		};
+	}
+
+	/**
+	 * The service root of an already existing output document, if
+	 * {@code sourcePath} is one.
+	 */
+	private Optional<Path> outputRoot(final Path sourcePath) {
+		final Path output = Path.of(outputFile == null ? DEFAULT_OUTPUT : outputFile);
+		if (!sourcePath.endsWith(output)) {
+			return Optional.empty();
+		}
+		final int depth = sourcePath.getNameCount() - output.getNameCount();
+		return Optional.of(depth == 0 ? Path.of("") : sourcePath.subpath(0, depth));
+	}
+
+	private Path outputPath(final Path serviceRoot) {
+		return serviceRoot.resolve(outputFile == null ? DEFAULT_OUTPUT : outputFile);
+	}
+
+	static Path serviceRoot(final Path sourcePath) {
+		final String path = sourcePath.toString().replace('\\', '/');
+		final int idx = path.indexOf("/src/");
+		if (path.startsWith("src/") || idx < 0) {
+			return Path.of("");
+		}
+		return Path.of(path.substring(0, idx));
+	}
+
+	private static class SpecCollector extends DeclarationVisitor<ExecutionContext> {
+		private final OpenApiDocument doc;
+
+		SpecCollector(final OpenApiDocument doc) {
+			this.doc = doc;
+		}
+
+		@Override
+		public J.ClassDeclaration visitClassDeclaration(final J.ClassDeclaration classDecl, final ExecutionContext ctx) {
+			final List<J.Annotation> anns = classDecl.getLeadingAnnotations();
+			find(anns, "OpenAPIDefinition", SW3).ifPresent(this::collectDefinition);
+			final List<String> classTags = new ArrayList<>();
+			for (final J.Annotation ann : anns) {
+				if (is(ann, "Tag", SW3_TAGS)) {
+					final Map<String, Expression> attrs = attributes(ann);
+					final String name = string(attrs.get("name"));
+					if (name != null) {
+						doc.addTag(name, string(attrs.get("description")));
+						classTags.add(name);
+					}
+				}
+			}
+			final String basePath = anns.stream()
+					.filter(x -> is(x, "Path", JAXRS) || is(x, "RequestMapping", SPRING))
+					.map(SpecCollector::mappingPath)
+					.findFirst().orElse("");
+			find(anns, "Schema", SW3_MEDIA).ifPresent(x -> collectSchema(classDecl, x));
+			for (final Statement statement : classDecl.getBody().getStatements()) {
+				if (statement instanceof final J.MethodDeclaration m) {
+					collectOperation(basePath, classTags, m);
+				}
+			}
+			return super.visitClassDeclaration(classDecl, ctx);
+		}
+
+		private void collectDefinition(final J.Annotation definition) {
+			final J.Annotation info = annotation(attributes(definition).get("info"));
+			if (info != null && is(info, "Info", SW3_INFO)) {
+				final Map<String, Expression> attrs = attributes(info);
+				doc.info(string(attrs.get("title")), string(attrs.get("version")), string(attrs.get("description")));
+			}
+			for (final J.Annotation tag : annotations(attributes(definition).get("tags"))) {
+				final Map<String, Expression> attrs = attributes(tag);
+				final String name = string(attrs.get("name"));
+				if (name != null) {
+					doc.addTag(name, string(attrs.get("description")));
+				}
+			}
+		}
+
+		private void collectSchema(final J.ClassDeclaration classDecl, final J.Annotation schema) {
+			final Map<String, Expression> attrs = attributes(schema);
+			final String name = Optional.ofNullable(string(attrs.get("name"))).orElse(classDecl.getSimpleName());
+			final SchemaModel model = new SchemaModel(name, string(attrs.get("description")));
+			for (final Statement statement : classDecl.getBody().getStatements()) {
+				if (statement instanceof final J.VariableDeclarations vd && !vd.hasModifier(J.Modifier.Type.Static)) {
+					final Map<String, Expression> prop = find(vd.getLeadingAnnotations(), "Schema", SW3_MEDIA)
+							.or(() -> find(vd.getLeadingAnnotations(), "ArraySchema", SW3_MEDIA).map(x -> annotation(attributes(x).get("arraySchema"))))
+							.map(AnnotationValues::attributes)
+							.orElseGet(Map::of);
+					for (final J.VariableDeclarations.NamedVariable variable : vd.getVariables()) {
+						addProperty(model, variable.getSimpleName(), vd.getType(), prop);
+					}
+				} else if (statement instanceof final J.MethodDeclaration m && m.getParameters().stream().allMatch(J.Empty.class::isInstance)) {
+					final Optional<J.Annotation> ann = find(m.getLeadingAnnotations(), "Schema", SW3_MEDIA);
+					final String property = propertyName(m.getSimpleName());
+					if (ann.isPresent() && property != null) {
+						addProperty(model, property, m.getReturnTypeExpression() == null ? null : m.getReturnTypeExpression().getType(), attributes(ann.get()));
+					}
+				}
+			}
+			doc.addSchema(model);
+		}
+
+		private static void addProperty(final SchemaModel model, final String fieldName, @Nullable final JavaType type, final Map<String, Expression> attrs) {
+			if (Boolean.TRUE.equals(bool(attrs.get("hidden")))) {
+				model.properties().remove(fieldName);
+				return;
+			}
+			final Property previous = model.properties().get(fieldName);
+			final String name = Optional.ofNullable(string(attrs.get("name"))).orElse(fieldName);
+			final boolean required = Boolean.TRUE.equals(bool(attrs.get("required"))) || "REQUIRED".equals(enumName(attrs.get("requiredMode")));
+			final Property property = new Property(name,
+					previous == null ? schemaFor(type) : previous.schema(),
+					Optional.ofNullable(string(attrs.get("description"))).orElse(previous == null ? null : previous.description()),
+					Optional.ofNullable(string(attrs.get("example"))).orElse(previous == null ? null : previous.example()),
+					required || (previous != null && previous.required()));
+			model.properties().put(fieldName, property);
+		}
+
+		@Nullable
+		private static String propertyName(final String methodName) {
+			final String stripped;
+			if (methodName.startsWith("get") && methodName.length() > 3) {
+				stripped = methodName.substring(3);
+			} else if (methodName.startsWith("is") && methodName.length() > 2) {
+				stripped = methodName.substring(2);
+			} else {
+				return null;
+			}
+			return Character.toLowerCase(stripped.charAt(0)) + stripped.substring(1);
+		}
+
+		private void collectOperation(final String basePath, final List<String> classTags, final J.MethodDeclaration m) {
+			final List<J.Annotation> anns = m.getLeadingAnnotations();
+			final String httpMethod = httpMethod(anns);
+			if (httpMethod == null) {
+				return;
+			}
+			final Map<String, Expression> op = find(anns, "Operation", SW3).map(AnnotationValues::attributes).orElseGet(Map::of);
+			if (Boolean.TRUE.equals(bool(op.get("hidden"))) || find(anns, "Hidden", SW3).isPresent()) {
+				return;
+			}
+			final String path = anns.stream()
+					.filter(x -> is(x, "Path", JAXRS) || isSpringMapping(x))
+					.map(SpecCollector::mappingPath)
+					.findFirst().orElse("");
+			final List<String> opTags = strings(op.get("tags"));
+			final List<Param> params = new ArrayList<>();
+			SchemaRef body = null;
+			for (final Statement statement : m.getParameters()) {
+				if (statement instanceof final J.VariableDeclarations vd) {
+					final Param param = parameter(vd);
+					if (param == null) {
+						continue;
+					}
+					if ("body".equals(param.in())) {
+						body = param.schema();
+					} else if (!"unbound".equals(param.in())) {
+						params.add(param);
+					} else if (List.of("post", "put", "patch").contains(httpMethod)) {
+						body = param.schema();
+					}
+				}
+			}
+			final List<Response> responses = new ArrayList<>();
+			for (final J.Annotation response : annotations(op.get("responses"))) {
+				responses.add(response(response));
+			}
+			for (final J.Annotation ann : anns) {
+				if (is(ann, "ApiResponses", SW3_RESPONSES)) {
+					annotations(attributes(ann).get("value")).forEach(x -> responses.add(response(x)));
+				} else if (is(ann, "ApiResponse", SW3_RESPONSES)) {
+					responses.add(response(ann));
+				}
+			}
+			final boolean deprecated = Boolean.TRUE.equals(bool(op.get("deprecated"))) || anns.stream().anyMatch(x -> "Deprecated".equals(x.getSimpleName()));
+			doc.addOperation(join(basePath, path), httpMethod, new Operation(
+					Optional.ofNullable(string(op.get("operationId"))).orElse(m.getSimpleName()),
+					emptyToNull(string(op.get("summary"))),
+					emptyToNull(string(op.get("description"))),
+					opTags.isEmpty() ? classTags : opTags,
+					params, body, responses, deprecated));
+		}
+
+		@Nullable
+		private static Param parameter(final J.VariableDeclarations vd) {
+			final String varName = vd.getVariables().get(0).getSimpleName();
+			String in = "unbound";
+			String name = varName;
+			for (final J.Annotation ann : vd.getLeadingAnnotations()) {
+				final String binding = binding(ann);
+				if ("context".equals(binding)) {
+					return null;
+				}
+				if (binding != null) {
+					in = binding;
+					name = Optional.ofNullable(string(attributes(ann).get("value")))
+							.or(() -> Optional.ofNullable(string(attributes(ann).get("name"))))
+							.orElse(varName);
+				}
+			}
+			String description = null;
+			boolean required = "path".equals(in);
+			final Optional<J.Annotation> sw3 = find(vd.getLeadingAnnotations(), "Parameter", SW3);
+			if (sw3.isPresent()) {
+				final Map<String, Expression> attrs = attributes(sw3.get());
+				if (Boolean.TRUE.equals(bool(attrs.get("hidden")))) {
+					return null;
+				}
+				final String declaredIn = enumName(attrs.get("in"));
+				if (declaredIn != null && !"DEFAULT".equals(declaredIn)) {
+					in = declaredIn.toLowerCase(Locale.ROOT);
+				}
+				name = Optional.ofNullable(string(attrs.get("name"))).orElse(name);
+				description = string(attrs.get("description"));
+				required = required || Boolean.TRUE.equals(bool(attrs.get("required")));
+			}
+			return new Param(name, in, description, required, schemaFor(vd.getType()));
+		}
+
+		@Nullable
+		private static String binding(final J.Annotation ann) {
+			if (is(ann, "PathParam", JAXRS) || is(ann, "PathVariable", SPRING)) {
+				return "path";
+			}
+			if (is(ann, "QueryParam", JAXRS) || is(ann, "RequestParam", SPRING)) {
+				return "query";
+			}
+			if (is(ann, "HeaderParam", JAXRS) || is(ann, "RequestHeader", SPRING)) {
+				return "header";
+			}
+			if (is(ann, "CookieParam", JAXRS) || is(ann, "CookieValue", SPRING)) {
+				return "cookie";
+			}
+			if (is(ann, "RequestBody", SPRING)) {
+				return "body";
+			}
+			if (is(ann, "Context", "javax.ws.rs.core", "jakarta.ws.rs.core") || is(ann, "BeanParam", JAXRS)) {
+				return "context";
+			}
+			return null;
+		}
+
+		private static Response response(final J.Annotation ann) {
+			final Map<String, Expression> attrs = attributes(ann);
+			final String code = Optional.ofNullable(string(attrs.get("responseCode"))).orElse("default");
+			SchemaRef schema = null;
+			for (final J.Annotation content : annotations(attrs.get("content"))) {
+				schema = schemaOf(content);
+			}
+			if (schema == null) {
+				schema = Optional.ofNullable(annotation(attrs.get("array")))
+						.or(() -> Optional.ofNullable(annotation(attrs.get("schema"))))
+						.map(SpecCollector::schemaOf)
+						.orElse(null);
+			}
+			return new Response(code, string(attrs.get("description")), schema);
+		}
+
+		@Nullable
+		private static SchemaRef schemaOf(final J.Annotation ann) {
+			final Map<String, Expression> attrs = attributes(ann);
+			final String simpleName = ann.getSimpleName();
+			if ("Content".equals(simpleName)) {
+				return Optional.ofNullable(annotation(attrs.get("array")))
+						.or(() -> Optional.ofNullable(annotation(attrs.get("schema"))))
+						.map(SpecCollector::schemaOf)
+						.orElse(null);
+			}
+			if ("ArraySchema".equals(simpleName)) {
+				final J.Annotation items = annotation(attrs.get("schema"));
+				final SchemaRef item = items == null ? null : schemaOf(items);
+				return SchemaRef.arrayOf(item == null ? SchemaRef.primitive("object", null) : item);
+			}
+			final String implementation = className(attrs.get("implementation"));
+			if (implementation != null) {
+				return schemaForName(implementation);
+			}
+			final String type = string(attrs.get("type"));
+			return type == null ? null : SchemaRef.primitive(type, string(attrs.get("format")));
+		}
+
+		@Nullable
+		private static String httpMethod(final List<J.Annotation> anns) {
+			for (final J.Annotation ann : anns) {
+				for (final String method : JAXRS_METHODS) {
+					if (is(ann, method, JAXRS)) {
+						return method.toLowerCase(Locale.ROOT);
+					}
+				}
+				for (final String method : SPRING_METHODS) {
+					if (is(ann, method + "Mapping", SPRING)) {
+						return method.toLowerCase(Locale.ROOT);
+					}
+				}
+				if (is(ann, "RequestMapping", SPRING)) {
+					final List<String> methods = enumNames(attributes(ann).get("method"));
+					return methods.isEmpty() ? "get" : methods.get(0).toLowerCase(Locale.ROOT);
+				}
+			}
+			return null;
+		}
+
+		private static boolean isSpringMapping(final J.Annotation ann) {
+			return is(ann, "RequestMapping", SPRING) || SPRING_METHODS.stream().anyMatch(x -> is(ann, x + "Mapping", SPRING));
+		}
+
+		private static String mappingPath(final J.Annotation ann) {
+			final Map<String, Expression> attrs = attributes(ann);
+			final List<String> values = strings(attrs.containsKey("value") ? attrs.get("value") : attrs.get("path"));
+			return values.isEmpty() ? "" : values.get(0);
+		}
+	}
+
+	static String join(final String base, final String path) {
+		final String joined = ("/" + base + "/" + path).replaceAll("/+", "/");
+		return joined.length() > 1 && joined.endsWith("/") ? joined.substring(0, joined.length() - 1) : joined;
+	}
+
+	static SchemaRef schemaFor(@Nullable final JavaType type) {
+		if (type instanceof final JavaType.Primitive primitive) {
+			return switch (primitive) {
+			case Boolean -> SchemaRef.primitive("boolean", null);
+			case Byte, Short, Int -> SchemaRef.primitive("integer", "int32");
+			case Long -> SchemaRef.primitive("integer", "int64");
+			case Float -> SchemaRef.primitive("number", "float");
+			case Double -> SchemaRef.primitive("number", "double");
+			default -> SchemaRef.primitive("string", null);
+			};
+		}
+		if (type instanceof final JavaType.Array array) {
+			return SchemaRef.arrayOf(schemaFor(array.getElemType()));
+		}
+		if (type instanceof final JavaType.Parameterized parameterized) {
+			if (TypeUtils.isAssignableTo("java.util.Collection", parameterized) && !parameterized.getTypeParameters().isEmpty()) {
+				return SchemaRef.arrayOf(schemaFor(parameterized.getTypeParameters().get(0)));
+			}
+			if (TypeUtils.isAssignableTo("java.util.Map", parameterized)) {
+				return SchemaRef.primitive("object", null);
+			}
+		}
+		final JavaType.FullyQualified fq = TypeUtils.asFullyQualified(type);
+		return fq == null ? SchemaRef.primitive("object", null) : schemaForName(fq.getFullyQualifiedName());
+	}
+
+	static SchemaRef schemaForName(final String name) {
+		final String simpleName = name.substring(name.lastIndexOf('.') + 1);
+		return switch (simpleName) {
+		case "String", "char", "Character" -> SchemaRef.primitive("string", null);
+		case "int", "Integer", "short", "Short", "byte", "Byte" -> SchemaRef.primitive("integer", "int32");
+		case "long", "Long", "BigInteger" -> SchemaRef.primitive("integer", "int64");
+		case "boolean", "Boolean" -> SchemaRef.primitive("boolean", null);
+		case "float", "Float" -> SchemaRef.primitive("number", "float");
+		case "double", "Double", "BigDecimal" -> SchemaRef.primitive("number", "double");
+		case "OffsetDateTime", "LocalDateTime", "ZonedDateTime", "Instant", "Date" -> SchemaRef.primitive("string", "date-time");
+		case "LocalDate" -> SchemaRef.primitive("string", "date");
+		case "UUID" -> SchemaRef.primitive("string", "uuid");
+		case "Object", "Map", "Void", "void" -> SchemaRef.primitive("object", null);
+		default -> SchemaRef.component(simpleName);
+		};
+	}
+
+	@Nullable
+	private static String emptyToNull(@Nullable final String value) {
+		return value == null || value.isEmpty() ? null : value;
+	}
+}
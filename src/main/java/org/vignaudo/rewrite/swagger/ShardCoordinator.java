@@ -0,0 +1,305 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.openrewrite.internal.lang.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Splits a migration over several local worker JVMs, each running the
+ * composite on one shard with its own heap, and merges their reports.
+ *
+ * <p>
+ * Files are grouped by module, as found by
+ * {@link SwaggerBuildRecipe#moduleOf(Path)}, and a module is never split so
+ * the scanning recipes of a worker see all of its files. A module whose
+ * sources name an {@code @ApiModel} class of another module goes to the same
+ * shard, so the {@link ApiModelIndex} of each worker holds the models its
+ * files refer to. These groups are assigned largest first to the lightest
+ * shard.
+ *
+ * <p>
+ * All the workers share one deadline. A failed worker does not stop the
+ * others, which finish their shard before the failure is reported; only a
+ * timeout or an interruption destroys the workers still running. Workers are
+ * started with the
+ * classpath of the current JVM; only the shard and report files are shared
+ * with them, so a launcher for remote nodes can replace
+ * {@link #command(Path, Path, Path)} later.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+public class ShardCoordinator {
+	private static final Logger LOG = LoggerFactory.getLogger(ShardCoordinator.class);
+	private static final Pattern API_MODEL = Pattern.compile("@(io\\.swagger\\.annotations\\.)?ApiModel\\b");
+	private static final Pattern TYPE_NAME = Pattern.compile("\\b[A-Z]\\w*");
+
+	private final int shards;
+	private final List<String> jvmOptions = new ArrayList<>();
+	private Duration timeout = Duration.ofHours(1);
+	@Nullable
+	private Path report;
+
+	public ShardCoordinator(final int shards) {
+		if (shards < 1) {
+			throw new IllegalArgumentException("Shards must be positive: " + shards);
+		}
+		this.shards = shards;
+	}
+
+	/**
+	 * Options of the worker JVMs, such as {@code -Xmx2g}.
+	 */
+	public ShardCoordinator jvmOptions(final String... options) {
+		jvmOptions.addAll(List.of(options));
+		return this;
+	}
+
+	public ShardCoordinator timeout(final Duration duration) {
+		this.timeout = duration;
+		return this;
+	}
+
+	/**
+	 * Write the merged report, as JSON lines, to {@code file}.
+	 */
+	public ShardCoordinator report(@Nullable final Path file) {
+		this.report = file;
+		return this;
+	}
+
+	/**
+	 * Modules of {@code sources}, with the modules whose models they refer to,
+	 * spread over at most {@code shards} non empty shards, by file size.
+	 */
+	static List<List<Path>> partition(final Path baseDir, final List<Path> sources, final int shards) {
+		final Map<Path, List<Path>> modules = new LinkedHashMap<>();
+		for (final Path source : sources) {
+			modules.computeIfAbsent(SwaggerBuildRecipe.moduleOf(source), x -> new ArrayList<>()).add(source);
+		}
+		final Map<Path, List<Path>> groups = new LinkedHashMap<>();
+		final Map<Path, Path> roots = closures(baseDir, sources);
+		modules.forEach((module, files) -> groups.computeIfAbsent(roots.get(module), x -> new ArrayList<>()).addAll(files));
+		final Map<Path, Long> sizes = new TreeMap<>();
+		groups.forEach((group, files) -> sizes.put(group, files.stream().mapToLong(x -> size(baseDir.resolve(x))).sum()));
+		final List<List<Path>> ret = new ArrayList<>();
+		final long[] loads = new long[Math.min(shards, groups.size())];
+		for (int i = 0; i < loads.length; i++) {
+			ret.add(new ArrayList<>());
+		}
+		groups.keySet().stream()
+				.sorted(Comparator.comparing(sizes::get).reversed())
+				.forEach(group -> {
+					int lightest = 0;
+					for (int i = 1; i < loads.length; i++) {
+						if (loads[i] < loads[lightest]) {
+							lightest = i;
+						}
+					}
+					ret.get(lightest).addAll(groups.get(group));
+					loads[lightest] += sizes.get(group);
+				});
+		return ret;
+	}
+
+	/**
+	 * The representative module of each module, shared by the modules linked
+	 * through a reference to an {@code @ApiModel} class; the sources are
+	 * scanned as text, a model being named after its file.
+	 */
+	private static Map<Path, Path> closures(final Path baseDir, final List<Path> sources) {
+		final Map<Path, Path> parents = new HashMap<>();
+		final Map<String, Set<Path>> models = new HashMap<>();
+		final Map<Path, String> texts = new HashMap<>();
+		for (final Path source : sources) {
+			final Path module = SwaggerBuildRecipe.moduleOf(source);
+			parents.putIfAbsent(module, module);
+			final String name = source.getFileName().toString();
+			if (!name.endsWith(".java")) {
+				continue;
+			}
+			final String text = read(baseDir.resolve(source));
+			texts.put(source, text);
+			if (API_MODEL.matcher(text).find()) {
+				models.computeIfAbsent(name.substring(0, name.length() - ".java".length()), x -> new HashSet<>()).add(module);
+			}
+		}
+		texts.forEach((source, text) -> {
+			final Path module = SwaggerBuildRecipe.moduleOf(source);
+			final Matcher matcher = TYPE_NAME.matcher(text);
+			final Set<String> seen = new HashSet<>();
+			while (matcher.find()) {
+				if (seen.add(matcher.group()) && models.containsKey(matcher.group())) {
+					models.get(matcher.group()).forEach(x -> union(parents, module, x));
+				}
+			}
+		});
+		final Map<Path, Path> ret = new HashMap<>();
+		parents.keySet().forEach(x -> ret.put(x, find(parents, x)));
+		return ret;
+	}
+
+	private static Path find(final Map<Path, Path> parents, final Path module) {
+		Path ret = module;
+		while (!parents.get(ret).equals(ret)) {
+			ret = parents.get(ret);
+		}
+		return ret;
+	}
+
+	private static void union(final Map<Path, Path> parents, final Path a, final Path b) {
+		final Path rootA = find(parents, a);
+		final Path rootB = find(parents, b);
+		if (!rootA.equals(rootB)) {
+			parents.put(rootB, rootA);
+		}
+	}
+
+	private static String read(final Path file) {
+		try {
+			return Files.readString(file);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static long size(final Path file) {
+		try {
+			return Files.size(file);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Migrate {@code sources}, relative to {@code baseDir}, in place.
+	 */
+	public ShardReport run(final Path baseDir, final List<Path> sources) {
+		final long start = System.nanoTime();
+		final List<List<Path>> partition = partition(baseDir, sources, shards);
+		final Path work;
+		try {
+			work = Files.createTempDirectory("swagger-shards");
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		final List<Process> processes = new ArrayList<>();
+		final List<ShardReport> reports = new ArrayList<>();
+		final List<String> failures = new ArrayList<>();
+		try {
+			for (int i = 0; i < partition.size(); i++) {
+				final Path shardFile = work.resolve("shard-" + i + ".txt");
+				Files.write(shardFile, partition.get(i).stream().map(Path::toString).toList(), StandardCharsets.UTF_8);
+				processes.add(new ProcessBuilder(command(baseDir.toAbsolutePath(), shardFile, work.resolve("shard-" + i + ".jsonl")))
+						.redirectErrorStream(true)
+						.redirectOutput(work.resolve("shard-" + i + ".log").toFile())
+						.start());
+			}
+			LOG.info("Started {} workers for {} files.", processes.size(), sources.size());
+			final long deadline = System.nanoTime() + timeout.toNanos();
+			for (int i = 0; i < processes.size(); i++) {
+				final Process process = processes.get(i);
+				if (!process.waitFor(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+					failures.add(failure(work, i, "timed out after " + timeout.toMillis() + " ms"));
+				} else if (process.exitValue() != 0) {
+					failures.add(failure(work, i, "failed with exit code " + process.exitValue()));
+				} else {
+					reports.add(ShardReport.read(work.resolve("shard-" + i + ".jsonl")));
+				}
+			}
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the workers.", e);
+		} finally {
+			processes.stream().filter(Process::isAlive).forEach(Process::destroyForcibly);
+			delete(work);
+		}
+		if (!failures.isEmpty()) {
+			throw new IllegalStateException(String.join("; ", failures));
+		}
+		final ShardReport ret = ShardReport.merge(reports, Duration.ofNanos(System.nanoTime() - start));
+		if (report != null) {
+			ret.write(report);
+		}
+		LOG.info("Migrated {} files ({} changed) on {} shards in {} ms.", ret.files(), ret.changed(), ret.shards(), ret.wallTime().toMillis());
+		return ret;
+	}
+
+	/**
+	 * Log the output of the worker of {@code shard}, which is removed with the
+	 * work directory, and describe its failure.
+	 */
+	private static String failure(final Path work, final int shard, final String reason) {
+		final Path log = work.resolve("shard-" + shard + ".log");
+		try {
+			LOG.error("Shard {} {}, its output was:\n{}", shard, reason, Files.readString(log));
+		} catch (final IOException e) {
+			LOG.error("Shard {} {}, unable to read its output.", shard, reason, e);
+		}
+		return "Shard " + shard + " " + reason;
+	}
+
+	/**
+	 * Command line of the worker of one shard.
+	 */
+	protected List<String> command(final Path baseDir, final Path shardFile, final Path reportFile) {
+		final List<String> ret = new ArrayList<>();
+		ret.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+		ret.addAll(jvmOptions);
+		ret.add("-cp");
+		ret.add(System.getProperty("java.class.path"));
+		ret.add(ShardWorker.class.getName());
+		ret.add(baseDir.toString());
+		ret.add(shardFile.toString());
+		ret.add(reportFile.toString());
+		return ret;
+	}
+
+	private static void delete(final Path dir) {
+		try (Stream<Path> files = Files.walk(dir)) {
+			for (final Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(file);
+			}
+		} catch (final IOException e) {
+			LOG.warn("Unable to remove {}.", dir, e);
+		}
+	}
+}
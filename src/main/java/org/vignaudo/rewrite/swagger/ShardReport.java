@@ -0,0 +1,142 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Outcome of one or more shards, read and written as JSON lines so the
+ * coordinator does not depend on how the worker was launched:
+ * <ul>
+ * <li>{@code {"type":"summary","shards":..,"files":..,"changed":..,"millis":..}};</li>
+ * <li>{@code {"type":"conversion","annotation":..,"count":..}}, one per
+ * converted annotation kind;</li>
+ * <li>{@code {"type":"row","table":..,"row":{..}}}, one per data table
+ * row.</li>
+ * </ul>
+ *
+ * @author Olivier Vignaud
+ *
+ */
+public record ShardReport(int shards, int files, int changed, Duration wallTime, Map<String, Long> conversions,
+		Map<String, List<Map<String, Object>>> dataTables) {
+	private static final ObjectMapper MAPPER = new ObjectMapper().setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+	private static final TypeReference<Map<String, Object>> LINE = new TypeReference<>() {
+		//
+	};
+
+	/**
+	 * Sum of {@code reports}; data table rows are concatenated in shard order.
+	 */
+	public static ShardReport merge(final List<ShardReport> reports, final Duration wallTime) {
+		int files = 0;
+		int changed = 0;
+		final Map<String, Long> conversions = new TreeMap<>();
+		final Map<String, List<Map<String, Object>>> dataTables = new TreeMap<>();
+		for (final ShardReport report : reports) {
+			files += report.files();
+			changed += report.changed();
+			report.conversions().forEach((k, v) -> conversions.merge(k, v, Long::sum));
+			report.dataTables().forEach((k, v) -> dataTables.computeIfAbsent(k, x -> new ArrayList<>()).addAll(v));
+		}
+		return new ShardReport(reports.stream().mapToInt(ShardReport::shards).sum(), files, changed, wallTime, conversions, dataTables);
+	}
+
+	/**
+	 * Rows of {@code table} converted to maps, as they are written.
+	 */
+	static List<Map<String, Object>> rows(final List<?> table) {
+		return table.stream().map(x -> MAPPER.convertValue(x, LINE)).toList();
+	}
+
+	public void write(final Path target) {
+		try (BufferedWriter out = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+			line(out, "type", "summary", "shards", shards, "files", files, "changed", changed, "millis", wallTime.toMillis());
+			for (final Map.Entry<String, Long> entry : conversions.entrySet()) {
+				line(out, "type", "conversion", "annotation", entry.getKey(), "count", entry.getValue());
+			}
+			for (final Map.Entry<String, List<Map<String, Object>>> entry : dataTables.entrySet()) {
+				for (final Map<String, Object> row : entry.getValue()) {
+					line(out, "type", "row", "table", entry.getKey(), "row", row);
+				}
+			}
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void line(final BufferedWriter out, final Object... keyValues) throws IOException {
+		final Map<String, Object> line = new LinkedHashMap<>();
+		for (int i = 0; i < keyValues.length; i += 2) {
+			line.put((String) keyValues[i], keyValues[i + 1]);
+		}
+		out.write(MAPPER.writeValueAsString(line));
+		out.newLine();
+	}
+
+	@SuppressWarnings("unchecked")
+	public static ShardReport read(final Path source) {
+		int shards = 0;
+		int files = 0;
+		int changed = 0;
+		long millis = 0;
+		final Map<String, Long> conversions = new TreeMap<>();
+		final Map<String, List<Map<String, Object>>> dataTables = new TreeMap<>();
+		try {
+			for (final String text : Files.readAllLines(source, StandardCharsets.UTF_8)) {
+				if (text.isBlank()) {
+					continue;
+				}
+				final Map<String, Object> line = MAPPER.readValue(text, LINE);
+				switch (String.valueOf(line.get("type"))) {
+				case "summary" -> {
+					shards = number(line, "shards").intValue();
+					files = number(line, "files").intValue();
+					changed = number(line, "changed").intValue();
+					millis = number(line, "millis").longValue();
+				}
+				case "conversion" -> conversions.merge((String) line.get("annotation"), number(line, "count").longValue(), Long::sum);
+				case "row" -> dataTables.computeIfAbsent((String) line.get("table"), x -> new ArrayList<>()).add((Map<String, Object>) line.get("row"));
+				default -> throw new IllegalStateException("Unknown line in " + source + ": " + text);
+				}
+			}
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return new ShardReport(shards, files, changed, Duration.ofMillis(millis), conversions, dataTables);
+	}
+
+	private static Number number(final Map<String, Object> line, final String key) {
+		return (Number) line.get(key);
+	}
+}
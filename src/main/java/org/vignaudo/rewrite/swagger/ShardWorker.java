@@ -0,0 +1,73 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.vignaudo.rewrite.swagger.MigrationRunner.RunSummary;
+
+/**
+ * Worker JVM of a {@link ShardCoordinator}: migrates in place the files listed
+ * in a shard file, one path relative to the base directory per line, and
+ * writes its {@link ShardReport}.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+public final class ShardWorker {
+
+	private ShardWorker() {
+		// Nothing.
+	}
+
+	public static void main(final String[] args) {
+		if (args.length != 3) {
+			System.err.println("Usage: ShardWorker <baseDir> <shardFile> <reportFile>");
+			System.exit(1);
+		}
+		run(Path.of(args[0]), Path.of(args[1]), Path.of(args[2]));
+	}
+
+	static ShardReport run(final Path baseDir, final Path shardFile, final Path reportFile) {
+		final List<Path> sources;
+		try {
+			sources = Files.readAllLines(shardFile, StandardCharsets.UTF_8).stream()
+					.filter(x -> !x.isBlank())
+					.map(Path::of)
+					.toList();
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		final Map<String, List<Map<String, Object>>> dataTables = new TreeMap<>();
+		final ShardReport ret;
+		try (MigrationRunner runner = MigrationRunner.composite()
+				.dataTables(x -> x.forEach((table, rows) -> dataTables.computeIfAbsent(table.getName(), y -> new ArrayList<>()).addAll(ShardReport.rows(rows))))) {
+			final RunSummary summary = runner.run(baseDir, sources);
+			ret = new ShardReport(1, summary.files(), summary.changed(), summary.wallTime(), runner.getMetrics().getConversions(), dataTables);
+		}
+		ret.write(reportFile);
+		return ret;
+	}
+}
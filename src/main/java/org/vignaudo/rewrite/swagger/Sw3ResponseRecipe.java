@@ -19,20 +19,16 @@ package org.vignaudo.rewrite.swagger;
 import static org.openrewrite.Tree.randomId;
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 import org.openrewrite.ExecutionContext;
-import org.openrewrite.Preconditions;
-import org.openrewrite.Recipe;
+import org.openrewrite.Option;
+import org.openrewrite.ScanningRecipe;
 import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.ListUtils;
 import org.openrewrite.internal.lang.Nullable;
-import org.openrewrite.java.AnnotationMatcher;
-import org.openrewrite.java.JavaIsoVisitor;
-import org.openrewrite.java.search.FindImports;
-import org.openrewrite.java.search.UsesType;
 import org.openrewrite.java.tree.Expression;
 import org.openrewrite.java.tree.J;
 import org.openrewrite.java.tree.J.Annotation;
@@ -46,23 +42,47 @@ import org.openrewrite.java.tree.JavaType;
 import org.openrewrite.java.tree.JavaType.ShallowClass;
 import org.openrewrite.java.tree.NameTree;
 import org.openrewrite.java.tree.Space;
+import org.openrewrite.java.tree.TypeUtils;
 import org.openrewrite.marker.Markers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.vignaudo.rewrite.swagger.MigrationMetrics.Phase;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
-import io.swagger.v3.oas.annotations.tags.Tag;
 
 /**
  *
  * @author Olivier Vignaud
  *
  */
-public class Sw3ResponseRecipe extends Recipe {
+public class Sw3ResponseRecipe extends ScanningRecipe<ApiModelIndex> {
 	private static final Logger LOG = LoggerFactory.getLogger(Sw3ResponseRecipe.class);
 
+	@Option(displayName = "Deterministic ids",
+			description = "Derive the ids of generated nodes from the source tree, so that unchanged input yields identical LSTs.",
+			required = false)
+	@Nullable
+	private final Boolean deterministicIds;
+
+	public Sw3ResponseRecipe() {
+		this(null);
+	}
+
+	@JsonCreator
+	public Sw3ResponseRecipe(@Nullable @JsonProperty("deterministicIds") final Boolean deterministicIds) {
+		this.deterministicIds = deterministicIds;
+	}
+
+	@Nullable
+	public Boolean getDeterministicIds() {
+		return deterministicIds;
+	}
+
 	@Override
 	public String getDisplayName() {
 		return "Replace swagger2 annotations by swagger3";
@@ -74,125 +94,221 @@ public class Sw3ResponseRecipe extends Recipe {
 	}
 
 	@Override
-	public TreeVisitor<?, ExecutionContext> getVisitor() {
-		return Preconditions.check(Preconditions.or(
-				new UsesType<>("io.swagger.annotations.ApiResponses", false),
-				new FindImports("io.swagger.annotations.ApiResponses", false).getVisitor()), new ApiResponseVisitor());
+	public ApiModelIndex getInitialValue(final ExecutionContext ctx) {
+		return ApiModelIndex.get(ctx);
+	}
+
+	@Override
+	public TreeVisitor<?, ExecutionContext> getScanner(final ApiModelIndex acc) {
+		return acc.scanner();
 	}
 
-	public static class ApiResponseVisitor extends JavaIsoVisitor<ExecutionContext> {
-		private static final AnnotationMatcher ANN_API_RESPONSES = new AnnotationMatcher("@io.swagger.annotations.ApiResponses");
-		private static final AnnotationMatcher ANN = new AnnotationMatcher("@io.swagger.annotations.Api");
+	@Override
+	public TreeVisitor<?, ExecutionContext> getVisitor(final ApiModelIndex acc) {
+		return DeterministicIds.wrap(Boolean.TRUE.equals(deterministicIds),
+				MigrationMetrics.check("Sw3ResponseRecipe", TypeUsageIndex.precondition("io.swagger.annotations.*"), new ApiResponseVisitor(acc)));
+	}
+
+	public static class ApiResponseVisitor extends DeclarationVisitor<ExecutionContext> {
+		private static final AnnotationType ANN_API_RESPONSES = new AnnotationType("@io.swagger.annotations.ApiResponses");
+		private static final AnnotationType ANN = new AnnotationType("@io.swagger.annotations.Api");
+		private static final AnnotationType ANN_SWAGGER_DEFINITION = new AnnotationType("@io.swagger.annotations.SwaggerDefinition");
 		private static final ShallowClass SW2_API_RESPONSE = JavaType.ShallowClass.build("io.swagger.annotations.ApiResponse");
 		private static final ShallowClass SW2_API_RESPONSES = JavaType.ShallowClass.build("io.swagger.annotations.ApiResponses");
 
+		private final ApiModelIndex index;
+		private final Swagger3Converter converter;
+		@Nullable
+		private List<String> recordedImports;
+
+		public ApiResponseVisitor() {
+			this(new ApiModelIndex());
+		}
+
+		public ApiResponseVisitor(final ApiModelIndex index) {
+			this.index = index;
+			this.converter = new Swagger3Converter(this::addImport, index);
+		}
+
+		@Override
+		protected boolean canFork() {
+			return true;
+		}
+
+		@Override
+		protected ApiResponseVisitor fork() {
+			return new ApiResponseVisitor(index);
+		}
+
 		@Override
 		public ClassDeclaration visitClassDeclaration(final ClassDeclaration classDecl, final ExecutionContext p) {
 			final ClassDeclaration c = super.visitClassDeclaration(classDecl, p);
-			return c.withLeadingAnnotations(handleClassAnnotations(c.getLeadingAnnotations()));
+			return c.withLeadingAnnotations(handleClassAnnotations(c.getLeadingAnnotations(), c.getPrefix(), MigrationMetrics.get(p)));
 		}
 
-		private List<Annotation> handleClassAnnotations(final List<Annotation> leadingAnnotations) {
-			final List<J.Annotation> ret = new ArrayList<>();
-			for (final Annotation annotation : leadingAnnotations) {
+		/**
+		 * The same list when no annotation is converted, so that an already
+		 * migrated class is left untouched. The annotations added for an
+		 * {@code @Api} are put on their own lines at its indentation, which is
+		 * held by the class when it is the first annotation.
+		 */
+		private List<Annotation> handleClassAnnotations(final List<Annotation> leadingAnnotations, final Space classPrefix, final MigrationMetrics metrics) {
+			return ListUtils.flatMap(leadingAnnotations, annotation -> {
 				if (ANN.matches(annotation)) {
-					final Annotation res = convertToTag(annotation);
-					ret.add(res);
+					final List<Annotation> res = converter.api(annotation);
+					final Space line = annotation.getPrefix().getWhitespace().contains("\n") ? annotation.getPrefix() : classPrefix;
+					final List<Annotation> ret = new ArrayList<>();
+					for (int i = 0; i < res.size(); i++) {
+						ret.add(i == 0 ? res.get(i).withPrefix(annotation.getPrefix()) : res.get(i).withPrefix(Space.format("\n" + line.getIndent())));
+					}
+					metrics.converted("Api");
 					maybeRemoveImport("io.swagger.annotations.Api");
 					maybeRemoveImport("io.swagger.annotations.Authorization");
-					maybeAddImport(Tag.class.getCanonicalName());
-				} else {
-					ret.add(annotation);
+					maybeRemoveImport("io.swagger.annotations.AuthorizationScope");
+					return ret;
 				}
-			}
-			return ret;
-		}
-
-		private static Annotation convertToTag(final Annotation annotation) {
-			final List<Expression> args = filterArguments(annotation.getArguments(), "value");
-			if (args.isEmpty()) {
-				return null;
-			}
-			final Map<String, J.Assignment> map = new LinkedHashMap<>();
-			map.put("name", (J.Assignment) args.get(0));
-			Optional.ofNullable(filterArguments(annotation.getArguments(), "description"))
-					.filter(x -> !x.isEmpty())
-					.ifPresent(x -> map.put("description", (J.Assignment) args.get(0)));
-			return createAnnotation(Tag.class, map);
-		}
-
-		private static @Nullable List<Expression> filterArguments(@Nullable final List<Expression> arguments, final String element) {
-			return arguments.stream().filter(Assignment.class::isInstance)
-					.map(J.Assignment.class::cast)
-					.filter(x -> ((J.Identifier) x.getVariable()).getSimpleName().equals(element))
-					.map(Expression.class::cast)
-					.toList();
+				if (ANN_SWAGGER_DEFINITION.matches(annotation)) {
+					metrics.converted("SwaggerDefinition");
+					for (final String type : List.of("SwaggerDefinition", "Info", "Contact", "License", "Tag", "ExternalDocs")) {
+						maybeRemoveImport("io.swagger.annotations." + type);
+					}
+					return converter.openApiDefinition(annotation).withPrefix(annotation.getPrefix());
+				}
+				return annotation;
+			});
 		}
 
 		@Override
 		public MethodDeclaration visitMethodDeclaration(final MethodDeclaration method, final ExecutionContext p) {
 			final MethodDeclaration m = super.visitMethodDeclaration(method, p);
-			final MethodDeclaration m1 = m.withLeadingAnnotations(convertApiResponses(m.getLeadingAnnotations()));
-			return maybeAutoFormat(m, m1, p);
+			final MethodDeclaration m1 = m.withLeadingAnnotations(convertApiResponses(m.getLeadingAnnotations(), p));
+			final MethodDeclaration m2 = HotSpotProfiler.time(p, Phase.FORMAT, () -> maybeAutoFormat(m, m1, p));
+			return m2.withLeadingAnnotations(ListUtils.map(m2.getLeadingAnnotations(), (i, x) -> restoreLayout(m.getLeadingAnnotations().get(i), x)));
 		}
 
-		private List<Annotation> convertApiResponses(final List<Annotation> leadingAnnotations) {
-			return leadingAnnotations.stream()
-					.map(this::convertAnnotation)
-					.toList();
+		/**
+		 * The formatter indents the responses of a converted {@code @ApiResponses}
+		 * as a continuation and trims the space before the closing brace; put back
+		 * the line layout of the {@code original} array.
+		 */
+		private static Annotation restoreLayout(final Annotation original, final Annotation formatted) {
+			if (original == formatted || !ANN_API_RESPONSES.matches(original) || formatted.getArguments() == null
+					|| !(formatted.getArguments().get(0) instanceof final J.Assignment assignment)
+					|| !(assignment.getAssignment() instanceof final J.NewArray array) || array.getPadding().getInitializer() == null) {
+				return formatted;
+			}
+			final List<JRightPadded<Expression>> layout = layout(AnnotationValues.attributes(original).get("value"));
+			final JContainer<Expression> init = array.getPadding().getInitializer();
+			final List<JRightPadded<Expression>> elements = ListUtils.map(init.getPadding().getElements(),
+					(i, x) -> i < layout.size() ? x.withElement(x.getElement().withPrefix(layout.get(i).getElement().getPrefix())).withAfter(layout.get(i).getAfter()) : x);
+			final J.NewArray restored = array.getPadding().withInitializer(init.getPadding().withElements(elements));
+			return formatted.withArguments(List.of(assignment.withAssignment(restored)));
+		}
+
+		/**
+		 * The same list when there is no {@code @ApiResponses}, so that
+		 * {@code maybeAutoFormat} leaves the method alone.
+		 */
+		private List<Annotation> convertApiResponses(final List<Annotation> leadingAnnotations, final ExecutionContext ctx) {
+			return ListUtils.map(leadingAnnotations, x -> convertAnnotation(x, ctx));
 		}
 
-		private Annotation convertAnnotation(final Annotation annotation) {
+		private Annotation convertAnnotation(final Annotation annotation, final ExecutionContext ctx) {
 			if (!ANN_API_RESPONSES.matches(annotation)) {
 				return annotation;
 			}
-			final Expression args = annotation.getArguments().iterator().next();
-			if (args instanceof final J.Assignment ass &&
-					"value".equals(((J.Identifier) ass.getVariable()).getSimpleName())) {
-				final Expression subAss = ass.getAssignment();
-				if (subAss instanceof final J.NewArray na) {
-					final List<Expression> init = na.getInitializer();
-					final List<JRightPadded<Expression>> resp = init.stream()
-							.map(x -> convertApiResponse((Annotation) x, init))
-							.map(ApiResponseVisitor::packJRight)
-							.toList();
-					final ShallowClass tagTypeResponse = JavaType.ShallowClass.build("io.swagger.v3.oas.annotations.responses.ApiResponses");
-					final JContainer<Expression> jContainer = JContainer.build(Space.EMPTY, resp, Markers.EMPTY);
-					final J.NewArray jArray = new J.NewArray(randomId(), Space.EMPTY, Markers.EMPTY, null, List.of(), jContainer, tagTypeResponse);
-					final ShallowClass tagType = JavaType.ShallowClass.build("io.swagger.v3.oas.annotations.responses.ApiResponses");
-					maybeRemoveImport(SW2_API_RESPONSES);
-					maybeAddImport(tagType);
-					final NameTree annType = new J.Identifier(randomId(), Space.EMPTY, Markers.EMPTY, tagType.getClassName(), tagType, null);
-					final Expression value = new J.Identifier(randomId(), Space.EMPTY, Markers.EMPTY, "value", null, null);
-					final J.Assignment assigment = new J.Assignment(randomId(), Space.EMPTY, Markers.EMPTY, value, JLeftPadded.build(jArray), tagType);
-					final JContainer<Expression> jContainerRoot = JContainer.build(List.of(JRightPadded.build(assigment)));
-					return new Annotation(randomId(), Space.EMPTY, Markers.EMPTY, annType, jContainerRoot);
-				}
+			final Expression subAss = AnnotationValues.attributes(annotation).get("value");
+			final List<Expression> init = Swagger3Converter.elements(subAss);
+			final MigrationMetrics metrics = MigrationMetrics.get(ctx);
+			metrics.converted("ApiResponses");
+			init.forEach(x -> metrics.converted("ApiResponse"));
+			final List<JRightPadded<Expression>> layout = layout(subAss);
+			final List<JRightPadded<Expression>> resp = new ArrayList<>();
+			for (int i = 0; i < init.size(); i++) {
+				final Annotation converted = convertApiResponse((Annotation) init.get(i), ConversionCache.get(ctx));
+				resp.add(i < layout.size() ? layout.get(i).withElement(converted.withPrefix(layout.get(i).getElement().getPrefix()))
+						: packJRight(converted));
+			}
+			final ShallowClass tagTypeResponse = JavaType.ShallowClass.build("io.swagger.v3.oas.annotations.responses.ApiResponses");
+			final JContainer<Expression> jContainer = JContainer.build(Space.EMPTY, resp, Markers.EMPTY);
+			final J.NewArray jArray = new J.NewArray(randomId(), Space.EMPTY, Markers.EMPTY, null, List.of(), jContainer, tagTypeResponse);
+			final ShallowClass tagType = JavaType.ShallowClass.build("io.swagger.v3.oas.annotations.responses.ApiResponses");
+			maybeRemoveImport(SW2_API_RESPONSES);
+			maybeAddImport(tagType);
+			final NameTree annType = new J.Identifier(randomId(), Space.EMPTY, Markers.EMPTY, tagType.getClassName(), tagType, null);
+			final Expression value = new J.Identifier(randomId(), Space.EMPTY, Markers.EMPTY, "value", null, null);
+			final J.Assignment assigment = new J.Assignment(randomId(), Space.EMPTY, Markers.EMPTY, value, JLeftPadded.build(jArray), tagType);
+			final JContainer<Expression> jContainerRoot = JContainer.build(List.of(JRightPadded.build(assigment)));
+			return new Annotation(randomId(), Space.EMPTY, Markers.EMPTY, annType, jContainerRoot);
+		}
+
+		/**
+		 * The padded elements of the original {@code value} array, so that the
+		 * converted responses keep their line breaks and the closing brace its
+		 * spacing.
+		 */
+		private static List<JRightPadded<Expression>> layout(@Nullable final Expression value) {
+			if (value instanceof final J.NewArray array && array.getPadding().getInitializer() != null) {
+				return array.getPadding().getInitializer().getPadding().getElements().stream()
+						.filter(x -> !(x.getElement() instanceof J.Empty))
+						.toList();
+			}
+			return List.of();
+		}
+
+		/**
+		 * Identical responses are frequent in generated interfaces, the converted
+		 * tree is reused from the run's {@link ConversionCache}.
+		 */
+		private J.Annotation convertApiResponse(final J.Annotation ann, final ConversionCache cache) {
+			maybeRemoveImport(SW2_API_RESPONSE);
+			final String key = ConversionCache.key("ApiResponse|" + resolution(ann), ann, getCursor());
+			final Optional<ConversionCache.Conversion> cached = cache.get(key);
+			if (cached.isPresent()) {
+				cached.get().imports().forEach(this::maybeAddImport);
+				return (J.Annotation) cached.get().tree();
+			}
+			recordedImports = new ArrayList<>();
+			try {
+				final J.Annotation ret = doConvertApiResponse(ann);
+				cache.put(key, new ConversionCache.Conversion(ret, List.copyOf(recordedImports)));
+				return ret;
+			} finally {
+				recordedImports = null;
 			}
-			throw new IllegalArgumentException("");
 		}
 
-		private J.Annotation convertApiResponse(final J.Annotation ann, final List<Expression> init) {
+		private J.Annotation doConvertApiResponse(final J.Annotation ann) {
 			@Nullable
 			final List<Expression> args = ann.getArguments();
 			final List<JRightPadded<Expression>> paddedAargs = args.stream()
-					.map(x -> convertAssigment((Assignment) x, init))
+					.map(x -> convertAssigment((Assignment) x, args))
+					.filter(x -> x != null)
 					.map(ApiResponseVisitor::packJRight)
 					.toList();
 			@Nullable
 			final JContainer<Expression> jContainer = JContainer.build(Space.EMPTY, paddedAargs, Markers.EMPTY);
 			final ShallowClass tagType = JavaType.ShallowClass.build("io.swagger.v3.oas.annotations.responses.ApiResponse");
-			maybeRemoveImport(SW2_API_RESPONSE);
-			maybeAddImport(tagType);
+			addImport(tagType.getFullyQualifiedName());
 			final NameTree annType = new J.Identifier(randomId(), Space.EMPTY, Markers.EMPTY, tagType.getClassName(), tagType, null);
 			return new Annotation(randomId(), Space.EMPTY, Markers.EMPTY, annType, jContainer);
 		}
 
+		/**
+		 * {@code maybeAddImport} recording the type for cached conversions.
+		 */
+		private void addImport(final String fqn) {
+			maybeAddImport(fqn);
+			if (recordedImports != null) {
+				recordedImports.add(fqn);
+			}
+		}
+
 		private static JRightPadded<Expression> packJRight(final Expression x) {
 			return JRightPadded.build(x);
 		}
 
-		private J.Assignment convertAssigment(final J.Assignment x, final List<Expression> init) {
+		private J.Assignment convertAssigment(final J.Assignment x, final List<Expression> args) {
 			final String name = ((J.Identifier) x.getVariable()).getSimpleName();
 			if ("code".equals(name)) {
 				return codeConvertion(x);
@@ -201,29 +317,134 @@ public class Sw3ResponseRecipe extends Recipe {
 				return sameConvertion("description", x);
 			}
 			if ("response".equals(name)) {
-				maybeAddImport(Content.class.getCanonicalName());
-				final Assignment schema = createSchema(x, init);
-				final Annotation content = createAnnotation(Content.class, Map.of("schema", schema));
-				return createAssignment("content", content);
+				return createContent(createSchema(x, args));
 			}
-			if ("responseContainer".equals(name)) {
+			if ("reference".equals(name)) {
+				if (findAttribute(args, "response").isPresent()) {
+					// response wins over reference.
+					return null;
+				}
+				return createContent(createReference(x, args));
+			}
+			if ("responseContainer".equals(name) || "examples".equals(name)) {
 				// Remove it.
 				return null;
 			}
+			if ("responseHeaders".equals(name)) {
+				maybeRemoveImport("io.swagger.annotations.ResponseHeader");
+				return converter.headers(x.getAssignment()).orElse(null);
+			}
 			throw new IllegalArgumentException("Unknown assignment " + name);
 		}
 
-		private J.Assignment createSchema(final J.Assignment x, final List<Expression> init) {
-			final Optional<Assignment> optContainer = findAttribute(init, "responseContainer");
-			maybeAddImport(Schema.class.getCanonicalName());
-			if (optContainer.isEmpty()) {
-				final Annotation ann = createAnnotation(Schema.class, Map.of("implementation", x));
-				return createAssignment("schema", ann);
+		private Assignment createContent(final Assignment schema) {
+			addImport(Content.class.getCanonicalName());
+			final String attr = ((J.Identifier) schema.getVariable()).getSimpleName();
+			final Annotation content = createAnnotation(Content.class, Map.of(attr, schema));
+			return createAssignment("content", content);
+		}
+
+		/**
+		 * {@code response} as a {@code @Schema}, or as an {@code @ArraySchema} for
+		 * a {@code List} or {@code Set} container or an array class. A model class
+		 * is taken from the index, resolved through the imports of the unit, so it
+		 * is imported and typed even when the parser could not attribute it.
+		 */
+		private J.Assignment createSchema(final J.Assignment x, final List<Expression> args) {
+			final String container = findAttribute(args, "responseContainer")
+					.map(Assignment::getAssignment)
+					.map(AnnotationValues::string)
+					.orElse("");
+			Expression type = x.getAssignment();
+			boolean array = "List".equals(container) || "Set".equals(container);
+			if (type instanceof final J.FieldAccess literal && literal.getTarget() instanceof final J.ArrayType arrayType
+					&& arrayType.getElementType() instanceof final Expression element) {
+				final Expression target = element.withPrefix(Space.EMPTY);
+				type = classLiteral(target);
+				array = true;
 			}
-			final Annotation annSchema = createAnnotation(Schema.class, Map.of("implementation", x));
-			final Annotation ann = createAnnotation2(ArraySchema.class, Map.of("schema", annSchema));
-			maybeAddImport(ArraySchema.class.getCanonicalName());
-			return createAssignment("array", ann);
+			final Optional<ApiModelIndex.Model> model = model(type);
+			if (model.isPresent()) {
+				addImport(model.get().fqn());
+				type = classLiteral(model.get());
+			}
+			addImport(Schema.class.getCanonicalName());
+			final Annotation annSchema = createAnnotation(Schema.class, Map.of("implementation", createAssignment("implementation", type)));
+			if (!array) {
+				return createAssignment("schema", annSchema);
+			}
+			addImport(ArraySchema.class.getCanonicalName());
+			final List<Assignment> arrayArgs = new ArrayList<>();
+			arrayArgs.add(createAssignment("schema", annSchema));
+			if ("Set".equals(container)) {
+				arrayArgs.add(createAssignment("uniqueItems", new J.Literal(randomId(), Space.EMPTY, Markers.EMPTY, true, "true", null, JavaType.Primitive.Boolean)));
+			}
+			return createAssignment("array", createAnnotation(ArraySchema.class, arrayArgs));
+		}
+
+		/**
+		 * The indexed model named by the class literal {@code type}, or by its
+		 * element type for an array class.
+		 */
+		private Optional<ApiModelIndex.Model> model(final Expression type) {
+			if (!(type instanceof final J.FieldAccess literal) || !"class".equals(literal.getSimpleName())) {
+				return Optional.empty();
+			}
+			Expression target = literal.getTarget();
+			if (target instanceof final J.ArrayType arrayType && arrayType.getElementType() instanceof final Expression element) {
+				target = element;
+			}
+			final JavaType.FullyQualified fq = TypeUtils.asFullyQualified(target.getType());
+			final String name = fq == null ? target.printTrimmed(getCursor()) : fq.getFullyQualifiedName();
+			return index.find(name, unit());
+		}
+
+		/**
+		 * {@code reference} names a model: use its class when the model index knows
+		 * it, keep the raw reference otherwise.
+		 */
+		private J.Assignment createReference(final J.Assignment x, final List<Expression> args) {
+			final String reference = AnnotationValues.string(x.getAssignment());
+			final Optional<ApiModelIndex.Model> model = Optional.ofNullable(reference).flatMap(y -> index.find(y, unit()));
+			if (model.isEmpty()) {
+				addImport(Schema.class.getCanonicalName());
+				return createAssignment("schema", createAnnotation(Schema.class, Map.of("ref", x)));
+			}
+			addImport(model.get().fqn());
+			return createSchema(createAssignment("response", classLiteral(model.get())), args);
+		}
+
+		@Nullable
+		private J.CompilationUnit unit() {
+			return getCursor().firstEnclosing(J.CompilationUnit.class);
+		}
+
+		/**
+		 * Fully qualified names of the models the {@code response} and
+		 * {@code reference} of {@code ann} resolve to in this unit, which the
+		 * cached conversion depends on.
+		 */
+		private String resolution(final J.Annotation ann) {
+			final List<Expression> args = Optional.ofNullable(ann.getArguments()).orElseGet(List::of);
+			final StringBuilder sb = new StringBuilder();
+			findAttribute(args, "response").flatMap(x -> model(x.getAssignment())).ifPresent(x -> sb.append(x.fqn()));
+			sb.append('|');
+			findAttribute(args, "reference").map(x -> AnnotationValues.string(x.getAssignment()))
+					.flatMap(x -> index.find(x, unit()))
+					.ifPresent(x -> sb.append(x.fqn()));
+			return sb.toString();
+		}
+
+		private static J.FieldAccess classLiteral(final Expression target) {
+			final J.Identifier clazz = new J.Identifier(randomId(), Space.EMPTY, Markers.EMPTY, "class", null, null);
+			return new J.FieldAccess(randomId(), Space.EMPTY, Markers.EMPTY, target, JLeftPadded.build(clazz), JavaType.ShallowClass.build("java.lang.Class"));
+		}
+
+		static J.FieldAccess classLiteral(final ApiModelIndex.Model model) {
+			final ShallowClass type = JavaType.ShallowClass.build(model.fqn());
+			final J.Identifier target = new J.Identifier(randomId(), Space.EMPTY, Markers.EMPTY, model.simpleName(), type, null);
+			final J.Identifier clazz = new J.Identifier(randomId(), Space.EMPTY, Markers.EMPTY, "class", null, null);
+			return new J.FieldAccess(randomId(), Space.EMPTY, Markers.EMPTY, target, JLeftPadded.build(clazz), JavaType.ShallowClass.build("java.lang.Class"));
 		}
 
 		private static Optional<J.Assignment> findAttribute(final List<Expression> init, final String string) {
@@ -234,9 +455,9 @@ public class Sw3ResponseRecipe extends Recipe {
 					.findFirst();
 		}
 
-		private static Annotation createAnnotation2(final Class<?> class1, final Map<String, Annotation> of) {
-			final List<JRightPadded<Expression>> paddedAargs = of.entrySet().stream()
-					.map(c -> createAssignment(c.getKey(), c.getValue()))
+		private static J.Annotation createAnnotation(final Class<?> class1, final List<Assignment> assignments) {
+			final List<JRightPadded<Expression>> paddedAargs = assignments.stream()
+					.map(Expression.class::cast)
 					.map(ApiResponseVisitor::packJRight)
 					.toList();
 			final ShallowClass clazz = JavaType.ShallowClass.build(class1.getCanonicalName());
@@ -0,0 +1,604 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.openrewrite.Tree.randomId;
+import static org.vignaudo.rewrite.swagger.AnnotationValues.annotation;
+import static org.vignaudo.rewrite.swagger.AnnotationValues.annotations;
+import static org.vignaudo.rewrite.swagger.AnnotationValues.attributes;
+import static org.vignaudo.rewrite.swagger.AnnotationValues.bool;
+import static org.vignaudo.rewrite.swagger.AnnotationValues.className;
+import static org.vignaudo.rewrite.swagger.AnnotationValues.enumName;
+import static org.vignaudo.rewrite.swagger.AnnotationValues.enumNames;
+import static org.vignaudo.rewrite.swagger.AnnotationValues.string;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.Expression;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JContainer;
+import org.openrewrite.java.tree.JLeftPadded;
+import org.openrewrite.java.tree.JRightPadded;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.java.tree.JavaType.ShallowClass;
+import org.openrewrite.java.tree.Space;
+import org.openrewrite.marker.Markers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds the Swagger 3 counterparts of the Swagger 2 annotations that have no
+ * one to one mapping: operations, implicit parameters, authorizations, API
+ * definitions and the schema related attributes.
+ *
+ * <p>
+ * Every type used by a built tree is passed to the {@code imports} callback,
+ * usually {@code maybeAddImport} of the calling visitor.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+final class Swagger3Converter {
+	private static final Logger LOG = LoggerFactory.getLogger(Swagger3Converter.class);
+
+	static final String SW3 = "io.swagger.v3.oas.annotations";
+	static final String OPERATION = SW3 + ".Operation";
+	static final String PARAMETER = SW3 + ".Parameter";
+	static final String PARAMETERS = SW3 + ".Parameters";
+	static final String HIDDEN = SW3 + ".Hidden";
+	static final String OPENAPI_DEFINITION = SW3 + ".OpenAPIDefinition";
+	static final String EXTERNAL_DOCUMENTATION = SW3 + ".ExternalDocumentation";
+	static final String PARAMETER_IN = SW3 + ".enums.ParameterIn";
+	static final String SCHEMA = SW3 + ".media.Schema";
+	static final String ARRAY_SCHEMA = SW3 + ".media.ArraySchema";
+	static final String CONTENT = SW3 + ".media.Content";
+	static final String HEADER = SW3 + ".headers.Header";
+	static final String API_RESPONSE = SW3 + ".responses.ApiResponse";
+	static final String SECURITY_REQUIREMENT = SW3 + ".security.SecurityRequirement";
+	static final String TAG = SW3 + ".tags.Tag";
+	static final String SERVER = SW3 + ".servers.Server";
+	static final String INFO = SW3 + ".info.Info";
+	static final String CONTACT = SW3 + ".info.Contact";
+	static final String LICENSE = SW3 + ".info.License";
+
+	/** {@code @ApiOperation} attributes with an {@code @Operation} equivalent, the response aside. */
+	private static final Set<String> OPERATION_ATTRIBUTES = Set.of("value", "notes", "nickname", "httpMethod", "tags", "authorizations", "hidden");
+	private static final Set<String> OPERATION_RESPONSE = Set.of("response", "code", "responseContainer");
+	private static final Pattern RANGE = Pattern.compile("range([\\[(])(.*),(.*)([\\])])");
+	private static final List<String> PARAMETER_IN_VALUES = List.of("path", "query", "header", "cookie");
+	/** Swagger 2 data type to OpenAPI type and format. */
+	private static final Map<String, String[]> PRIMITIVES = Map.ofEntries(
+			Map.entry("string", new String[] { "string", null }),
+			Map.entry("char", new String[] { "string", null }),
+			Map.entry("character", new String[] { "string", null }),
+			Map.entry("byte", new String[] { "string", "byte" }),
+			Map.entry("binary", new String[] { "string", "binary" }),
+			Map.entry("date", new String[] { "string", "date" }),
+			Map.entry("date-time", new String[] { "string", "date-time" }),
+			Map.entry("datetime", new String[] { "string", "date-time" }),
+			Map.entry("uuid", new String[] { "string", "uuid" }),
+			Map.entry("int", new String[] { "integer", "int32" }),
+			Map.entry("integer", new String[] { "integer", "int32" }),
+			Map.entry("long", new String[] { "integer", "int64" }),
+			Map.entry("float", new String[] { "number", "float" }),
+			Map.entry("double", new String[] { "number", "double" }),
+			Map.entry("number", new String[] { "number", null }),
+			Map.entry("boolean", new String[] { "boolean", null }),
+			Map.entry("object", new String[] { "object", null }));
+
+	private final Consumer<String> imports;
+	private final ApiModelIndex index;
+
+	Swagger3Converter(final Consumer<String> imports, final ApiModelIndex index) {
+		this.imports = imports;
+		this.index = index;
+	}
+
+	/**
+	 * {@code @Api} becomes one {@code @Tag} per tag, plus {@code @Hidden} and
+	 * {@code @SecurityRequirement} when needed.
+	 */
+	List<J.Annotation> api(final J.Annotation api) {
+		final Map<String, Expression> attrs = attributes(api);
+		List<Expression> names = nonEmpty(elements(attrs.get("tags")));
+		if (names.isEmpty()) {
+			names = nonEmpty(elements(attrs.get("value")));
+		}
+		final List<J.Annotation> ret = new ArrayList<>();
+		for (final Expression name : names) {
+			final List<J.Assignment> args = new ArrayList<>();
+			args.add(assignment("name", name));
+			copy(attrs, "description", "description", args);
+			ret.add(create(TAG, args));
+		}
+		if (Boolean.TRUE.equals(bool(attrs.get("hidden")))) {
+			ret.add(create(HIDDEN, List.of()));
+		}
+		ret.addAll(securityRequirements(attrs.get("authorizations")));
+		return ret;
+	}
+
+	/**
+	 * {@code @ApiOperation} to {@code @Operation}. {@code response} only becomes
+	 * an {@code @ApiResponse} when the method has no explicit responses; the
+	 * attributes left without equivalent are logged at debug.
+	 */
+	J.Annotation operation(final J.Annotation apiOperation, final boolean hasResponses) {
+		final Map<String, Expression> attrs = attributes(apiOperation);
+		final List<J.Assignment> args = new ArrayList<>();
+		final Expression value = attrs.get("value");
+		final Expression notes = attrs.get("notes");
+		if (!isEmpty(notes)) {
+			if (!isEmpty(value)) {
+				args.add(assignment("summary", value));
+			}
+			args.add(assignment("description", notes));
+		} else if (value != null) {
+			args.add(assignment("description", value));
+		}
+		copy(attrs, "nickname", "operationId", args);
+		copy(attrs, "httpMethod", "method", args);
+		final List<Expression> tags = nonEmpty(elements(attrs.get("tags")));
+		if (!tags.isEmpty()) {
+			args.add(assignment("tags", array(tags)));
+		}
+		final List<J.Annotation> security = securityRequirements(attrs.get("authorizations"));
+		if (!security.isEmpty()) {
+			args.add(assignment("security", array(security)));
+		}
+		final Optional<J.Annotation> response = hasResponses ? Optional.empty() : response(attrs);
+		response.ifPresent(x -> args.add(assignment("responses", x)));
+		copyTrue(attrs, "hidden", "hidden", args);
+		logDropped(attrs.keySet(), response.isPresent(), Optional.ofNullable(string(attrs.get("nickname"))).orElseGet(() -> string(value)));
+		return create(OPERATION, args);
+	}
+
+	/**
+	 * Log at debug the {@code @ApiOperation} attributes of {@code operation}
+	 * that have no {@code @Operation} equivalent, such as {@code produces},
+	 * {@code consumes} or {@code responseHeaders}, and the response
+	 * attributes when no response was converted.
+	 */
+	static void logDropped(final Set<String> attributes, final boolean responseConverted, @Nullable final String operation) {
+		if (!LOG.isDebugEnabled()) {
+			return;
+		}
+		final List<String> dropped = attributes.stream()
+				.filter(x -> !OPERATION_ATTRIBUTES.contains(x) && !(responseConverted && OPERATION_RESPONSE.contains(x)))
+				.sorted()
+				.toList();
+		if (!dropped.isEmpty()) {
+			LOG.debug("@ApiOperation {}: {} dropped, @Operation has no equivalent.", operation, dropped);
+		}
+	}
+
+	private Optional<J.Annotation> response(final Map<String, Expression> attrs) {
+		final Expression response = attrs.get("response");
+		if (isVoid(response)) {
+			return Optional.empty();
+		}
+		final Object code = attrs.get("code") instanceof final J.Literal lit ? lit.getValue() : null;
+		final List<J.Assignment> args = new ArrayList<>();
+		args.add(assignment("responseCode", literal(code == null ? "200" : String.valueOf(code))));
+		args.add(assignment("content", content(response, string(attrs.get("responseContainer")))));
+		return Optional.of(create(API_RESPONSE, args));
+	}
+
+	J.Annotation content(final Expression implementation, @Nullable final String container) {
+		final J.Annotation schema = create(SCHEMA, List.of(assignment("implementation", implementation)));
+		if (!"List".equals(container) && !"Set".equals(container)) {
+			return create(CONTENT, List.of(assignment("schema", schema)));
+		}
+		final List<J.Assignment> array = new ArrayList<>();
+		array.add(assignment("schema", schema));
+		if ("Set".equals(container)) {
+			array.add(assignment("uniqueItems", literal(true)));
+		}
+		return create(CONTENT, List.of(assignment("array", create(ARRAY_SCHEMA, array))));
+	}
+
+	/**
+	 * {@code @ResponseHeader}s of an {@code @ApiResponse} to {@code @Header}s.
+	 */
+	Optional<J.Assignment> headers(@Nullable final Expression responseHeaders) {
+		final List<J.Annotation> headers = new ArrayList<>();
+		for (final J.Annotation header : annotations(responseHeaders)) {
+			final Map<String, Expression> attrs = attributes(header);
+			if (isEmpty(attrs.get("name"))) {
+				continue;
+			}
+			final List<J.Assignment> args = new ArrayList<>();
+			copy(attrs, "name", "name", args);
+			copy(attrs, "description", "description", args);
+			if (!isVoid(attrs.get("response"))) {
+				args.add(assignment("schema", create(SCHEMA, List.of(assignment("implementation", attrs.get("response"))))));
+			}
+			headers.add(create(HEADER, args));
+		}
+		return headers.isEmpty() ? Optional.empty() : Optional.of(assignment("headers", array(headers)));
+	}
+
+	/**
+	 * {@code @ApiImplicitParams} to {@code @Parameters}.
+	 */
+	J.Annotation parameters(final J.Annotation implicitParams) {
+		final List<J.Annotation> params = annotations(attributes(implicitParams).get("value")).stream()
+				.map(this::parameter)
+				.toList();
+		return create(PARAMETERS, List.of(assignment("value", array(params))));
+	}
+
+	/**
+	 * {@code @ApiImplicitParam} to {@code @Parameter}.
+	 */
+	J.Annotation parameter(final J.Annotation implicitParam) {
+		final Map<String, Expression> attrs = attributes(implicitParam);
+		final List<J.Assignment> args = new ArrayList<>();
+		copy(attrs, "name", "name", args);
+		final String paramType = string(attrs.get("paramType"));
+		if (paramType != null && PARAMETER_IN_VALUES.contains(paramType.toLowerCase(Locale.ROOT))) {
+			args.add(assignment("in", qualified(PARAMETER_IN, "ParameterIn." + paramType.toUpperCase(Locale.ROOT))));
+		}
+		copy(attrs, "value", "description", args);
+		copyTrue(attrs, "required", "required", args);
+		copy(attrs, "example", "example", args);
+		copyTrue(attrs, "allowEmptyValue", "allowEmptyValue", args);
+		schema(attrs.get("dataType"), attrs.get("dataTypeClass"), attrs.get("defaultValue"), attrs.get("allowableValues"))
+				.ifPresent(schema -> {
+					if (Boolean.TRUE.equals(bool(attrs.get("allowMultiple")))) {
+						args.add(assignment("array", create(ARRAY_SCHEMA, List.of(assignment("schema", schema)))));
+					} else {
+						args.add(assignment("schema", schema));
+					}
+				});
+		return create(PARAMETER, args);
+	}
+
+	/**
+	 * {@code @Schema} gathering a type, a default value and allowable values,
+	 * empty when none is set.
+	 */
+	Optional<J.Annotation> schema(@Nullable final Expression dataType, @Nullable final Expression dataTypeClass, @Nullable final Expression defaultValue,
+			@Nullable final Expression allowableValues) {
+		final List<J.Assignment> args = new ArrayList<>(type(dataType, dataTypeClass));
+		if (!isEmpty(defaultValue)) {
+			args.add(assignment("defaultValue", defaultValue));
+		}
+		args.addAll(allowableValues(allowableValues));
+		return args.isEmpty() ? Optional.empty() : Optional.of(create(SCHEMA, args));
+	}
+
+	/**
+	 * Type attributes of a {@code @Schema} for a Swagger 2 {@code dataType}:
+	 * {@code type}/{@code format} for primitives, {@code implementation} for
+	 * classes and models known by the index.
+	 */
+	List<J.Assignment> type(@Nullable final Expression dataType, @Nullable final Expression dataTypeClass) {
+		if (!isVoid(dataTypeClass)) {
+			return List.of(assignment("implementation", dataTypeClass));
+		}
+		final String name = string(dataType);
+		if (name == null || name.isBlank()) {
+			return List.of();
+		}
+		final String[] primitive = PRIMITIVES.get(name.replace("java.lang.", "").toLowerCase(Locale.ROOT));
+		if (primitive != null) {
+			final List<J.Assignment> ret = new ArrayList<>();
+			ret.add(assignment("type", literal(primitive[0])));
+			if (primitive[1] != null) {
+				ret.add(assignment("format", literal(primitive[1])));
+			}
+			return ret;
+		}
+		final Optional<ApiModelIndex.Model> model = index.find(name);
+		if (model.isPresent()) {
+			return List.of(assignment("implementation", classLiteral(model.get().fqn())));
+		}
+		if (name.contains(".")) {
+			return List.of(assignment("implementation", classLiteral(name)));
+		}
+		LOG.debug("Unknown data type {}, dropped.", name);
+		return List.of();
+	}
+
+	/**
+	 * Swagger 2 {@code allowableValues}: either a comma separated list or a
+	 * {@code range[min, max]} where brackets may be open and bounds infinite.
+	 */
+	List<J.Assignment> allowableValues(@Nullable final Expression expression) {
+		final String value = string(expression);
+		if (value == null || value.isBlank()) {
+			return List.of();
+		}
+		final List<J.Assignment> ret = new ArrayList<>();
+		final Matcher range = RANGE.matcher(value.replace(" ", ""));
+		if (range.matches()) {
+			final String min = range.group(2);
+			final String max = range.group(3);
+			if (!min.isEmpty() && !"-infinity".equalsIgnoreCase(min)) {
+				ret.add(assignment("minimum", literal(min)));
+				if ("(".equals(range.group(1))) {
+					ret.add(assignment("exclusiveMinimum", literal(true)));
+				}
+			}
+			if (!max.isEmpty() && !"infinity".equalsIgnoreCase(max)) {
+				ret.add(assignment("maximum", literal(max)));
+				if (")".equals(range.group(4))) {
+					ret.add(assignment("exclusiveMaximum", literal(true)));
+				}
+			}
+			return ret;
+		}
+		final List<Expression> values = new ArrayList<>();
+		for (final String v : value.split(",")) {
+			if (!v.isBlank()) {
+				values.add(literal(v.trim()));
+			}
+		}
+		ret.add(assignment("allowableValues", array(values)));
+		return ret;
+	}
+
+	/**
+	 * {@code ApiModelProperty.AccessMode} or {@code readOnly} to
+	 * {@code Schema.AccessMode}; {@code AUTO} is the default in both versions.
+	 */
+	Optional<J.Assignment> accessMode(@Nullable final Expression accessMode, @Nullable final Expression readOnly) {
+		String mode = enumName(accessMode);
+		if (mode == null && Boolean.TRUE.equals(bool(readOnly))) {
+			mode = "READ_ONLY";
+		}
+		if (mode == null || "AUTO".equals(mode)) {
+			return Optional.empty();
+		}
+		return Optional.of(assignment("accessMode", qualified(SCHEMA, "Schema.AccessMode." + mode)));
+	}
+
+	/**
+	 * {@code @Authorization}s to {@code @SecurityRequirement}s, ignoring the
+	 * empty default scope.
+	 */
+	List<J.Annotation> securityRequirements(@Nullable final Expression authorizations) {
+		final List<J.Annotation> ret = new ArrayList<>();
+		for (final J.Annotation authorization : annotations(authorizations)) {
+			final Map<String, Expression> attrs = attributes(authorization);
+			if (isEmpty(attrs.get("value"))) {
+				continue;
+			}
+			final List<J.Assignment> args = new ArrayList<>();
+			args.add(assignment("name", attrs.get("value")));
+			final List<Expression> scopes = nonEmpty(annotations(attrs.get("scopes")).stream()
+					.map(x -> attributes(x).get("scope"))
+					.filter(x -> x != null)
+					.toList());
+			if (!scopes.isEmpty()) {
+				args.add(assignment("scopes", array(scopes)));
+			}
+			ret.add(create(SECURITY_REQUIREMENT, args));
+		}
+		return ret;
+	}
+
+	/**
+	 * {@code @SwaggerDefinition} to {@code @OpenAPIDefinition}. Security
+	 * definitions have no annotation equivalent on the definition itself and
+	 * are dropped.
+	 */
+	J.Annotation openApiDefinition(final J.Annotation definition) {
+		final Map<String, Expression> attrs = attributes(definition);
+		final List<J.Assignment> args = new ArrayList<>();
+		Optional.ofNullable(annotation(attrs.get("info"))).ifPresent(x -> args.add(assignment("info", info(x))));
+		final List<J.Annotation> tags = annotations(attrs.get("tags")).stream()
+				.filter(x -> !isEmpty(attributes(x).get("name")))
+				.map(this::tag)
+				.toList();
+		if (!tags.isEmpty()) {
+			args.add(assignment("tags", array(tags)));
+		}
+		final List<J.Annotation> servers = servers(string(attrs.get("host")), string(attrs.get("basePath")), enumNames(attrs.get("schemes")));
+		if (!servers.isEmpty()) {
+			args.add(assignment("servers", array(servers)));
+		}
+		Optional.ofNullable(annotation(attrs.get("externalDocs"))).ifPresent(x -> args.add(assignment("externalDocs", externalDocs(x))));
+		if (attrs.containsKey("securityDefinition")) {
+			LOG.warn("securityDefinition of {} is not migrated, declare @SecurityScheme annotations instead.", definition);
+		}
+		return create(OPENAPI_DEFINITION, args);
+	}
+
+	private J.Annotation info(final J.Annotation info) {
+		final Map<String, Expression> attrs = attributes(info);
+		final List<J.Assignment> args = new ArrayList<>();
+		copy(attrs, "title", "title", args);
+		copy(attrs, "version", "version", args);
+		copy(attrs, "description", "description", args);
+		copy(attrs, "termsOfService", "termsOfService", args);
+		Optional.ofNullable(annotation(attrs.get("contact"))).ifPresent(x -> {
+			final Map<String, Expression> contact = attributes(x);
+			final List<J.Assignment> c = new ArrayList<>();
+			copy(contact, "name", "name", c);
+			copy(contact, "url", "url", c);
+			copy(contact, "email", "email", c);
+			args.add(assignment("contact", create(CONTACT, c)));
+		});
+		Optional.ofNullable(annotation(attrs.get("license"))).ifPresent(x -> {
+			final Map<String, Expression> license = attributes(x);
+			final List<J.Assignment> l = new ArrayList<>();
+			copy(license, "name", "name", l);
+			copy(license, "url", "url", l);
+			args.add(assignment("license", create(LICENSE, l)));
+		});
+		return create(INFO, args);
+	}
+
+	private J.Annotation tag(final J.Annotation tag) {
+		final Map<String, Expression> attrs = attributes(tag);
+		final List<J.Assignment> args = new ArrayList<>();
+		copy(attrs, "name", "name", args);
+		copy(attrs, "description", "description", args);
+		Optional.ofNullable(annotation(attrs.get("externalDocs")))
+				.filter(x -> !isEmpty(attributes(x).get("url")))
+				.ifPresent(x -> args.add(assignment("externalDocs", externalDocs(x))));
+		return create(TAG, args);
+	}
+
+	private J.Annotation externalDocs(final J.Annotation externalDocs) {
+		final Map<String, Expression> attrs = attributes(externalDocs);
+		final List<J.Assignment> args = new ArrayList<>();
+		copy(attrs, "value", "description", args);
+		copy(attrs, "url", "url", args);
+		return create(EXTERNAL_DOCUMENTATION, args);
+	}
+
+	private List<J.Annotation> servers(@Nullable final String host, @Nullable final String basePath, final List<String> schemes) {
+		final String path = basePath == null ? "" : basePath;
+		final List<String> urls = new ArrayList<>();
+		if (host == null || host.isEmpty()) {
+			if (!path.isEmpty()) {
+				urls.add(path);
+			}
+		} else if (schemes.isEmpty()) {
+			urls.add("//" + host + path);
+		} else {
+			schemes.forEach(x -> urls.add(x.toLowerCase(Locale.ROOT) + "://" + host + path));
+		}
+		return urls.stream()
+				.map(x -> create(SERVER, List.of(assignment("url", literal(x)))))
+				.toList();
+	}
+
+	private void copy(final Map<String, Expression> attrs, final String from, final String to, final List<J.Assignment> args) {
+		final Expression value = attrs.get(from);
+		if (!isEmpty(value)) {
+			args.add(assignment(to, value));
+		}
+	}
+
+	private void copyTrue(final Map<String, Expression> attrs, final String from, final String to, final List<J.Assignment> args) {
+		if (Boolean.TRUE.equals(bool(attrs.get(from)))) {
+			args.add(assignment(to, attrs.get(from)));
+		}
+	}
+
+	J.Annotation create(final String fqn, final List<J.Assignment> args) {
+		imports.accept(fqn);
+		final ShallowClass type = ShallowClass.build(fqn);
+		final J.Identifier name = new J.Identifier(randomId(), Space.EMPTY, Markers.EMPTY, type.getClassName(), type, null);
+		if (args.isEmpty()) {
+			return new J.Annotation(randomId(), Space.EMPTY, Markers.EMPTY, name, null);
+		}
+		return new J.Annotation(randomId(), Space.EMPTY, Markers.EMPTY, name, JContainer.build(Space.EMPTY, padded(args), Markers.EMPTY));
+	}
+
+	J.FieldAccess classLiteral(final String fqn) {
+		imports.accept(fqn);
+		final ShallowClass type = ShallowClass.build(fqn);
+		final J.Identifier target = new J.Identifier(randomId(), Space.EMPTY, Markers.EMPTY, type.getClassName(), type, null);
+		final J.Identifier clazz = new J.Identifier(randomId(), Space.EMPTY, Markers.EMPTY, "class", null, null);
+		return new J.FieldAccess(randomId(), Space.EMPTY, Markers.EMPTY, target, JLeftPadded.build(clazz), ShallowClass.build("java.lang.Class"));
+	}
+
+	/**
+	 * {@code path} qualified by the simple name of {@code importFqn}, such as
+	 * {@code Schema.AccessMode.READ_ONLY}.
+	 */
+	Expression qualified(final String importFqn, final String path) {
+		imports.accept(importFqn);
+		final String[] names = path.split("\\.");
+		Expression ret = new J.Identifier(randomId(), Space.EMPTY, Markers.EMPTY, names[0], ShallowClass.build(importFqn), null);
+		for (int i = 1; i < names.length; i++) {
+			final J.Identifier name = new J.Identifier(randomId(), Space.EMPTY, Markers.EMPTY, names[i], null, null);
+			ret = new J.FieldAccess(randomId(), Space.EMPTY, Markers.EMPTY, ret, JLeftPadded.build(name), null);
+		}
+		return ret;
+	}
+
+	static J.Assignment assignment(final String name, final Expression value) {
+		final J.Identifier variable = new J.Identifier(randomId(), Space.EMPTY, Markers.EMPTY, name, null, null);
+		return new J.Assignment(randomId(), Space.EMPTY, Markers.EMPTY, variable,
+				new JLeftPadded<>(Space.SINGLE_SPACE, value.withPrefix(Space.SINGLE_SPACE), Markers.EMPTY), value.getType());
+	}
+
+	static J.Literal literal(final String value) {
+		final String source = "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+		return new J.Literal(randomId(), Space.EMPTY, Markers.EMPTY, value, source, null, JavaType.Primitive.String);
+	}
+
+	static J.Literal literal(final boolean value) {
+		return new J.Literal(randomId(), Space.EMPTY, Markers.EMPTY, value, String.valueOf(value), null, JavaType.Primitive.Boolean);
+	}
+
+	/**
+	 * Annotation array value; a single element is written without braces.
+	 */
+	static Expression array(final List<? extends Expression> elements) {
+		if (elements.size() == 1) {
+			return elements.get(0);
+		}
+		return new J.NewArray(randomId(), Space.EMPTY, Markers.EMPTY, null, List.of(),
+				JContainer.build(Space.EMPTY, padded(elements), Markers.EMPTY), null);
+	}
+
+	/**
+	 * Elements of an annotation array value, or the value itself.
+	 */
+	static List<Expression> elements(@Nullable final Expression expression) {
+		if (expression == null) {
+			return List.of();
+		}
+		if (expression instanceof final J.NewArray array) {
+			return array.getInitializer() == null ? List.of()
+					: array.getInitializer().stream().filter(x -> !(x instanceof J.Empty)).toList();
+		}
+		return List.of(expression);
+	}
+
+	private static List<Expression> nonEmpty(final List<Expression> expressions) {
+		return expressions.stream().filter(x -> !isEmpty(x)).toList();
+	}
+
+	private static <T extends Expression> List<JRightPadded<Expression>> padded(final List<T> elements) {
+		final List<JRightPadded<Expression>> ret = new ArrayList<>();
+		for (int i = 0; i < elements.size(); i++) {
+			final Expression element = elements.get(i);
+			ret.add(JRightPadded.build(i == 0 ? element.withPrefix(Space.EMPTY) : element.withPrefix(Space.SINGLE_SPACE)));
+		}
+		return ret;
+	}
+
+	/**
+	 * Missing or empty string literal; Swagger 2 uses {@code ""} as the default
+	 * of most attributes.
+	 */
+	private static boolean isEmpty(@Nullable final Expression expression) {
+		return expression == null || (expression instanceof final J.Literal lit && "".equals(lit.getValue()));
+	}
+
+	private static boolean isVoid(@Nullable final Expression expression) {
+		final String name = className(expression);
+		return name == null || "java.lang.Void".equals(name) || "Void".equals(name) || "void".equals(name);
+	}
+}
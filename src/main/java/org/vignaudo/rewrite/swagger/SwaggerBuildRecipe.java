@@ -0,0 +1,458 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.ScanningRecipe;
+import org.openrewrite.SourceFile;
+import org.openrewrite.Tree;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.ListUtils;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.properties.tree.Properties;
+import org.openrewrite.xml.RemoveContentVisitor;
+import org.openrewrite.xml.XPathMatcher;
+import org.openrewrite.xml.XmlIsoVisitor;
+import org.openrewrite.xml.tree.Xml;
+import org.openrewrite.yaml.DeleteProperty;
+import org.openrewrite.yaml.MergeYaml;
+import org.openrewrite.yaml.YamlIsoVisitor;
+import org.openrewrite.yaml.tree.Yaml;
+
+/**
+ * Move the build of the modules whose sources use Swagger 2 annotations to
+ * Swagger 3: {@code pom.xml} dependencies and the Spring
+ * {@code application}/{@code bootstrap} properties of springfox.
+ *
+ * <p>
+ * Modules are found with the same layout rule as {@link OpenApiSpecRecipe};
+ * build files of modules without Swagger 2 sources are left untouched.
+ *
+ * <p>
+ * springdoc 2 needs Spring Boot 3 and Jakarta EE. A module whose POM names a
+ * Spring Boot 2 version, or which does not name one and imports
+ * {@code javax} Java EE packages but no {@code jakarta} ones, gets the 1.x
+ * {@code springdoc-openapi-ui} and the {@code javax} Swagger 3 annotations
+ * instead.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+public class SwaggerBuildRecipe extends ScanningRecipe<SwaggerBuildRecipe.Accumulator> {
+	private static final String SW2_TYPES = "io.swagger.annotations.*";
+	private static final Map<String, Role> DEPENDENCIES = Map.of(
+			"io.swagger:swagger-annotations", Role.ANNOTATIONS,
+			"io.swagger.core.v3:swagger-annotations", Role.ANNOTATIONS,
+			"io.springfox:springfox-boot-starter", Role.SPRINGDOC,
+			"io.springfox:springfox-swagger2", Role.SPRINGDOC,
+			"io.springfox:springfox-swagger-ui", Role.SPRINGDOC,
+			"io.springfox:springfox-oas", Role.SPRINGDOC);
+	/** Java EE packages moved to {@code jakarta} by Jakarta EE 9. */
+	private static final List<String> JAVAX_EE = List.of("javax.annotation.", "javax.persistence.", "javax.servlet.", "javax.validation.", "javax.ws.rs.");
+	private static final Map<String, String> PROPERTIES = Map.of(
+			"springfox.documentation.enabled", "springdoc.api-docs.enabled",
+			"springfox.documentation.swagger-ui.enabled", "springdoc.swagger-ui.enabled",
+			"springfox.documentation.swagger.v2.path", "springdoc.api-docs.path",
+			"springfox.documentation.open-api.v3.path", "springdoc.api-docs.path");
+	private static final XPathMatcher DEPENDENCY = new XPathMatcher("//dependencies/dependency");
+	private static final Pattern MAJOR = Pattern.compile("^(\\d+)");
+
+	@Override
+	public String getDisplayName() {
+		return "Migrate Swagger 2 build files";
+	}
+
+	@Override
+	public String getDescription() {
+		return "Replace Swagger 2 and springfox dependencies and properties by Swagger 3 and springdoc in modules with migrated sources.";
+	}
+
+	public static class Accumulator {
+		private final Set<Path> modules = ConcurrentHashMap.newKeySet();
+		/** Whether the Spring Boot version named by the POM of a module is 3 or later. */
+		private final Map<Path, Boolean> boot3 = new ConcurrentHashMap<>();
+		private final Set<Path> jakartaImports = ConcurrentHashMap.newKeySet();
+		private final Set<Path> javaxImports = ConcurrentHashMap.newKeySet();
+
+		public Set<Path> getModules() {
+			return modules;
+		}
+
+		private Flavor flavor(final Path module) {
+			final Boolean jakarta = boot3.get(module);
+			if (jakarta != null) {
+				return jakarta ? Flavor.JAKARTA : Flavor.JAVAX;
+			}
+			return javaxImports.contains(module) && !jakartaImports.contains(module) ? Flavor.JAVAX : Flavor.JAKARTA;
+		}
+	}
+
+	@Override
+	public Accumulator getInitialValue(final ExecutionContext ctx) {
+		return new Accumulator();
+	}
+
+	@Override
+	public TreeVisitor<?, ExecutionContext> getScanner(final Accumulator acc) {
+		return new TreeVisitor<Tree, ExecutionContext>() {
+			@Override
+			public @Nullable Tree visit(@Nullable final Tree tree, final ExecutionContext ctx) {
+				if (tree instanceof final J.CompilationUnit cu) {
+					final Path module = OpenApiSpecRecipe.serviceRoot(cu.getSourcePath());
+					if (TypeUsageIndex.get(cu, ctx).uses(SW2_TYPES)) {
+						acc.modules.add(module);
+					}
+					for (final J.Import imp : cu.getImports()) {
+						final String name = imp.getTypeName();
+						if (name.startsWith("jakarta.")) {
+							acc.jakartaImports.add(module);
+						} else if (JAVAX_EE.stream().anyMatch(name::startsWith)) {
+							acc.javaxImports.add(module);
+						}
+					}
+				} else if (tree instanceof final Xml.Document pom && isPom(pom.getSourcePath())) {
+					final String version = springBootVersion(pom);
+					if (version != null) {
+						acc.boot3.put(moduleOf(pom.getSourcePath()), major(version) >= 3);
+					}
+				}
+				return tree;
+			}
+		};
+	}
+
+	@Override
+	public TreeVisitor<?, ExecutionContext> getVisitor(final Accumulator acc) {
+		return new TreeVisitor<Tree, ExecutionContext>() {
+			@Override
+			public @Nullable Tree visit(@Nullable final Tree tree, final ExecutionContext ctx) {
+				if (!(tree instanceof final SourceFile sf) || !acc.modules.contains(moduleOf(sf.getSourcePath()))) {
+					return tree;
+				}
+				if (tree instanceof Xml.Document && isPom(sf.getSourcePath())) {
+					return new DependencyVisitor(acc.flavor(moduleOf(sf.getSourcePath()))).visit(tree, ctx);
+				}
+				if (tree instanceof final Yaml.Documents documents && isSpringConfig(sf.getSourcePath())) {
+					return moveKeys(documents, ctx);
+				}
+				if (tree instanceof Properties.File && isSpringConfig(sf.getSourcePath())) {
+					return changeKeys(tree, ctx, (o, n) -> new org.openrewrite.properties.ChangePropertyKey(o, n, true, null).getVisitor());
+				}
+				return tree;
+			}
+		};
+	}
+
+	/**
+	 * Build files live at the module root, Spring properties under
+	 * {@code src/main/resources}; both are mapped back to the module root.
+	 */
+	static Path moduleOf(final Path sourcePath) {
+		if (isPom(sourcePath)) {
+			final Path parent = sourcePath.getParent();
+			return parent == null ? Path.of("") : parent;
+		}
+		return OpenApiSpecRecipe.serviceRoot(sourcePath);
+	}
+
+	/**
+	 * The Spring Boot version of the parent or of the imported
+	 * {@code spring-boot-dependencies}, resolved against the properties of the
+	 * POM; {@code null} when it names none.
+	 */
+	@Nullable
+	private static String springBootVersion(final Xml.Document pom) {
+		final Xml.Tag root = pom.getRoot();
+		final Map<String, String> properties = new HashMap<>();
+		root.getChild("properties").ifPresent(x -> x.getChildren().forEach(y -> y.getValue().ifPresent(v -> properties.put(y.getName(), v))));
+		final List<Xml.Tag> candidates = new ArrayList<>();
+		root.getChild("parent").ifPresent(candidates::add);
+		root.getChild("dependencyManagement")
+				.flatMap(x -> x.getChild("dependencies"))
+				.ifPresent(x -> candidates.addAll(x.getChildren("dependency")));
+		String version = candidates.stream()
+				.filter(x -> "org.springframework.boot".equals(x.getChildValue("groupId").orElse(null)))
+				.filter(x -> Set.of("spring-boot-starter-parent", "spring-boot-dependencies").contains(x.getChildValue("artifactId").orElse("")))
+				.map(x -> x.getChildValue("version").orElse(null))
+				.filter(x -> x != null)
+				.findFirst()
+				.orElse(properties.get("spring-boot.version"));
+		final Matcher property = DependencyVisitor.PROPERTY.matcher(version == null ? "" : version);
+		if (property.matches()) {
+			version = properties.get(property.group(1));
+		}
+		return version;
+	}
+
+	private static int major(final String version) {
+		final Matcher matcher = MAJOR.matcher(version.trim());
+		return matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+	}
+
+	private static boolean isPom(final Path sourcePath) {
+		return "pom.xml".equals(sourcePath.getFileName().toString());
+	}
+
+	private static boolean isSpringConfig(final Path sourcePath) {
+		final String name = sourcePath.getFileName().toString();
+		return (name.startsWith("application") || name.startsWith("bootstrap"))
+				&& (name.endsWith(".yml") || name.endsWith(".yaml") || name.endsWith(".properties"));
+	}
+
+	private static Tree changeKeys(final Tree tree, final ExecutionContext ctx, final KeyChange change) {
+		Tree ret = tree;
+		for (final Map.Entry<String, String> entry : PROPERTIES.entrySet()) {
+			ret = change.visitor(entry.getKey(), entry.getValue()).visit(ret, ctx);
+		}
+		return ret;
+	}
+
+	/**
+	 * YAML keys are deleted and merged back as nested mappings under
+	 * {@code springdoc}; {@code ChangePropertyKey} would write them as flat
+	 * dotted keys into the closest mapping.
+	 */
+	private static Tree moveKeys(final Yaml.Documents documents, final ExecutionContext ctx) {
+		final Map<String, Yaml.Scalar> values = new HashMap<>();
+		new YamlIsoVisitor<Map<String, Yaml.Scalar>>() {
+			@Override
+			public Yaml.Mapping.Entry visitMappingEntry(final Yaml.Mapping.Entry entry, final Map<String, Yaml.Scalar> p) {
+				if (entry.getValue() instanceof final Yaml.Scalar scalar) {
+					final List<String> keys = new ArrayList<>();
+					getCursor().getPathAsStream()
+							.filter(Yaml.Mapping.Entry.class::isInstance)
+							.forEach(x -> keys.add(0, ((Yaml.Mapping.Entry) x).getKey().getValue()));
+					p.put(String.join(".", keys), scalar);
+				}
+				return super.visitMappingEntry(entry, p);
+			}
+		}.visit(documents, values);
+		Tree ret = documents;
+		for (final Map.Entry<String, String> entry : PROPERTIES.entrySet()) {
+			final Yaml.Scalar value = values.get(entry.getKey());
+			if (value == null) {
+				continue;
+			}
+			ret = new DeleteProperty(entry.getKey(), null, true).getVisitor().visit(ret, ctx);
+			ret = new MergeYaml("$", nested(entry.getValue(), value), true, null).getVisitor().visit(ret, ctx);
+		}
+		return ret == documents ? ret : keepLeadingPrefix(documents, (Yaml.Documents) ret);
+	}
+
+	/**
+	 * The first key of a document keeps the prefix of the key it replaces
+	 * when that one was deleted, instead of starting the file with the line
+	 * break that separated it from its predecessor.
+	 */
+	private static Yaml.Documents keepLeadingPrefix(final Yaml.Documents before, final Yaml.Documents after) {
+		final List<Yaml.Document> documents = new ArrayList<>(after.getDocuments());
+		for (int i = 0; i < Math.min(documents.size(), before.getDocuments().size()); i++) {
+			final Yaml.Mapping.Entry first = firstEntry(before.getDocuments().get(i));
+			if (first != null && documents.get(i).getBlock() instanceof final Yaml.Mapping mapping) {
+				documents.set(i, documents.get(i).withBlock(mapping.withEntries(ListUtils.mapFirst(mapping.getEntries(), x -> x.withPrefix(first.getPrefix())))));
+			}
+		}
+		return after.withDocuments(documents);
+	}
+
+	@Nullable
+	private static Yaml.Mapping.Entry firstEntry(final Yaml.Document document) {
+		if (document.getBlock() instanceof final Yaml.Mapping mapping && !mapping.getEntries().isEmpty()) {
+			return mapping.getEntries().get(0);
+		}
+		return null;
+	}
+
+	private static String nested(final String key, final Yaml.Scalar value) {
+		final String[] parts = key.split("\\.");
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < parts.length; i++) {
+			sb.append("  ".repeat(i)).append(parts[i]).append(':').append(i < parts.length - 1 ? "\n" : " ");
+		}
+		return switch (value.getStyle()) {
+		case DOUBLE_QUOTED -> sb.append('"').append(value.getValue()).append('"').toString();
+		case SINGLE_QUOTED -> sb.append('\'').append(value.getValue()).append('\'').toString();
+		default -> sb.append(value.getValue()).toString();
+		};
+	}
+
+	@FunctionalInterface
+	private interface KeyChange {
+		TreeVisitor<?, ExecutionContext> visitor(String oldKey, String newKey);
+	}
+
+	/**
+	 * Works on the XML of the POM, so it does not need the Maven resolution
+	 * marker; springfox artifacts collapse into a single springdoc artifact,
+	 * both taken from the {@link Flavor} of the module.
+	 *
+	 * <p>
+	 * A version property of {@code swagger-annotations} is only moved to the
+	 * Swagger 3 version when it is declared in this POM and nothing else uses
+	 * it; otherwise the migrated dependency gets a literal version, so neither
+	 * the artifacts sharing the property nor a property inherited from a parent
+	 * end up on a version that does not exist for them.
+	 */
+	private static class DependencyVisitor extends XmlIsoVisitor<ExecutionContext> {
+		private static final Pattern PROPERTY = Pattern.compile("\\$\\{([^}]+)}");
+
+		private final Flavor flavor;
+		private final Set<String> replaced = new HashSet<>();
+		private final Set<String> versionProperties = new HashSet<>();
+		private final Set<String> declared = new HashSet<>();
+		/** Uses of each property, and those that are the version of a migrated {@code swagger-annotations}. */
+		private final Map<String, int[]> uses = new HashMap<>();
+
+		DependencyVisitor(final Flavor flavor) {
+			this.flavor = flavor;
+		}
+
+		@Override
+		public Xml.Document visitDocument(final Xml.Document document, final ExecutionContext ctx) {
+			new XmlIsoVisitor<ExecutionContext>() {
+				@Override
+				public Xml.Tag visitTag(final Xml.Tag tag, final ExecutionContext p) {
+					final Xml.Tag parent = getCursor().getParentTreeCursor().getValue() instanceof final Xml.Tag pt ? pt : null;
+					if (parent != null && "properties".equals(parent.getName())) {
+						declared.add(tag.getName());
+					}
+					tag.getValue().ifPresent(value -> {
+						final Matcher matcher = PROPERTY.matcher(value);
+						while (matcher.find()) {
+							final int[] count = uses.computeIfAbsent(matcher.group(1), x -> new int[2]);
+							count[0]++;
+							if (parent != null && "version".equals(tag.getName()) && DEPENDENCIES.get(coordinates(parent)) == Role.ANNOTATIONS) {
+								count[1]++;
+							}
+						}
+					});
+					return super.visitTag(tag, p);
+				}
+			}.visitDocument(document, ctx);
+			final Xml.Document ret = super.visitDocument(document, ctx);
+			if (versionProperties.isEmpty()) {
+				return ret;
+			}
+			return new XmlIsoVisitor<ExecutionContext>() {
+				@Override
+				public Xml.Tag visitTag(final Xml.Tag tag, final ExecutionContext p) {
+					final Xml.Tag t = super.visitTag(tag, p);
+					final Xml.Tag parent = getCursor().getParentTreeCursor().getValue() instanceof final Xml.Tag pt ? pt : null;
+					if (parent != null && "properties".equals(parent.getName()) && versionProperties.contains(t.getName())) {
+						return t.withValue(flavor.annotations().version());
+					}
+					return t;
+				}
+			}.visitDocument(ret, ctx);
+		}
+
+		@Override
+		public Xml.Tag visitTag(final Xml.Tag tag, final ExecutionContext ctx) {
+			final Xml.Tag t = super.visitTag(tag, ctx);
+			if (!DEPENDENCY.matches(getCursor())) {
+				return t;
+			}
+			final Role role = DEPENDENCIES.get(coordinates(t));
+			if (role == null) {
+				return t;
+			}
+			final Artifact target = flavor.artifact(role);
+			final String scope = getCursor().getPathAsStream().anyMatch(x -> x instanceof final Xml.Tag dm && "dependencyManagement".equals(dm.getName())) ? "managed" : "direct";
+			if (!replaced.add(scope + ":" + target.coordinates())) {
+				doAfterVisit(new RemoveContentVisitor<>(t, false));
+				return t;
+			}
+			if (target.coordinates().equals(coordinates(t))) {
+				return t;
+			}
+			Xml.Tag ret = t.withChildValue("groupId", target.groupId())
+					.withChildValue("artifactId", target.artifactId());
+			final String version = t.getChildValue("version").orElse(null);
+			if (version == null) {
+				return ret;
+			}
+			final Matcher property = PROPERTY.matcher(version);
+			if (role == Role.ANNOTATIONS && property.matches() && ownProperty(property.group(1))) {
+				versionProperties.add(property.group(1));
+			} else {
+				ret = ret.withChildValue("version", target.version());
+			}
+			return ret;
+		}
+
+		/**
+		 * Whether {@code name} is declared here and only used by migrated
+		 * {@code swagger-annotations} dependencies.
+		 */
+		private boolean ownProperty(final String name) {
+			final int[] count = uses.get(name);
+			return declared.contains(name) && count != null && count[0] == count[1];
+		}
+
+		private static String coordinates(final Xml.Tag dependency) {
+			return dependency.getChildValue("groupId").orElse(null) + ":" + dependency.getChildValue("artifactId").orElse(null);
+		}
+	}
+
+	private enum Role {
+		ANNOTATIONS,
+		SPRINGDOC
+	}
+
+	/**
+	 * Swagger 3 artifacts for Spring Boot 3 and Jakarta EE, or for Spring Boot
+	 * 2 and Java EE.
+	 */
+	private enum Flavor {
+		JAKARTA(new Artifact("io.swagger.core.v3", "swagger-annotations-jakarta", "2.2.11"), new Artifact("org.springdoc", "springdoc-openapi-starter-webmvc-ui", "2.1.0")),
+		JAVAX(new Artifact("io.swagger.core.v3", "swagger-annotations", "2.2.11"), new Artifact("org.springdoc", "springdoc-openapi-ui", "1.7.0"));
+
+		private final Artifact annotations;
+		private final Artifact springdoc;
+
+		Flavor(final Artifact annotations, final Artifact springdoc) {
+			this.annotations = annotations;
+			this.springdoc = springdoc;
+		}
+
+		Artifact annotations() {
+			return annotations;
+		}
+
+		Artifact artifact(final Role role) {
+			return role == Role.ANNOTATIONS ? annotations : springdoc;
+		}
+	}
+
+	private record Artifact(String groupId, String artifactId, String version) {
+		String coordinates() {
+			return groupId + ":" + artifactId;
+		}
+	}
+}
@@ -18,18 +18,16 @@ package org.vignaudo.rewrite.swagger;
 
 import static org.openrewrite.Tree.randomId;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.openrewrite.ExecutionContext;
-import org.openrewrite.Preconditions;
-import org.openrewrite.Recipe;
+import org.openrewrite.Option;
+import org.openrewrite.ScanningRecipe;
 import org.openrewrite.TreeVisitor;
 import org.openrewrite.internal.lang.Nullable;
-import org.openrewrite.java.AnnotationMatcher;
-import org.openrewrite.java.JavaIsoVisitor;
-import org.openrewrite.java.search.FindImports;
-import org.openrewrite.java.search.UsesType;
 import org.openrewrite.java.tree.Expression;
 import org.openrewrite.java.tree.J;
 import org.openrewrite.java.tree.J.Annotation;
@@ -45,9 +43,32 @@ import org.openrewrite.marker.Markers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class SwaggerModelRecipe extends Recipe {
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class SwaggerModelRecipe extends ScanningRecipe<ApiModelIndex> {
 	private static final Logger LOG = LoggerFactory.getLogger(SwaggerModelRecipe.class);
 
+	@Option(displayName = "Deterministic ids",
+			description = "Derive the ids of generated nodes from the source tree, so that unchanged input yields identical LSTs.",
+			required = false)
+	@Nullable
+	private final Boolean deterministicIds;
+
+	public SwaggerModelRecipe() {
+		this(null);
+	}
+
+	@JsonCreator
+	public SwaggerModelRecipe(@Nullable @JsonProperty("deterministicIds") final Boolean deterministicIds) {
+		this.deterministicIds = deterministicIds;
+	}
+
+	@Nullable
+	public Boolean getDeterministicIds() {
+		return deterministicIds;
+	}
+
 	@Override
 	public String getDisplayName() {
 		return "Swagger 2 to swagger model v3";
@@ -59,25 +80,46 @@ public class SwaggerModelRecipe extends Recipe {
 	}
 
 	@Override
-	public TreeVisitor<?, ExecutionContext> getVisitor() {
-		return Preconditions.check(Preconditions.or(
-				new UsesType<>("io.swagger.annotations.ApiModel", false),
-				new FindImports("io.swagger.annotations.ApiModel", false).getVisitor()), new SwaggerModelVisitor());
+	public ApiModelIndex getInitialValue(final ExecutionContext ctx) {
+		return ApiModelIndex.get(ctx);
+	}
+
+	@Override
+	public TreeVisitor<?, ExecutionContext> getScanner(final ApiModelIndex acc) {
+		return acc.scanner();
 	}
 
-	private static class SwaggerModelVisitor extends JavaIsoVisitor<ExecutionContext> {
-		private static final AnnotationMatcher ANN_API_MODEL = new AnnotationMatcher("@io.swagger.annotations.ApiModel");
-		private static final AnnotationMatcher ANN_API_MODEL_PROPERTY = new AnnotationMatcher("@io.swagger.annotations.ApiModelProperty");
+	@Override
+	public TreeVisitor<?, ExecutionContext> getVisitor(final ApiModelIndex acc) {
+		return DeterministicIds.wrap(Boolean.TRUE.equals(deterministicIds),
+				MigrationMetrics.check("SwaggerModelRecipe", TypeUsageIndex.precondition("io.swagger.annotations.ApiModel"), new SwaggerModelVisitor(acc)));
+	}
+
+	private static class SwaggerModelVisitor extends DeclarationVisitor<ExecutionContext> {
+		private static final AnnotationType ANN_API_MODEL = new AnnotationType("@io.swagger.annotations.ApiModel");
+		private static final AnnotationType ANN_API_MODEL_PROPERTY = new AnnotationType("@io.swagger.annotations.ApiModelProperty");
 		private static final ShallowClass SW2_API_MODEL = JavaType.ShallowClass.build("io.swagger.annotations.ApiModel");
 		private static final ShallowClass SW2_API_MODEL_PROPERTY = JavaType.ShallowClass.build("io.swagger.annotations.ApiModelProperty");
+		private static final ShallowClass SCHEMA = JavaType.ShallowClass.build("io.swagger.v3.oas.annotations.media.Schema");
+		private static final ShallowClass ARRAY_SCHEMA = JavaType.ShallowClass.build("io.swagger.v3.oas.annotations.media.ArraySchema");
+
+		private final ApiModelIndex index;
+		private final Swagger3Converter converter;
+
+		SwaggerModelVisitor(final ApiModelIndex index) {
+			this.index = index;
+			this.converter = new Swagger3Converter(this::maybeAddImport, index);
+		}
 
 		@Override
 		public Annotation visitAnnotation(final Annotation annotation, final ExecutionContext p) {
 			final Annotation a = super.visitAnnotation(annotation, p);
 			if (ANN_API_MODEL.matches(a)) {
+				MigrationMetrics.get(p).converted("ApiModel");
 				return convertApiResponse(a);
 			}
 			if (ANN_API_MODEL_PROPERTY.matches(a)) {
+				MigrationMetrics.get(p).converted("ApiModelProperty");
 				return convertModelProperty(a);
 			}
 			maybeRemoveImport(SW2_API_MODEL_PROPERTY);
@@ -86,25 +128,78 @@ public class SwaggerModelRecipe extends Recipe {
 		}
 
 		private Annotation convertModelProperty(final Annotation ann) {
-			final List<Expression> args = ann.getArguments();
+			final Map<String, Expression> attrs = AnnotationValues.attributes(ann);
+			final List<Assignment> converted = new ArrayList<>();
+			for (final Expression arg : Optional.ofNullable(ann.getArguments()).orElseGet(List::of)) {
+				if (!(arg instanceof final Assignment x)) {
+					continue;
+				}
+				final String name = ((J.Identifier) x.getVariable()).getSimpleName();
+				switch (name) {
+				case "allowableValues" -> converted.addAll(converter.allowableValues(x.getAssignment()));
+				case "dataType" -> converted.addAll(converter.type(x.getAssignment(), null));
+				case "accessMode" -> converter.accessMode(x.getAssignment(), null).ifPresent(converted::add);
+				case "readOnly" -> {
+					if (!attrs.containsKey("accessMode")) {
+						converter.accessMode(null, x.getAssignment()).ifPresent(converted::add);
+					}
+				}
+				case "notes", "position", "allowEmptyValue", "extensions" -> {
+					// No Swagger 3 equivalent.
+				}
+				default -> Optional.ofNullable(convertAssigmentModel(x)).ifPresent(converted::add);
+				}
+			}
+			maybeRemoveImport(SW2_API_MODEL_PROPERTY);
+			final Optional<Assignment> implementation = converted.stream().filter(x -> "implementation".equals(name(x))).findFirst();
+			if (implementation.isEmpty() || !property().map(ApiModelIndex.Property::container).orElse(false)) {
+				return create(SCHEMA, converted);
+			}
+			// The implementation of a collection or array describes its items.
+			final List<Assignment> array = new ArrayList<>();
+			final List<Assignment> outer = converted.stream().filter(x -> x != implementation.get()).toList();
+			if (!outer.isEmpty()) {
+				array.add(createAssignment("arraySchema", create(SCHEMA, outer)));
+			}
+			array.add(createAssignment("schema", create(SCHEMA, List.of(implementation.get()))));
+			return create(ARRAY_SCHEMA, array);
+		}
+
+		private Annotation create(final ShallowClass tagType, final List<Assignment> args) {
 			final List<JRightPadded<Expression>> paddedAargs = args.stream()
-					.map(x -> convertAssigmentModel((Assignment) x))
+					.map(x -> x.withPrefix(Space.EMPTY))
 					.map(SwaggerModelVisitor::packJRight)
 					.toList();
 			@Nullable
 			final JContainer<Expression> jContainer = JContainer.build(Space.EMPTY, paddedAargs, Markers.EMPTY);
-			final ShallowClass tagType = JavaType.ShallowClass.build("io.swagger.v3.oas.annotations.media.Schema");
-			maybeRemoveImport(SW2_API_MODEL_PROPERTY);
 			maybeAddImport(tagType);
 			final NameTree annType = new J.Identifier(randomId(), Space.EMPTY, Markers.EMPTY, tagType.getClassName(), tagType, null);
 			return new Annotation(randomId(), Space.EMPTY, Markers.EMPTY, annType, jContainer);
 		}
 
+		/**
+		 * The indexed property of the field being converted.
+		 */
+		private Optional<ApiModelIndex.Property> property() {
+			final J.VariableDeclarations field = getCursor().firstEnclosing(J.VariableDeclarations.class);
+			final J.ClassDeclaration model = getCursor().firstEnclosing(J.ClassDeclaration.class);
+			if (field == null || model == null || model.getType() == null || field.getVariables().isEmpty()) {
+				return Optional.empty();
+			}
+			return index.find(model.getType().getFullyQualifiedName())
+					.flatMap(x -> x.property(field.getVariables().get(0).getSimpleName()));
+		}
+
+		private static String name(final Assignment assignment) {
+			return ((J.Identifier) assignment.getVariable()).getSimpleName();
+		}
+
 		private J.Annotation convertApiResponse(final J.Annotation ann) {
 			@Nullable
 			final List<Expression> args = ann.getArguments();
 			final List<JRightPadded<Expression>> paddedAargs = Optional.ofNullable(args).map(x -> x.stream()
 					.map(y -> convertAssigment((Assignment) y))
+					.filter(y -> y != null)
 					.map(SwaggerModelVisitor::packJRight)
 					.toList()).orElseGet(List::of);
 			@Nullable
@@ -120,15 +215,31 @@ public class SwaggerModelRecipe extends Recipe {
 			return new JRightPadded<>(element, Space.SINGLE_SPACE, Markers.EMPTY);
 		}
 
-		private static J.Assignment convertAssigment(final J.Assignment x) {
+		private J.Assignment convertAssigment(final J.Assignment x) {
 			final String name = ((J.Identifier) x.getVariable()).getSimpleName();
 			if ("description".equals(name)) {
 				return sameConvertion("description", x);
 			}
+			if ("value".equals(name)) {
+				return sameConvertion("name", x);
+			}
+			if ("discriminator".equals(name)) {
+				return sameConvertion("discriminatorProperty", x);
+			}
+			if ("subTypes".equals(name)) {
+				return sameConvertion("subTypes", x);
+			}
+			if ("reference".equals(name)) {
+				return convertReference(x);
+			}
+			if ("parent".equals(name)) {
+				// Implied by the class hierarchy.
+				return null;
+			}
 			throw new IllegalArgumentException("Unknown assignment " + name);
 		}
 
-		private static J.Assignment convertAssigmentModel(final J.Assignment x) {
+		private J.Assignment convertAssigmentModel(final J.Assignment x) {
 			final String name = ((J.Identifier) x.getVariable()).getSimpleName();
 			if ("name".equals(name)) {
 				return sameConvertion("name", x);
@@ -137,22 +248,34 @@ public class SwaggerModelRecipe extends Recipe {
 				return sameConvertion("description", x);
 			}
 			if ("required".equals(name)) {
-				// TODO this one is deprecated, should use RequiredMode requiredMode
 				return sameConvertion("required", x);
 			}
 			if ("example".equals(name)) {
 				return sameConvertion("example", x);
 			}
-			if ("allowableValues".equals(name)) {
-				// TODO : Moved to @Schema
-				return null;
-			}
 			if ("hidden".equals(name)) {
 				return sameConvertion("hidden", x);
 			}
+			if ("reference".equals(name)) {
+				return convertReference(x);
+			}
 			throw new IllegalArgumentException("Unknown assignment " + name);
 		}
 
+		/**
+		 * A reference to a model known by the index becomes its class, anything else
+		 * is kept as a raw {@code ref}.
+		 */
+		private J.Assignment convertReference(final J.Assignment x) {
+			final J.CompilationUnit unit = getCursor().firstEnclosing(J.CompilationUnit.class);
+			final Optional<ApiModelIndex.Model> model = Optional.ofNullable(AnnotationValues.string(x.getAssignment())).flatMap(y -> index.find(y, unit));
+			if (model.isEmpty()) {
+				return sameConvertion("ref", x);
+			}
+			maybeAddImport(model.get().fqn());
+			return createAssignment("implementation", Sw3ResponseRecipe.ApiResponseVisitor.classLiteral(model.get()));
+		}
+
 		private static Assignment sameConvertion(final String string, final Assignment x) {
 			final Expression lit = x.getAssignment();
 			return createAssignment(string, lit);
@@ -20,22 +20,17 @@ import static org.openrewrite.Tree.randomId;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import org.openrewrite.ExecutionContext;
-import org.openrewrite.Preconditions;
+import org.openrewrite.Option;
 import org.openrewrite.Recipe;
 import org.openrewrite.TreeVisitor;
 import org.openrewrite.internal.lang.Nullable;
-import org.openrewrite.java.AnnotationMatcher;
-import org.openrewrite.java.JavaIsoVisitor;
-import org.openrewrite.java.JavaParser;
-import org.openrewrite.java.JavaTemplate;
-import org.openrewrite.java.RemoveAnnotationVisitor;
-import org.openrewrite.java.search.FindImports;
-import org.openrewrite.java.search.UsesType;
 import org.openrewrite.java.tree.Expression;
 import org.openrewrite.java.tree.J;
 import org.openrewrite.java.tree.J.Annotation;
@@ -52,24 +47,50 @@ import org.openrewrite.marker.Markers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.enums.ParameterIn;
 
 public class SwaggerUpgrade3Recipe extends Recipe {
 	private static final Logger LOG = LoggerFactory.getLogger(SwaggerUpgrade3Recipe.class);
-	private static final AnnotationMatcher ANN_API_OPERATION = new AnnotationMatcher("@io.swagger.annotations.ApiOperation");
-	private static final AnnotationMatcher ANN_API_PARAM = new AnnotationMatcher("@io.swagger.annotations.ApiParam");
+	private static final AnnotationType ANN_API_OPERATION = new AnnotationType("@io.swagger.annotations.ApiOperation");
+	private static final AnnotationType ANN_API_PARAM = new AnnotationType("@io.swagger.annotations.ApiParam");
+	private static final AnnotationType ANN_API_IMPLICIT_PARAMS = new AnnotationType("@io.swagger.annotations.ApiImplicitParams");
+	private static final AnnotationType ANN_API_IMPLICIT_PARAM = new AnnotationType("@io.swagger.annotations.ApiImplicitParam");
+	private static final Set<String> SCHEMA_ATTRIBUTES = Set.of("type", "defaultValue", "allowableValues");
 
-	private static final AnnotationMatcher ANN_SPRING_REQUEST_PARAM = new AnnotationMatcher("org.springframework.web.bind.annotation.RequestParam");
-	private static final AnnotationMatcher ANN_SPRING_HEADER_PARAM = new AnnotationMatcher("org.springframework.web.bind.annotation.RequestHeader");
-	private static final AnnotationMatcher ANN_SPRING_PATH_PARAM = new AnnotationMatcher("org.springframework.web.bind.annotation.PathVariable");
-	private static final AnnotationMatcher ANN_SPRING_COOKIE_PARAM = new AnnotationMatcher("org.springframework.web.bind.annotation.CookieValue");
+	private static final AnnotationType ANN_SPRING_REQUEST_PARAM = new AnnotationType("org.springframework.web.bind.annotation.RequestParam");
+	private static final AnnotationType ANN_SPRING_HEADER_PARAM = new AnnotationType("org.springframework.web.bind.annotation.RequestHeader");
+	private static final AnnotationType ANN_SPRING_PATH_PARAM = new AnnotationType("org.springframework.web.bind.annotation.PathVariable");
+	private static final AnnotationType ANN_SPRING_COOKIE_PARAM = new AnnotationType("org.springframework.web.bind.annotation.CookieValue");
 	// JAX-rs
-	private static final AnnotationMatcher ANN_JAXRS_PATH_PARAM = new AnnotationMatcher("javax.ws.rs.PathParam");
-	private static final AnnotationMatcher ANN_JAXRS_QUERY_PARAM = new AnnotationMatcher("javax.ws.rs.QueryParam");
+	private static final AnnotationType ANN_JAXRS_PATH_PARAM = new AnnotationType("javax.ws.rs.PathParam");
+	private static final AnnotationType ANN_JAXRS_QUERY_PARAM = new AnnotationType("javax.ws.rs.QueryParam");
 	// Jakarta RS
-	private static final AnnotationMatcher ANN_JAXRS_JAKARTA__PATH_PARAM = new AnnotationMatcher("jakarta.ws.rs.PathParam");
-	private static final AnnotationMatcher ANN_JAXRS_JAKARTA_QUERY_PARAM = new AnnotationMatcher("jakarta.ws.rs.QueryParam");
+	private static final AnnotationType ANN_JAXRS_JAKARTA__PATH_PARAM = new AnnotationType("jakarta.ws.rs.PathParam");
+	private static final AnnotationType ANN_JAXRS_JAKARTA_QUERY_PARAM = new AnnotationType("jakarta.ws.rs.QueryParam");
+
+	@Option(displayName = "Deterministic ids",
+			description = "Derive the ids of generated nodes from the source tree, so that unchanged input yields identical LSTs.",
+			required = false)
+	@Nullable
+	private final Boolean deterministicIds;
+
+	public SwaggerUpgrade3Recipe() {
+		this(null);
+	}
+
+	@JsonCreator
+	public SwaggerUpgrade3Recipe(@Nullable @JsonProperty("deterministicIds") final Boolean deterministicIds) {
+		this.deterministicIds = deterministicIds;
+	}
+
+	@Nullable
+	public Boolean getDeterministicIds() {
+		return deterministicIds;
+	}
 
 	@Override
 	public String getDisplayName() {
@@ -83,88 +104,66 @@ public class SwaggerUpgrade3Recipe extends Recipe {
 
 	@Override
 	public TreeVisitor<?, ExecutionContext> getVisitor() {
-		return Preconditions.check(Preconditions.or(
-				new UsesType<>("io.swagger.annotations.ApiParam", false),
-				new UsesType<>("io.swagger.annotations.ApiOperation", false),
-				new FindImports("io.swagger.annotations.ApiOperation", false).getVisitor(),
-				new FindImports("io.swagger.annotations.ApiParam", false).getVisitor()), new SwaggerVisitor());
+		return DeterministicIds.wrap(Boolean.TRUE.equals(deterministicIds),
+				MigrationMetrics.check("SwaggerUpgrade3Recipe", TypeUsageIndex.precondition("io.swagger.annotations.*"), new SwaggerVisitor()));
 	}
 
-	private class SwaggerVisitor extends JavaIsoVisitor<ExecutionContext> {
-
-		@Nullable
-		private JavaParser.Builder<?, ?> javaParser;
+	/**
+	 * Not thread-safe: like any visitor it keeps the cursor and the pending
+	 * {@code doAfterVisit} visitors, so every
+	 * {@link SwaggerUpgrade3Recipe#getVisitor()} call returns a fresh instance
+	 * that must stay confined to the thread visiting the tree. State shared
+	 * between instances is limited to immutable constants.
+	 */
+	private static class SwaggerVisitor extends DeclarationVisitor<ExecutionContext> {
 
-		private JavaParser.Builder<?, ?> javaParser(final ExecutionContext ctx) {
-			if (javaParser == null) {
-				javaParser = JavaParser.fromJavaVersion()
-						.classpathFromResources(ctx, "junit-jupiter-api-5.9");
-			}
-			return javaParser;
+		@Override
+		protected boolean canFork() {
+			return true;
 		}
 
 		@Override
-		public J.ClassDeclaration visitClassDeclaration(final J.ClassDeclaration classDecl, final ExecutionContext ctx) {
-			return super.visitClassDeclaration(classDecl, ctx);
+		protected SwaggerVisitor fork() {
+			return new SwaggerVisitor();
 		}
 
 		@Override
 		public J.MethodDeclaration visitMethodDeclaration(final J.MethodDeclaration method, final ExecutionContext ctx) {
-			J.MethodDeclaration m = super.visitMethodDeclaration(method, ctx);
+			final J.MethodDeclaration m = super.visitMethodDeclaration(method, ctx);
+			final Swagger3Converter converter = new Swagger3Converter(this::maybeAddImport, ApiModelIndex.get(ctx));
+			final MigrationMetrics metrics = MigrationMetrics.get(ctx);
+			final boolean hasResponses = m.getLeadingAnnotations().stream()
+					.anyMatch(x -> "ApiResponses".equals(x.getSimpleName()) || "ApiResponse".equals(x.getSimpleName()));
+			final List<J.Annotation> annotations = new ArrayList<>();
 			for (final J.Annotation annotation : m.getLeadingAnnotations()) {
 				if (ANN_API_OPERATION.matches(annotation)) {
-					final List<Expression> args = annotation.getArguments();
-					final Expression note = findNotesOrValue(args);
-					doAfterVisit(new RemoveAnnotationVisitor(ANN_API_OPERATION));
-					m = JavaTemplate.builder("@Operation(description = #{any(string)})")
-							.javaParser(javaParser(ctx))
-							.imports("io.swagger.v3.oas.annotations.Operation")
-							.build()
-							.apply(
-									updateCursor(m),
-									m.getCoordinates().addAnnotation(Comparator.comparing(J.Annotation::getSimpleName)),
-									note);
-					maybeAddImport("io.swagger.v3.oas.annotations.Operation", false);
+					annotations.add(converter.operation(annotation, hasResponses).withPrefix(annotation.getPrefix()));
+					metrics.converted("ApiOperation");
 					maybeRemoveImport("io.swagger.annotations.ApiOperation");
+					maybeRemoveImport("io.swagger.annotations.Authorization");
+					maybeRemoveImport("io.swagger.annotations.AuthorizationScope");
+				} else if (ANN_API_IMPLICIT_PARAMS.matches(annotation)) {
+					annotations.add(converter.parameters(annotation).withPrefix(annotation.getPrefix()));
+					metrics.converted("ApiImplicitParams");
+					maybeRemoveImport("io.swagger.annotations.ApiImplicitParams");
+					maybeRemoveImport("io.swagger.annotations.ApiImplicitParam");
+				} else if (ANN_API_IMPLICIT_PARAM.matches(annotation)) {
+					annotations.add(converter.parameter(annotation).withPrefix(annotation.getPrefix()));
+					metrics.converted("ApiImplicitParam");
+					maybeRemoveImport("io.swagger.annotations.ApiImplicitParam");
+				} else {
+					annotations.add(annotation);
 				}
 			}
-			return m.withParameters(convertParameters(m.getParameters()));
+			return m.withLeadingAnnotations(annotations)
+					.withParameters(convertParameters(m.getParameters(), ConversionCache.get(ctx), ApiModelIndex.get(ctx), metrics));
 		}
 
-		private Expression findNotesOrValue(final List<Expression> args) {
-			final Expression ret = findAnnotation(args, "notes");
-			if ((ret != null) && !isEmpty(ret)) {
-				return ret;
-			}
-			return findAnnotation(args, "value");
-		}
-
-		private boolean isEmpty(final Expression ret) {
-			if (!(ret instanceof final J.Literal lit)) {
-				return false;
-			}
-			@Nullable
-			final Object val = lit.getValue();
-			if (val instanceof final String str) {
-				return str.isEmpty();
-			}
-			return false;
-		}
-
-		private Expression findAnnotation(final List<Expression> args, final String element) {
-			return args.stream()
-					.filter(Assignment.class::isInstance)
-					.map(J.Assignment.class::cast)
-					.filter(x -> isMatching(x.getVariable(), element))
-					.map(Assignment::getAssignment)
-					.findFirst().orElse(null);
-		}
-
-		private List<Statement> convertParameters(final List<Statement> parameters) {
+		private List<Statement> convertParameters(final List<Statement> parameters, final ConversionCache cache, final ApiModelIndex index, final MigrationMetrics metrics) {
 			final List ret = new ArrayList<>();
 			for (final Statement stmt : parameters) {
 				if (stmt instanceof final J.VariableDeclarations vd) {
-					ret.add(vd.withLeadingAnnotations(convertLeadingAnnotations(vd.getAllAnnotations())));
+					ret.add(vd.withLeadingAnnotations(convertLeadingAnnotations(vd.getAllAnnotations(), cache, index, metrics)));
 				} else if (stmt instanceof J.Empty) {
 					ret.add(stmt);
 				} else {
@@ -175,13 +174,14 @@ public class SwaggerUpgrade3Recipe extends Recipe {
 			return ret;
 		}
 
-		private List<Annotation> convertLeadingAnnotations(final List<Annotation> allAnnotations) {
+		private List<Annotation> convertLeadingAnnotations(final List<Annotation> allAnnotations, final ConversionCache cache, final ApiModelIndex index, final MigrationMetrics metrics) {
 			final Optional<Annotation> optSwAnn = findSwagger2Annotation(allAnnotations);
 			if (optSwAnn.isEmpty()) {
 				return allAnnotations;
 			}
 			final ParameterIn param = convert(allAnnotations);
-			final J.Annotation sw3Ann = createSwagger3Annotation(optSwAnn.get(), param);
+			final J.Annotation sw3Ann = createSwagger3Annotation(optSwAnn.get(), param, cache, index);
+			metrics.converted("ApiParam");
 			final List<Annotation> remaind = allAnnotations.stream()
 					.filter(x -> !ANN_API_PARAM.matches(x))
 					.toList();
@@ -191,32 +191,59 @@ public class SwaggerUpgrade3Recipe extends Recipe {
 			return ret;
 		}
 
-		private Annotation createSwagger3Annotation(final Annotation annotation, final ParameterIn param) {
+		/**
+		 * The same parameter descriptions are repeated on many operations, the
+		 * conversion is reused from the run's {@link ConversionCache}.
+		 */
+		private Annotation createSwagger3Annotation(final Annotation annotation, final ParameterIn param, final ConversionCache cache, final ApiModelIndex index) {
 			final FullyQualified tagType = ShallowClass.build("io.swagger.v3.oas.annotations.Parameter");
 			maybeAddImport(tagType);
 			maybeAddImport(ParameterIn.class.getCanonicalName(), false);
+			final String key = ConversionCache.key("ApiParam:" + param.name(), annotation, getCursor());
+			final Optional<ConversionCache.Conversion> cached = cache.get(key);
+			if (cached.isPresent()) {
+				cached.get().imports().forEach(this::maybeAddImport);
+				return (Annotation) cached.get().tree();
+			}
+			final List<String> imports = new ArrayList<>();
+			final Swagger3Converter converter = new Swagger3Converter(x -> {
+				maybeAddImport(x);
+				imports.add(x);
+			}, index);
 			final List params = new ArrayList<>();
 			params.add(createAnnotationAssigment("in", param));
-			params.addAll(mapParams(annotation.getArguments()));
-			return new J.Annotation(
+			params.addAll(mapParams(annotation.getArguments(), converter));
+			final J.Annotation ret = new J.Annotation(
 					randomId(),
 					Space.EMPTY,
 					Markers.EMPTY,
 					new J.Identifier(randomId(), Space.EMPTY, Markers.EMPTY, Parameter.class.getSimpleName(), tagType, null),
 					JContainer.build(Space.EMPTY, params, Markers.EMPTY));
+			cache.put(key, new ConversionCache.Conversion(ret, List.copyOf(imports)));
+			return ret;
 		}
 
-		private <T> Collection<JRightPadded<T>> mapParams(@Nullable final List<Expression> arguments) {
+		private <T> Collection<JRightPadded<T>> mapParams(@Nullable final List<Expression> arguments, final Swagger3Converter converter) {
 			final List<JRightPadded<T>> ret = new ArrayList<>();
+			final Map<String, Expression> schemaAttrs = new HashMap<>();
 			for (final Expression expression : arguments) {
 				if (!(expression instanceof final J.Assignment ass)) {
 					throw new IllegalArgumentException("Unknown " + expression.getClass());
 				}
+				final String name = ((J.Identifier) ass.getVariable()).getSimpleName();
+				if (SCHEMA_ATTRIBUTES.contains(name)) {
+					schemaAttrs.put(name, ass.getAssignment());
+					continue;
+				}
 				final Optional<J.Assignment> optAss = buildAssignement(ass);
 				if (optAss.isPresent()) {
 					ret.add(new JRightPadded<>((T) optAss.get(), Space.SINGLE_SPACE, Markers.EMPTY));
 				}
 			}
+			// type, defaultValue and allowableValues moved to the schema.
+			converter.schema(schemaAttrs.get("type"), null, schemaAttrs.get("defaultValue"), schemaAttrs.get("allowableValues"))
+					.map(x -> Swagger3Converter.assignment("schema", x).withPrefix(Space.SINGLE_SPACE))
+					.ifPresent(x -> ret.add(new JRightPadded<>((T) x, Space.SINGLE_SPACE, Markers.EMPTY)));
 			return ret;
 		}
 
@@ -250,9 +277,9 @@ public class SwaggerUpgrade3Recipe extends Recipe {
 			case "value" -> "description";
 			case "name" -> "name";
 			case "example" -> "example";
-			case "type" -> null;
-			case "allowableValues" -> null;
-			case "defaultValue" -> null;
+			case "hidden" -> "hidden";
+			case "allowEmptyValue" -> "allowEmptyValue";
+			case "allowMultiple", "access", "examples", "format", "collectionFormat", "readOnly", "type", "allowableValues", "defaultValue" -> null;
 			default -> {
 				throw new IllegalArgumentException("Unknown attribute: " + name);
 			}
@@ -275,13 +302,6 @@ public class SwaggerUpgrade3Recipe extends Recipe {
 					.findFirst();
 		}
 
-		private boolean isMatching(final Expression expression, final String arg) {
-			if (expression instanceof final J.Identifier i) {
-				return i.getSimpleName().equals(arg);
-			}
-			return false;
-		}
-
 		private static final ParameterIn convert(final List<J.Annotation> annotations) {
 			if (match(annotations, ANN_SPRING_COOKIE_PARAM)) {
 				return ParameterIn.COOKIE;
@@ -306,7 +326,7 @@ public class SwaggerUpgrade3Recipe extends Recipe {
 			return ParameterIn.DEFAULT;
 		}
 
-		private static final boolean match(final List<J.Annotation> annotations, final AnnotationMatcher match) {
+		private static final boolean match(final List<J.Annotation> annotations, final AnnotationType match) {
 			return annotations.stream()
 					.anyMatch(match::matches);
 		}
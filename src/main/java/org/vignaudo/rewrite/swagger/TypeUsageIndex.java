@@ -0,0 +1,127 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Tree;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.marker.SearchResult;
+
+/**
+ * Types and packages referenced by a compilation unit, through its types in
+ * use and its imports.
+ *
+ * <p>
+ * The index is built once per compilation unit instance and kept in the
+ * {@link ExecutionContext} by unit id, so the preconditions of all the
+ * recipes of a run answer from the same sets instead of each walking the
+ * tree. An index is only reused for the very instance it was built from,
+ * which is weakly referenced; a unit changed by a previous recipe is a new
+ * instance with the same id and is indexed again.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+public final class TypeUsageIndex {
+	private static final String KEY = TypeUsageIndex.class.getName();
+
+	private final Set<String> types = new HashSet<>();
+	private final Set<String> packages = new HashSet<>();
+
+	TypeUsageIndex(final J.CompilationUnit cu) {
+		for (final JavaType type : cu.getTypesInUse().getTypesInUse()) {
+			if (type instanceof final JavaType.FullyQualified fq) {
+				types.add(fq.getFullyQualifiedName());
+				packages.add(fq.getPackageName());
+			}
+		}
+		for (final J.Import imp : cu.getImports()) {
+			if (imp.isStatic()) {
+				continue;
+			}
+			packages.add(imp.getPackageName());
+			if (!"*".equals(imp.getQualid().getSimpleName())) {
+				types.add(imp.getTypeName());
+			}
+		}
+	}
+
+	/**
+	 * Index of {@code cu}, built on first use for this instance.
+	 */
+	public static TypeUsageIndex get(final J.CompilationUnit cu, final ExecutionContext ctx) {
+		final Map<UUID, List<Entry>> entries = ContextMessages.computeIfAbsent(ctx, KEY, ConcurrentHashMap::new);
+		final List<Entry> instances = entries.computeIfAbsent(cu.getId(), x -> new CopyOnWriteArrayList<>());
+		for (final Entry entry : instances) {
+			if (entry.unit().get() == cu) {
+				return entry.index();
+			}
+		}
+		instances.removeIf(x -> x.unit().get() == null);
+		final TypeUsageIndex ret = new TypeUsageIndex(cu);
+		instances.add(new Entry(new WeakReference<>(cu), ret));
+		return ret;
+	}
+
+	/**
+	 * {@code pattern} is either a fully qualified type name or a package
+	 * followed by {@code .*}.
+	 */
+	public boolean uses(final String pattern) {
+		if (pattern.endsWith(".*")) {
+			return packages.contains(pattern.substring(0, pattern.length() - 2));
+		}
+		return types.contains(pattern);
+	}
+
+	/**
+	 * Precondition matching the compilation units that reference
+	 * {@code pattern}, replacing the {@code UsesType} and {@code FindImports}
+	 * pair.
+	 */
+	public static TreeVisitor<?, ExecutionContext> precondition(final String pattern) {
+		return new TreeVisitor<Tree, ExecutionContext>() {
+			@Override
+			public @Nullable Tree visit(@Nullable final Tree tree, final ExecutionContext ctx) {
+				if (tree instanceof final J.CompilationUnit cu && get(cu, ctx).uses(pattern)) {
+					return SearchResult.found(cu);
+				}
+				return tree;
+			}
+		};
+	}
+
+	/**
+	 * The index of one instance of a unit, compared by identity; the unit is
+	 * only weakly held so the trees replaced by a recipe can be collected.
+	 */
+	private record Entry(WeakReference<J.CompilationUnit> unit, TypeUsageIndex index) {
+		//
+	}
+}
@@ -0,0 +1,225 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Runs per file work on a fixed number of workers pulling from a shared
+ * queue, the most expensive files first.
+ *
+ * <p>
+ * With submission order, a few giant generated interfaces listed last start
+ * when the other workers are about to finish and the run ends on a single
+ * busy core. Dispatching by decreasing estimated cost starts them first and
+ * lets the small files fill the other workers. The estimate comes from a
+ * cheap pre-scan of the bytes: the size plus a weight per Swagger 2
+ * annotation.
+ *
+ * @author Olivier Vignaud
+ *
+ */
+final class WorkScheduler {
+	/** Cost of one Swagger 2 annotation, in bytes of plain source. */
+	static final long ANNOTATION_WEIGHT = 512;
+	private static final byte[] MARKER = { '@', 'A', 'p', 'i' };
+
+	enum Order {
+		SUBMISSION,
+		LARGEST_FIRST
+	}
+
+	private WorkScheduler() {
+		// Nothing.
+	}
+
+	/**
+	 * Estimated cost of migrating a file of {@code content}.
+	 */
+	static long estimate(final byte[] content) {
+		return content.length + (ANNOTATION_WEIGHT * annotations(content));
+	}
+
+	/**
+	 * Occurrences of {@code @Api}, the prefix of all the Swagger 2 annotations
+	 * the recipes convert.
+	 */
+	static int annotations(final byte[] content) {
+		int ret = 0;
+		for (int i = 0; i <= content.length - MARKER.length; i++) {
+			if (content[i] == '@' && content[i + 1] == 'A' && content[i + 2] == 'p' && content[i + 3] == 'i') {
+				ret++;
+				i += MARKER.length - 1;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Apply {@code work} to every item on {@code workers} tasks of
+	 * {@code executor}; results are in the order of {@code items}.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T, R> Run<R> run(final ExecutorService executor, final int workers, final List<T> items, final ToLongFunction<T> cost, final Order order,
+			final Function<T, R> work) {
+		final Integer[] queue = IntStream.range(0, items.size()).boxed().toArray(Integer[]::new);
+		if (order == Order.LARGEST_FIRST) {
+			final long[] costs = items.stream().mapToLong(cost).toArray();
+			Arrays.sort(queue, Comparator.comparingLong((final Integer x) -> costs[x]).reversed());
+		}
+		final AtomicInteger next = new AtomicInteger();
+		final Object[] results = new Object[items.size()];
+		final long start = System.nanoTime();
+		final List<CompletableFuture<Worker>> futures = IntStream.range(0, workers)
+				.mapToObj(id -> CompletableFuture.supplyAsync(() -> {
+					int tasks = 0;
+					long busy = 0;
+					for (int i = next.getAndIncrement(); i < queue.length; i = next.getAndIncrement()) {
+						final long taskStart = System.nanoTime();
+						results[queue[i]] = work.apply(items.get(queue[i]));
+						busy += System.nanoTime() - taskStart;
+						tasks++;
+					}
+					return new Worker(id, tasks, busy, System.nanoTime() - start);
+				}, executor))
+				.toList();
+		final List<Worker> done = new ArrayList<>();
+		try {
+			futures.forEach(x -> done.add(x.join()));
+		} catch (final CompletionException e) {
+			// Let the other workers stop instead of handing them more files.
+			next.set(queue.length);
+			if (e.getCause() instanceof final RuntimeException re) {
+				throw re;
+			}
+			throw e;
+		}
+		final List<R> ret = new ArrayList<>(items.size());
+		for (final Object result : results) {
+			ret.add((R) result);
+		}
+		return new Run<>(ret, new Report(Duration.ofNanos(System.nanoTime() - start), done));
+	}
+
+	/**
+	 * Apply {@code work} to every item, on the caller thread and on up to
+	 * {@code helpers} tasks of {@code executor}; results are in the order of
+	 * {@code items}.
+	 *
+	 * <p>
+	 * Unlike {@link #run}, the caller takes part and only waits for the items
+	 * already taken by a started helper, so it can be called from a task of
+	 * {@code executor} itself without waiting for a free thread.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T, R> List<R> share(final Executor executor, final int helpers, final List<T> items, final Function<T, R> work) {
+		final AtomicInteger next = new AtomicInteger();
+		final Object[] results = new Object[items.size()];
+		final CountDownLatch done = new CountDownLatch(items.size());
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final Runnable worker = () -> {
+			for (int i = next.getAndIncrement(); i < items.size(); i = next.getAndIncrement()) {
+				try {
+					if (failure.get() == null) {
+						results[i] = work.apply(items.get(i));
+					}
+				} catch (final RuntimeException | Error e) {
+					failure.compareAndSet(null, e);
+				} finally {
+					done.countDown();
+				}
+			}
+		};
+		try {
+			for (int i = 0; i < Math.min(helpers, items.size() - 1); i++) {
+				executor.execute(worker);
+			}
+		} catch (final RejectedExecutionException e) {
+			// The caller does the remaining work.
+		}
+		worker.run();
+		try {
+			done.await();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the helpers.", e);
+		}
+		if (failure.get() instanceof final RuntimeException e) {
+			throw e;
+		}
+		if (failure.get() instanceof final Error e) {
+			throw e;
+		}
+		final List<R> ret = new ArrayList<>(items.size());
+		for (final Object result : results) {
+			ret.add((R) result);
+		}
+		return ret;
+	}
+
+	record Run<R>(List<R> results, Report report) {
+		//
+	}
+
+	record Worker(int id, int tasks, long busyNanos, long finishedNanos) {
+		//
+	}
+
+	/**
+	 * Busy time of each worker against the wall time of the run. The tail is
+	 * the time between the first worker running out of files and the end of
+	 * the run.
+	 */
+	record Report(Duration wallTime, List<Worker> workers) {
+		Duration tail() {
+			final long first = workers.stream().mapToLong(Worker::finishedNanos).min().orElse(wallTime.toNanos());
+			return wallTime.minusNanos(first);
+		}
+
+		double utilization(final Worker worker) {
+			return wallTime.isZero() ? 1 : (double) worker.busyNanos() / wallTime.toNanos();
+		}
+
+		double utilization() {
+			return workers.stream().mapToDouble(this::utilization).average().orElse(1);
+		}
+
+		@Override
+		public String toString() {
+			return "wall " + wallTime.toMillis() + " ms, tail " + tail().toMillis() + " ms, utilization " + Math.round(utilization() * 100) + "% "
+					+ workers.stream()
+							.map(x -> "[" + x.id() + ": " + x.tasks() + " files, " + Math.round(utilization(x) * 100) + "%]")
+							.collect(Collectors.joining(" "));
+		}
+	}
+}
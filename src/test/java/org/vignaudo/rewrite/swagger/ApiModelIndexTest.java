@@ -0,0 +1,238 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.openrewrite.java.Assertions.java;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.vignaudo.rewrite.swagger.ApiModelIndex.Model;
+
+class ApiModelIndexTest implements RewriteTest {
+	private static final Logger LOG = LoggerFactory.getLogger(ApiModelIndexTest.class);
+	private static final int MODELS = 10_000;
+	private static final int BATCH = 500;
+	/** Ten properties per model, their names and types shared. */
+	private static final long BYTES_PER_MODEL = 1_536;
+
+	@Override
+	public void defaults(final RecipeSpec spec) {
+		spec.recipe(new Sw3ResponseRecipe())
+				.parser(JavaParser.fromJavaVersion()
+						.logCompilationWarningsAndErrors(true)
+						.classpathFromResources(new InMemoryExecutionContext(), "swagger-annotations"));
+	}
+
+	@Test
+	void referenceResolvedAcrossFiles() {
+		rewriteRun(
+				java(
+						"""
+								package com.yourorg.model;
+								import io.swagger.annotations.ApiModel;
+
+								@ApiModel(description = "NSD info")
+								public class NsdInfo {
+									private String id;
+								}
+								"""),
+				java(
+						"""
+								package com.yourorg;
+								import io.swagger.annotations.ApiResponse;
+								import io.swagger.annotations.ApiResponses;
+
+								public interface NsDescriptorsApi {
+									@ApiResponses(value = {
+										@ApiResponse(code = 200, message = "200 OK", reference = "NsdInfo", responseContainer = "Set") })
+									void nsDescriptorsGet();
+								}
+								""",
+						spec -> spec.after(actual -> {
+							final String compact = actual.replaceAll("\\s", "");
+							assertThat(compact).contains("importcom.yourorg.model.NsdInfo;");
+							assertThat(compact).contains("@ArraySchema(schema=@Schema(implementation=NsdInfo.class),uniqueItems=true)");
+							return actual;
+						})));
+	}
+
+	@Test
+	void ambiguousNameResolvedThroughImports() {
+		for (final String imported : List.of("com.first.model", "com.second.model")) {
+			rewriteRun(
+					java(model("com.first.model")),
+					java(model("com.second.model")),
+					java(
+							"""
+									package com.yourorg;
+									import %s.NsdInfo;
+									import io.swagger.annotations.ApiResponse;
+									import io.swagger.annotations.ApiResponses;
+
+									public interface NsDescriptorsApi {
+										@ApiResponses(value = {
+											@ApiResponse(code = 200, message = "200 OK", reference = "NsdInfo") })
+										NsdInfo nsDescriptorsGet();
+									}
+									""".formatted(imported),
+							spec -> spec.after(actual -> {
+								assertThat(actual.replaceAll("\\s", "")).contains("content=@Content(schema=@Schema(implementation=NsdInfo.class))");
+								assertThat(actual).contains("import " + imported + ".NsdInfo;");
+								return actual;
+							})));
+		}
+	}
+
+	@Test
+	void arrayClassResolvedFromTheIndex() {
+		rewriteRun(
+				java(model("com.yourorg.model")),
+				java(
+						"""
+								package com.yourorg;
+								import com.yourorg.model.NsdInfo;
+								import io.swagger.annotations.ApiResponse;
+								import io.swagger.annotations.ApiResponses;
+
+								public interface NsDescriptorsApi {
+									@ApiResponses(value = {
+										@ApiResponse(code = 200, message = "200 OK", response = NsdInfo[].class) })
+									NsdInfo[] nsDescriptorsGet();
+								}
+								""",
+						spec -> spec.after(actual -> {
+							assertThat(actual.replaceAll("\\s", "")).contains("@ArraySchema(schema=@Schema(implementation=NsdInfo.class))");
+							return actual;
+						})));
+	}
+
+	@Test
+	void containerPropertyDescribesItems() {
+		rewriteRun(
+				spec -> spec.recipe(new SwaggerModelRecipe()),
+				java(model("com.yourorg.model"), spec -> spec.after(actual -> {
+					assertThat(actual.replaceAll("\\s", "")).contains("@Schema(description=\"NSDinfo\")");
+					return actual;
+				})),
+				java(
+						"""
+								package com.yourorg.model;
+								import java.util.List;
+								import io.swagger.annotations.ApiModel;
+								import io.swagger.annotations.ApiModelProperty;
+
+								@ApiModel(description = "NSD page")
+								public class NsdPage {
+									@ApiModelProperty(value = "Descriptors.", dataType = "NsdInfo")
+									private List<NsdInfo> items;
+									@ApiModelProperty(value = "First descriptor.", dataType = "NsdInfo")
+									private NsdInfo first;
+								}
+								""",
+						spec -> spec.after(actual -> {
+							final String compact = actual.replaceAll("\\s", "");
+							assertThat(compact).contains("@ArraySchema(arraySchema=@Schema(description=\"Descriptors.\"),schema=@Schema(implementation=NsdInfo.class))privateList<NsdInfo>items;");
+							assertThat(compact).contains("@Schema(description=\"Firstdescriptor.\",implementation=NsdInfo.class)privateNsdInfofirst;");
+							return actual;
+						})));
+	}
+
+	/**
+	 * The index of 10k generated {@code @ApiModel} sources fed through
+	 * {@link ApiModelIndex#scanner()}, measured as the heap still used once the
+	 * parsed units are collected.
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "perf.heap", matches = "true")
+	void retainedHeapFor10kScannedModels() {
+		scan(new ApiModelIndex(), MODELS, MODELS + BATCH);
+		final long before = usedHeap();
+		final ApiModelIndex index = new ApiModelIndex();
+		scan(index, 0, MODELS);
+		final long retained = usedHeap() - before;
+		LOG.info("{} scanned models retain {} KiB, {} bytes per model.", index.size(), retained / 1024, retained / MODELS);
+		assertThat(index.size()).isEqualTo(MODELS);
+		assertThat(index.find("Model42")).map(Model::fqn).contains("com.yourorg.model.Model42");
+		assertThat(index.find("Model1").orElseThrow().properties()[3].name()).isSameAs(index.find("Model2").orElseThrow().properties()[3].name());
+		assertThat(retained / MODELS).isLessThanOrEqualTo(BYTES_PER_MODEL);
+	}
+
+	/**
+	 * Parse the models {@code from} to {@code to} in batches, each with its own
+	 * parser: the compiler keeps the symbols of every class it has seen until
+	 * it is collected.
+	 */
+	private static void scan(final ApiModelIndex index, final int from, final int to) {
+		final TreeVisitor<?, ExecutionContext> scanner = index.scanner();
+		for (int i = from; i < to; i += BATCH) {
+			final ExecutionContext ctx = new InMemoryExecutionContext();
+			MigrationRunner.defaultParser().build()
+					.parse(ctx, IntStream.range(i, Math.min(i + BATCH, to)).mapToObj(ApiModelIndexTest::generatedModel).toArray(String[]::new))
+					.forEach(x -> scanner.visit(x, ctx));
+		}
+	}
+
+	private static long usedHeap() {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	private static String generatedModel(final int i) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("""
+				package com.yourorg.model;
+				import io.swagger.annotations.ApiModel;
+				import io.swagger.annotations.ApiModelProperty;
+
+				@ApiModel(description = "Generated model %d")
+				public class Model%d {
+				""".formatted(i, i));
+		for (int j = 0; j < 10; j++) {
+			sb.append("\t@ApiModelProperty(value = \"Property %d.\", required = %b)\n".formatted(j, j == 0));
+			sb.append("\tprivate String property%d;\n".formatted(j));
+		}
+		return sb.append("}\n").toString();
+	}
+
+	private static String model(final String pkg) {
+		return """
+				package %s;
+				import io.swagger.annotations.ApiModel;
+
+				@ApiModel(description = "NSD info")
+				public class NsdInfo {
+					private String id;
+				}
+				""".formatted(pkg);
+	}
+}
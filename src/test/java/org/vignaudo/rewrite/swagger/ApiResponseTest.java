@@ -65,11 +65,11 @@ class ApiResponseTest implements RewriteTest {
 								import io.swagger.v3.oas.annotations.responses.ApiResponses;
 								import io.swagger.v3.oas.annotations.tags.Tag;
 
-								@Tag(name= "pm_jobs",description= "pm_jobs")
+								@Tag(name = "pm_jobs", description = "the pm_jobs API")
 								public interface NsDescriptors281Sol005Api {
 									@ApiResponses(value = {
-										@ApiResponse(code = "200", description = "200 OK Shall be returned when information about zero or more alarms has been queried successfully. The response body shall contain in an array the representations of zero or more alarms as defined in clause 7.5.2.4. If the \\"filter\\" URI parameter was supplied in the request, the data in the response body shall have been transformed according to the rules specified in clause 5.2.2 of ETSI GS NFV-SOL 013. If the VNFM supports alternative 2 (paging) according to clause 5.4.2.1 of ETSI GS NFV-SOL 013 for this resource, inclusion of the Link HTTP header in this response shall follow the provisions in clause 5.4.2.3 of ETSI GS NFV-SOL 013. ", schema=@Schema(implementation= Void.class)),
-										@ApiResponse(code = "504", description = "504 GATEWAY TIMEOUT If the API producer encounters a timeout while waiting for a response from an upstream server (i.e. a server that the API producer communicates with when fulfilling a request), it should respond with this response code. ", schema=@Schema(implementation= Void.class)) })
+										@ApiResponse(responseCode = "200", description = "200 OK Shall be returned when information about zero or more alarms has been queried successfully. The response body shall contain in an array the representations of zero or more alarms as defined in clause 7.5.2.4. If the \\"filter\\" URI parameter was supplied in the request, the data in the response body shall have been transformed according to the rules specified in clause 5.2.2 of ETSI GS NFV-SOL 013. If the VNFM supports alternative 2 (paging) according to clause 5.4.2.1 of ETSI GS NFV-SOL 013 for this resource, inclusion of the Link HTTP header in this response shall follow the provisions in clause 5.4.2.3 of ETSI GS NFV-SOL 013. ", content = @Content(schema = @Schema(implementation = Void.class))),
+										@ApiResponse(responseCode = "504", description = "504 GATEWAY TIMEOUT If the API producer encounters a timeout while waiting for a response from an upstream server (i.e. a server that the API producer communicates with when fulfilling a request), it should respond with this response code. ", content = @Content(schema = @Schema(implementation = Void.class))) })
 									void alarmsGet(
 									@ApiParam(value = "All query parameters. ", required = true) Map<String, String> requestParams,
 									@ApiParam(value = "Marker to obtain the next page of a paged response. Shall be supported by the  VNFM if the VNFM supports alternative 2 (paging) according to clause 5.4.2.1 of ETSI GS NFV-SOL 013 for this resource. ") String nextpageOpaqueMarker);
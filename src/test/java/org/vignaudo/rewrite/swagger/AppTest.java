@@ -46,7 +46,7 @@ class AppTest implements RewriteTest {
 								import io.swagger.v3.oas.annotations.enums.ParameterIn;
 
 								public interface NsDescriptors281Sol005Api {
-								    @Operation(description = "The GET method queries information about multiple NS descriptor resources. ")
+								    @Operation(description = "The GET method queries information about multiple NS descriptor resources. ", operationId = "nsDescriptorsGet")
 								    void nsDescriptorsGet(@Parameter(in = ParameterIn.DEFAULT, description = "All query parameters. ", required = true) @Valid Map<String, String> requestParams,
 								            @Parameter(in = ParameterIn.DEFAULT, description = "Marker to obtain the next page of a paged response. Shall be supported by the NFVO if the NFVO supports alternative 2 (paging) according to clause 5.4.2.1 of ETSI GS NFV-SOL 013 for this resource. ") String nextpageOpaqueMarker);
 								}
@@ -0,0 +1,179 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Result;
+import org.openrewrite.SourceFile;
+import org.openrewrite.internal.InMemoryLargeSourceSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vignaudo.rewrite.swagger.CompactResult.Edit;
+import org.vignaudo.rewrite.swagger.MigrationRunner.RunSummary;
+
+class CompactResultTest {
+	private static final Logger LOG = LoggerFactory.getLogger(CompactResultTest.class);
+	private static final int FILES = 100;
+	private static final int METHODS = 5;
+	private static final int HEAP_FILES = 200;
+	/** Compact results are expected to retain at most a tenth of the full ones. */
+	private static final long EXPECTED_REDUCTION = 10;
+
+	@Test
+	void editsKeepOnlyChangedLines() {
+		assertThat(CompactResult.edits("a\nb\nc\n", "a\nx\nc\n")).containsExactly(new Edit(2, 2, "x\n"));
+		assertThat(CompactResult.edits("a\nb", "a\nb\nc")).containsExactly(new Edit(2, 1, "b\nc"));
+		assertThat(CompactResult.edits("same\n", "same\n")).isEmpty();
+		final Random random = new Random(42);
+		for (int i = 0; i < 1_000; i++) {
+			final String original = randomLines(random);
+			final String revised = randomLines(random);
+			assertThat(apply(original, CompactResult.edits(original, revised))).isEqualTo(revised);
+		}
+	}
+
+	@Test
+	void appliesRecipeResults() {
+		for (final Result result : visit(FILES / 10)) {
+			final CompactResult compact = CompactResult.of(result);
+			final String before = result.getBefore().printAll();
+			assertThat(compact.apply(before)).isEqualTo(result.getAfter().printAll());
+			assertThat(compact.getEdits()).noneMatch(x -> x.replacement().contains("public interface"));
+			assertThatThrownBy(() -> compact.apply(before + "\n")).isInstanceOf(IllegalStateException.class);
+		}
+	}
+
+	@Test
+	void runnerMatchesFullResults(@TempDir final Path fullDir, @TempDir final Path compactDir, @TempDir final Path patchDir, @TempDir final Path work)
+			throws Exception {
+		final List<Path> fullSources = Corpus.generate(fullDir, FILES / 10, METHODS);
+		final List<Path> compactSources = Corpus.generate(compactDir, FILES / 10, METHODS);
+		final List<Path> patchSources = Corpus.generate(patchDir, FILES / 10, METHODS);
+		final Map<Path, String> before = Corpus.snapshot(patchDir);
+		final Path patch = work.resolve("migration.patch");
+		try (MigrationRunner runner = MigrationRunner.composite()) {
+			runner.run(fullDir, fullSources);
+		}
+		final RunSummary summary;
+		try (MigrationRunner runner = MigrationRunner.composite().compactResults(true)) {
+			summary = runner.run(compactDir, compactSources);
+		}
+		try (MigrationRunner runner = MigrationRunner.composite().compactResults(true).patch(patch)) {
+			runner.run(patchDir, patchSources);
+		}
+		assertThat(summary.changed()).isEqualTo(compactSources.size());
+		assertThat(Corpus.snapshot(compactDir)).isEqualTo(Corpus.snapshot(fullDir));
+		assertThat(Corpus.snapshot(patchDir)).isEqualTo(before);
+		final Process git = new ProcessBuilder("git", "apply", patch.toString())
+				.directory(patchDir.toFile())
+				.inheritIO()
+				.start();
+		assertThat(git.waitFor()).isZero();
+		assertThat(Corpus.snapshot(patchDir)).isEqualTo(Corpus.snapshot(fullDir));
+	}
+
+	/**
+	 * What a compact result keeps, counted in chars.
+	 */
+	@Test
+	void retainsOnlyReplacedLines() {
+		long retained = 0;
+		long printed = 0;
+		for (final Result result : visit(FILES)) {
+			final String before = result.getBefore().printAll();
+			final String after = result.getAfter().printAll();
+			final CompactResult compact = CompactResult.of(result);
+			final long replaced = compact.getEdits().stream().mapToLong(Edit::length).sum();
+			assertThat(compact.retainedChars()).isEqualTo(after.length() - (before.length() - replaced));
+			retained += compact.retainedChars();
+			printed += after.length();
+			assertThat(compact.retainedChars()).isLessThan(after.length());
+		}
+		LOG.info("{} results: {} chars retained once compacted, {} chars printed.", FILES, retained, printed);
+	}
+
+	/**
+	 * The heap held by drained results waiting to be written, measured after
+	 * GC: full results keep the before and after trees, compact ones only the
+	 * replaced lines. The recipe run holds every tree until it returns
+	 * whichever results are queued, so the peak heap is the same for both.
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "perf.heap", matches = "true")
+	void retainedHeapOfCompactResults() {
+		visit(HEAP_FILES);
+		final long base = usedHeap();
+		List<Result> results = visit(HEAP_FILES);
+		final long full = usedHeap() - base;
+		final List<CompactResult> compact = results.stream().map(CompactResult::of).toList();
+		results = null;
+		final long compacted = usedHeap() - base;
+		LOG.info("{} drained results retain {} KiB in full, {} KiB compacted.", compact.size(), full / 1024, compacted / 1024);
+		assertThat(compacted).isLessThan(full / EXPECTED_REDUCTION);
+	}
+
+	private static long usedHeap() {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	private static List<Result> visit(final int files) {
+		final List<SourceFile> sources = MigrationRunner.defaultParser().build()
+				.parse(new InMemoryExecutionContext(), IntStream.range(0, files)
+						.mapToObj(i -> Corpus.api("NsDescriptors" + i + "Api", METHODS))
+						.toArray(String[]::new))
+				.toList();
+		return MigrationRunner.compositeRecipe().run(new InMemoryLargeSourceSet(sources), new InMemoryExecutionContext()).getChangeset().getAllResults();
+	}
+
+	private static String randomLines(final Random random) {
+		final StringBuilder sb = new StringBuilder();
+		final int lines = random.nextInt(12);
+		for (int i = 0; i < lines; i++) {
+			sb.append((char) ('a' + random.nextInt(4)));
+			if ((i < (lines - 1)) || random.nextBoolean()) {
+				sb.append('\n');
+			}
+		}
+		return sb.toString();
+	}
+
+	private static String apply(final String original, final List<Edit> edits) {
+		final StringBuilder sb = new StringBuilder();
+		int position = 0;
+		for (final Edit edit : edits) {
+			sb.append(original, position, edit.offset()).append(edit.replacement());
+			position = edit.offset() + edit.length();
+		}
+		return sb.append(original, position, original.length()).toString();
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Recipe;
+import org.openrewrite.Result;
+import org.openrewrite.SourceFile;
+import org.openrewrite.internal.InMemoryLargeSourceSet;
+import org.openrewrite.java.JavaParser;
+
+/**
+ * Runs one shared composite instance on hundreds of files from many threads
+ * and compares the output with a sequential run.
+ *
+ * <p>
+ * The sources are parsed once up front by a single parser: the trees are
+ * immutable and shared by all the runs, while a parser per thread would hold
+ * its own copy of the classpath symbol tables.
+ */
+class ConcurrencyStressTest {
+	private static final int FILES = 300;
+	private static final int THREADS = 8;
+
+	@Test
+	void concurrentRunsMatchSequential() throws Exception {
+		final Recipe recipe = MigrationRunner.compositeRecipe();
+		final JavaParser parser = MigrationRunner.defaultParser().build();
+		final List<SourceFile> sources = parser.parse(new InMemoryExecutionContext(), IntStream.range(0, FILES)
+				.mapToObj(i -> Corpus.api("NsDescriptors" + i + "Api", 1 + (i % 4)))
+				.toArray(String[]::new))
+				.toList();
+		assertEquals(FILES, sources.size());
+		final Map<Integer, String> sequential = new ConcurrentHashMap<>();
+		for (int i = 0; i < FILES; i++) {
+			sequential.put(i, migrate(recipe, sources.get(i)));
+		}
+		final Map<Integer, String> concurrent = new ConcurrentHashMap<>();
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			final CountDownLatch start = new CountDownLatch(1);
+			final List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < FILES; i++) {
+				final int idx = i;
+				futures.add(executor.submit(() -> {
+					start.await();
+					concurrent.put(idx, migrate(recipe, sources.get(idx)));
+					return null;
+				}));
+			}
+			start.countDown();
+			for (final Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(sequential, concurrent);
+	}
+
+	private static String migrate(final Recipe recipe, final SourceFile cu) {
+		final ExecutionContext ctx = new InMemoryExecutionContext(t -> {
+			throw new AssertionError(t);
+		});
+		final List<Result> results = recipe.run(new InMemoryLargeSourceSet(List.of(cu)), ctx).getChangeset().getAllResults();
+		assertEquals(1, results.size());
+		return results.get(0).getAfter().printAll();
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.openrewrite.Tree.randomId;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.Cursor;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Result;
+import org.openrewrite.SourceFile;
+import org.openrewrite.internal.InMemoryLargeSourceSet;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.java.tree.Space;
+import org.openrewrite.marker.Markers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+class ConversionCacheTest {
+	private static final Logger LOG = LoggerFactory.getLogger(ConversionCacheTest.class);
+
+	@Test
+	void repeatedResponsesAreConvertedOnce() {
+		final List<SourceFile> sources = MigrationRunner.defaultParser().build()
+				.parse(new InMemoryExecutionContext(), Corpus.api("NsDescriptorsApi", 20))
+				.toList();
+		final ExecutionContext ctx = new InMemoryExecutionContext(t -> {
+			throw new AssertionError(t);
+		});
+		final List<Result> results = MigrationRunner.compositeRecipe()
+				.run(new InMemoryLargeSourceSet(sources), ctx)
+				.getChangeset()
+				.getAllResults();
+		final ConversionCache.Stats stats = ConversionCache.get(ctx).stats();
+		LOG.info("Conversion cache: {}.", stats);
+		assertThat(results).hasSize(1);
+		assertThat(stats.hitRate()).isGreaterThan(0.9);
+		final String after = results.get(0).getAfter().printAll();
+		assertThat(after.split("responseCode = \"400\"", -1)).hasSize(21);
+		assertThat(after).contains("import io.swagger.v3.oas.annotations.responses.ApiResponse;");
+	}
+
+	@Test
+	void keyFollowsLayout() {
+		final J.CompilationUnit cu = (J.CompilationUnit) MigrationRunner.defaultParser().build()
+				.parse(new InMemoryExecutionContext(), """
+						import io.swagger.annotations.ApiResponse;
+
+						interface NsApi {
+							@ApiResponse(code = 200, message = "OK", response = String.class)
+							void a();
+								@ApiResponse(code = 200, message = "OK", response = String.class)
+							void b();
+							@ApiResponse(code = 200, message = /* legacy */ "OK", response = String.class)
+							void c();
+							@ApiResponse(code=200,
+								message="OK",response=String.class)
+							void d();
+							@ApiResponse(code = 201, message = "OK", response = String.class)
+							void e();
+						}
+						""")
+				.findFirst()
+				.orElseThrow();
+		final Cursor cursor = new Cursor(null, cu);
+		final List<String> keys = cu.getClasses().get(0).getBody().getStatements().stream()
+				.map(x -> ConversionCache.key("ApiResponse", ((J.MethodDeclaration) x).getLeadingAnnotations().get(0), cursor))
+				.toList();
+		assertThat(keys.get(0)).hasSize(64).isEqualTo(keys.get(1));
+		assertThat(keys.subList(2, 5)).doesNotContain(keys.get(0)).doesNotHaveDuplicates();
+		assertThat(ConversionCache.key("ApiParam", ((J.MethodDeclaration) cu.getClasses().get(0).getBody().getStatements().get(0)).getLeadingAnnotations().get(0), cursor))
+				.isNotEqualTo(keys.get(0));
+	}
+
+	/**
+	 * A hit must not carry the comments of the annotation first converted.
+	 */
+	@Test
+	void commentsAreNotShared() {
+		final List<SourceFile> sources = MigrationRunner.defaultParser().build()
+				.parse(new InMemoryExecutionContext(), """
+						package com.yourorg;
+						import io.swagger.annotations.ApiParam;
+						import io.swagger.annotations.ApiResponse;
+						import io.swagger.annotations.ApiResponses;
+
+						public interface NsApi {
+							@ApiResponses(value = {
+								@ApiResponse(code = 200, message = /* legacy */ "OK", response = String.class) })
+							void a(@ApiParam(value = /* legacy */ "Id.", required = true) String id);
+							@ApiResponses(value = {
+								@ApiResponse(code = 200, message = "OK", response = String.class) })
+							void b(@ApiParam(value = "Id.", required = true) String id);
+						}
+						""")
+				.toList();
+		final ExecutionContext ctx = new InMemoryExecutionContext(t -> {
+			throw new AssertionError(t);
+		});
+		final String after = MigrationRunner.compositeRecipe()
+				.run(new InMemoryLargeSourceSet(sources), ctx)
+				.getChangeset()
+				.getAllResults()
+				.get(0)
+				.getAfter()
+				.printAll();
+		final int a = after.indexOf(';', after.indexOf("void a(")) + 1;
+		assertThat(after.substring(0, a).split("/\\* legacy \\*/", -1)).hasSize(3);
+		assertThat(after.substring(a)).doesNotContain("legacy").contains("@ApiResponse(responseCode = \"200\"").contains("@Parameter(");
+	}
+
+	@Test
+	void boundedAndFreshIds() {
+		final ConversionCache cache = new ConversionCache(2);
+		final J.Literal literal = new J.Literal(randomId(), Space.EMPTY, Markers.EMPTY, 1, "1", null, JavaType.Primitive.Int);
+		for (final String key : List.of("a", "b", "c")) {
+			cache.put(key, new ConversionCache.Conversion(literal, List.of()));
+		}
+		assertThat(cache.get("a")).isEmpty();
+		assertThat(cache.get("c")).hasValueSatisfying(x -> assertThat(x.tree().getId()).isNotEqualTo(literal.getId()));
+		assertThat(cache.stats()).isEqualTo(new ConversionCache.Stats(1, 1, 1, 2));
+	}
+}
@@ -0,0 +1,192 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Generates {@link NsDescriptors281Sol005Api}-like interfaces for benchmarks.
+ */
+final class Corpus {
+	static final String PACKAGE_DIR = "src/main/java/com/yourorg/gen";
+
+	private Corpus() {
+		// Nothing.
+	}
+
+	/**
+	 * Write {@code count} interfaces of {@code methods} operations each below
+	 * {@code baseDir} and return their paths relative to it.
+	 */
+	static List<Path> generate(final Path baseDir, final int count, final int methods) {
+		final List<Path> ret = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			ret.add(write(baseDir, "NsDescriptors" + i + "Api", api("NsDescriptors" + i + "Api", methods)));
+		}
+		return ret;
+	}
+
+	static Path write(final Path baseDir, final String className, final String source) {
+		final Path relative = Path.of(PACKAGE_DIR, className + ".java");
+		try {
+			final Path target = baseDir.resolve(relative);
+			Files.createDirectories(target.getParent());
+			Files.writeString(target, source);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return relative;
+	}
+
+	static String api(final String className, final int methods) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("""
+				package com.yourorg.gen;
+
+				import java.util.Map;
+
+				import io.swagger.annotations.Api;
+				import io.swagger.annotations.ApiOperation;
+				import io.swagger.annotations.ApiParam;
+				import io.swagger.annotations.ApiResponse;
+				import io.swagger.annotations.ApiResponses;
+
+				@Api(value = "ns_descriptors", description = "the ns_descriptors API")
+				public interface %s {
+				""".formatted(className));
+		for (int i = 0; i < methods; i++) {
+			sb.append("""
+						@ApiOperation(value = "", nickname = "nsDescriptorsGet%1$d", notes = "The GET method queries information about multiple NS descriptor resources. ", response = Void.class, responseContainer = "List", tags = {})
+						@ApiResponses(value = {
+								@ApiResponse(code = 200, message = "200 OK Shall be returned when information about zero or more NS descriptors has been queried successfully. ", response = Void.class),
+								@ApiResponse(code = 400, message = "400 BAD REQUEST 400 code can be returned in the following specified cases, the specific cause has to be proper specified in the \\"ProblemDetails\\" structure to be returned. ", response = Void.class),
+								@ApiResponse(code = 401, message = "401 UNAUTHORIZED If the request contains no access token even though one is required, the API producer should respond with this response. ", response = Void.class),
+								@ApiResponse(code = 404, message = "404 NOT FOUND If the API producer did not find a current representation for the resource addressed by the URI passed in the request. ", response = Void.class),
+								@ApiResponse(code = 500, message = "500 INTERNAL SERVER ERROR If there is an application error not related to the client's input. ", response = Void.class) })
+						void nsDescriptorsGet%1$d(@ApiParam(value = "All query parameters. ", required = true) Map<String, String> requestParams,
+								@ApiParam(value = "Marker to obtain the next page of a paged response. ") String nextpageOpaqueMarker);
+
+					""".formatted(i));
+		}
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	/**
+	 * {@link #api(String, int)} as written by openapi-generator, with its
+	 * {@code @Generated} marker.
+	 */
+	static String generated(final String className, final int methods) {
+		return api(className, methods).replace("@Api(", "@javax.annotation.Generated(value = \"org.openapitools.codegen.languages.JavaJAXRSSpecServerCodegen\")\n@Api(");
+	}
+
+	/**
+	 * Spring-like controller whose operations have bodies of {@code statements}
+	 * statements, with loops, lambdas and local variables.
+	 */
+	static String controller(final String className, final int methods, final int statements) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("""
+				package com.yourorg.gen;
+
+				import java.util.ArrayList;
+				import java.util.List;
+
+				import io.swagger.annotations.Api;
+				import io.swagger.annotations.ApiOperation;
+				import io.swagger.annotations.ApiParam;
+				import io.swagger.annotations.ApiResponse;
+				import io.swagger.annotations.ApiResponses;
+
+				@Api(value = "ns_descriptors", description = "the ns_descriptors API")
+				public class %s {
+					private final List<String> cache = new ArrayList<>(List.of("a", "b", "c"));
+
+				""".formatted(className));
+		for (int i = 0; i < methods; i++) {
+			sb.append("""
+						@ApiOperation(value = "", notes = "Query NS descriptor %1$d.")
+						@ApiResponses(value = {
+								@ApiResponse(code = 200, message = "200 OK", response = String.class),
+								@ApiResponse(code = 404, message = "404 NOT FOUND", response = Void.class) })
+						public List<String> query%1$d(@ApiParam(value = "Filter.", required = true) final String filter) {
+							final List<String> ret = new ArrayList<>();
+					""".formatted(i));
+			for (int j = 0; j < statements; j++) {
+				sb.append("""
+							for (int k%1$d = 0; k%1$d < filter.length(); k%1$d++) {
+								final String s%1$d = filter.substring(k%1$d) + "%1$d";
+								cache.stream().filter(x -> x.startsWith(s%1$d)).map(String::trim).forEach(ret::add);
+							}
+					""".formatted(j));
+			}
+			sb.append("""
+							return ret;
+						}
+
+					""");
+		}
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	/**
+	 * Interface of {@code methods} operations without any Swagger annotation.
+	 */
+	static String plain(final String className, final int methods) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("""
+				package com.yourorg.gen;
+
+				import java.util.List;
+				import java.util.Map;
+
+				public interface %s {
+				""".formatted(className));
+		for (int i = 0; i < methods; i++) {
+			sb.append("""
+						List<String> query%1$d(Map<String, String> requestParams, String nextpageOpaqueMarker);
+
+					""".formatted(i));
+		}
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	/**
+	 * Read every regular file below {@code baseDir}, keyed by relative path.
+	 */
+	static Map<Path, String> snapshot(final Path baseDir) {
+		final Map<Path, String> ret = new TreeMap<>();
+		try (Stream<Path> files = Files.walk(baseDir)) {
+			for (final Path file : files.filter(Files::isRegularFile).toList()) {
+				ret.put(baseDir.relativize(file), Files.readString(file));
+			}
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return ret;
+	}
+}
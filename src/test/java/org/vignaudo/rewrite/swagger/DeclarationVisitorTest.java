@@ -0,0 +1,99 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Result;
+import org.openrewrite.SourceFile;
+import org.openrewrite.internal.InMemoryLargeSourceSet;
+import org.openrewrite.java.JavaIsoVisitor;
+import org.openrewrite.java.tree.J;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares a full traversal with the declaration only one on controllers with
+ * large method bodies.
+ */
+class DeclarationVisitorTest {
+	private static final Logger LOG = LoggerFactory.getLogger(DeclarationVisitorTest.class);
+	private static final int FILES = 50;
+	private static final int ROUNDS = 5;
+
+	private final List<SourceFile> sources = MigrationRunner.defaultParser().build()
+			.parse(new InMemoryExecutionContext(), IntStream.range(0, FILES)
+					.mapToObj(i -> Corpus.controller("NsDescriptors" + i + "Controller", 10, 30))
+					.toArray(String[]::new))
+			.toList();
+
+	@Test
+	void bodiesAreSkipped() {
+		final AtomicLong full = new AtomicLong();
+		final AtomicLong pruned = new AtomicLong();
+		final long fullNanos = time(new JavaIsoVisitor<AtomicLong>() {
+			@Override
+			public J preVisit(final J tree, final AtomicLong count) {
+				count.incrementAndGet();
+				return tree;
+			}
+		}, full);
+		final long prunedNanos = time(new DeclarationVisitor<AtomicLong>() {
+			@Override
+			public J preVisit(final J tree, final AtomicLong count) {
+				count.incrementAndGet();
+				return tree;
+			}
+		}, pruned);
+		LOG.info("Full traversal: {} nodes in {} ms, declarations only: {} nodes in {} ms.",
+				full.get() / ROUNDS, fullNanos / 1_000_000, pruned.get() / ROUNDS, prunedNanos / 1_000_000);
+		assertThat(pruned.get()).isLessThan(full.get() / 10);
+	}
+
+	@Test
+	void controllersStillMigrated() {
+		final ExecutionContext ctx = new InMemoryExecutionContext(t -> {
+			throw new AssertionError(t);
+		});
+		final List<Result> results = MigrationRunner.compositeRecipe()
+				.run(new InMemoryLargeSourceSet(sources.subList(0, 1)), ctx)
+				.getChangeset()
+				.getAllResults();
+		assertThat(results).hasSize(1);
+		final String after = results.get(0).getAfter().printAll();
+		assertThat(after)
+				.contains("@Tag(", "@Operation(", "@Parameter(", "responseCode")
+				.contains("cache.stream().filter(x -> x.startsWith(s29)).map(String::trim).forEach(ret::add);");
+	}
+
+	private long time(final JavaIsoVisitor<AtomicLong> visitor, final AtomicLong count) {
+		final long start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++) {
+			for (final SourceFile source : sources) {
+				visitor.visit(source, count);
+			}
+		}
+		return System.nanoTime() - start;
+	}
+}
@@ -0,0 +1,84 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Recipe;
+import org.openrewrite.Result;
+import org.openrewrite.SourceFile;
+import org.openrewrite.internal.InMemoryLargeSourceSet;
+import org.openrewrite.java.JavaVisitor;
+import org.openrewrite.java.tree.J;
+
+class DeterministicIdsTest {
+	private static final String MODEL = """
+			package com.yourorg.gen;
+			import io.swagger.annotations.ApiModel;
+			import io.swagger.annotations.ApiModelProperty;
+
+			@ApiModel(description = "NSD info")
+			public class NsdInfo {
+				@ApiModelProperty(value = "Identifier.", required = true)
+				private String id;
+			}
+			""";
+
+	private final List<SourceFile> sources = MigrationRunner.defaultParser().build()
+			.parse(new InMemoryExecutionContext(), Corpus.api("NsDescriptorsApi", 3), MODEL)
+			.toList();
+
+	@Test
+	void sameInputSameIds() {
+		for (final Recipe recipe : List.of(new Sw3ResponseRecipe(true), new SwaggerModelRecipe(true), new SwaggerUpgrade3Recipe(true))) {
+			final List<UUID> first = ids(recipe);
+			assertThat(first).isNotEmpty();
+			assertThat(ids(recipe)).as(recipe.getName()).isEqualTo(first);
+		}
+	}
+
+	@Test
+	void randomByDefault() {
+		final Recipe recipe = new Sw3ResponseRecipe();
+		assertThat(ids(recipe)).isNotEqualTo(ids(recipe));
+	}
+
+	private List<UUID> ids(final Recipe recipe) {
+		final ExecutionContext ctx = new InMemoryExecutionContext(t -> {
+			throw new AssertionError(t);
+		});
+		final List<UUID> ret = new ArrayList<>();
+		final List<Result> results = recipe.run(new InMemoryLargeSourceSet(sources), ctx).getChangeset().getAllResults();
+		for (final Result result : results) {
+			new JavaVisitor<List<UUID>>() {
+				@Override
+				public J preVisit(final J tree, final List<UUID> p) {
+					p.add(tree.getId());
+					return tree;
+				}
+			}.visit(result.getAfter(), ret);
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,155 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.openrewrite.java.Assertions.java;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+/**
+ * Annotations without a one to one Swagger 3 counterpart, converted by the
+ * three recipes in a single run.
+ */
+class FullCoverageTest implements RewriteTest {
+	@Override
+	public void defaults(final RecipeSpec spec) {
+		spec.recipes(new Sw3ResponseRecipe(), new SwaggerModelRecipe(), new SwaggerUpgrade3Recipe())
+				.parser(JavaParser.fromJavaVersion()
+						.logCompilationWarningsAndErrors(true)
+						.classpathFromResources(new InMemoryExecutionContext(), "swagger-annotations"));
+	}
+
+	@Test
+	void operationsAndImplicitParams() {
+		rewriteRun(
+				java(
+						"""
+								package com.yourorg;
+								public class NsdInfo {
+								}
+								"""),
+				java(
+						"""
+								package com.yourorg;
+								import io.swagger.annotations.Api;
+								import io.swagger.annotations.ApiImplicitParam;
+								import io.swagger.annotations.ApiImplicitParams;
+								import io.swagger.annotations.ApiOperation;
+								import io.swagger.annotations.Authorization;
+								import io.swagger.annotations.AuthorizationScope;
+
+								@Api(tags = { "ns" }, authorizations = @Authorization(value = "oauth", scopes = @AuthorizationScope(scope = "read", description = "")))
+								public interface NsDescriptorsApi {
+									@ApiOperation(value = "Get", notes = "Long", tags = { "ns" }, response = NsdInfo.class, responseContainer = "List",
+										authorizations = @Authorization(value = "oauth", scopes = @AuthorizationScope(scope = "read", description = "")))
+									@ApiImplicitParams({
+										@ApiImplicitParam(name = "limit", paramType = "query", dataType = "long", allowableValues = "range[1, 100]", defaultValue = "10") })
+									void nsDescriptorsGet();
+								}
+								""",
+						spec -> spec.after(actual -> {
+							final String compact = actual.replaceAll("\\s", "");
+							assertThat(compact)
+									.contains("@Tag(name=\"ns\")")
+									.contains("@SecurityRequirement(name=\"oauth\",scopes=\"read\")")
+									.contains("@Operation(summary=\"Get\",description=\"Long\",tags=\"ns\",security=@SecurityRequirement(name=\"oauth\",scopes=\"read\"),"
+											+ "responses=@ApiResponse(responseCode=\"200\",content=@Content(array=@ArraySchema(schema=@Schema(implementation=NsdInfo.class)))))")
+									.contains("@Parameters(value=@Parameter(name=\"limit\",in=ParameterIn.QUERY,"
+											+ "schema=@Schema(type=\"integer\",format=\"int64\",defaultValue=\"10\",minimum=\"1\",maximum=\"100\")))")
+									.doesNotContain("io.swagger.annotations");
+							return actual;
+						})));
+	}
+
+	@Test
+	void nicknameAndIndentedTags() {
+		rewriteRun(
+				java(
+						"""
+								package com.yourorg;
+								import io.swagger.annotations.Api;
+								import io.swagger.annotations.ApiOperation;
+
+								public class Sol005 {
+									@Api(tags = { "ns", "vnf" })
+									public interface NsDescriptorsApi {
+										@ApiOperation(value = "Get", nickname = "nsDescriptorsGet", produces = "application/json", consumes = "application/json")
+										void nsDescriptorsGet();
+									}
+								}
+								""",
+						spec -> spec.after(actual -> {
+							assertThat(actual)
+									.contains("\t@Tag(name = \"ns\")\n\t@Tag(name = \"vnf\")\n\tpublic interface NsDescriptorsApi {")
+									.contains("@Operation(description = \"Get\", operationId = \"nsDescriptorsGet\")")
+									.doesNotContain("io.swagger.annotations");
+							return actual;
+						})));
+	}
+
+	@Test
+	void swaggerDefinition() {
+		rewriteRun(
+				java(
+						"""
+								package com.yourorg;
+								import io.swagger.annotations.Contact;
+								import io.swagger.annotations.Info;
+								import io.swagger.annotations.SwaggerDefinition;
+
+								@SwaggerDefinition(info = @Info(title = "NFV", version = "2.8.1", contact = @Contact(name = "ETSI", url = "https://etsi.org")),
+									host = "localhost", basePath = "/sol005", schemes = SwaggerDefinition.Scheme.HTTPS)
+								public interface Sol005 {
+								}
+								""",
+						spec -> spec.after(actual -> {
+							assertThat(actual.replaceAll("\\s", ""))
+									.contains("@OpenAPIDefinition(info=@Info(title=\"NFV\",version=\"2.8.1\",contact=@Contact(name=\"ETSI\",url=\"https://etsi.org\")),"
+											+ "servers=@Server(url=\"https://localhost/sol005\"))")
+									.doesNotContain("io.swagger.annotations");
+							return actual;
+						})));
+	}
+
+	@Test
+	void modelProperties() {
+		rewriteRun(
+				java(
+						"""
+								package com.yourorg;
+								import io.swagger.annotations.ApiModel;
+								import io.swagger.annotations.ApiModelProperty;
+
+								@ApiModel(description = "NS state")
+								public class NsState {
+									@ApiModelProperty(value = "State", allowableValues = "ENABLED, DISABLED", accessMode = ApiModelProperty.AccessMode.READ_ONLY)
+									private String state;
+								}
+								""",
+						spec -> spec.after(actual -> {
+							assertThat(actual.replaceAll("\\s", ""))
+									.contains("@Schema(description=\"State\",allowableValues={\"ENABLED\",\"DISABLED\"},accessMode=Schema.AccessMode.READ_ONLY)")
+									.doesNotContain("io.swagger.annotations");
+							return actual;
+						})));
+	}
+}
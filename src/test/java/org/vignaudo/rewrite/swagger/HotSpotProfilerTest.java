@@ -0,0 +1,70 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.vignaudo.rewrite.swagger.HotSpotProfiler.FileProfile;
+
+class HotSpotProfilerTest {
+	private static final int TOP = 3;
+
+	@Test
+	void giantInterfaceIsTheHotSpot(@TempDir final Path baseDir, @TempDir final Path work) throws Exception {
+		final List<Path> sources = new ArrayList<>(Corpus.generate(baseDir, 10, 2));
+		final Path giant = Corpus.write(baseDir, "GiantApi", Corpus.api("GiantApi", 200));
+		final Path plain = Corpus.write(baseDir, "VnfPackagesApi", Corpus.plain("VnfPackagesApi", 5));
+		sources.add(giant);
+		sources.add(plain);
+		final Path report = work.resolve("hot-spots.txt");
+		final HotSpotProfiler profiler;
+		try (MigrationRunner runner = MigrationRunner.composite().hotSpots(report, TOP)) {
+			runner.run(baseDir, sources);
+			profiler = runner.getHotSpots();
+		}
+		final List<FileProfile> top = profiler.top(TOP);
+		assertThat(top).hasSize(TOP);
+		assertThat(top.get(0).file()).isEqualTo(giant);
+		final Map<String, Duration> phases = top.get(0).phases();
+		assertThat(phases).containsKeys("parse", "print", "format",
+				"precondition Sw3ResponseRecipe", "visit Sw3ResponseRecipe", "imports Sw3ResponseRecipe",
+				"visit SwaggerUpgrade3Recipe", "precondition SwaggerModelRecipe");
+		assertThat(top.get(0).share(top.get(0).dominant())).isPositive();
+		final FileProfile skipped = profiler.top(Integer.MAX_VALUE).stream().filter(x -> x.file().equals(plain)).findFirst().orElseThrow();
+		assertThat(skipped.phases().keySet()).allMatch(x -> "parse".equals(x) || x.startsWith("precondition "));
+		final List<String> lines = Files.readAllLines(report);
+		assertThat(lines).hasSize(TOP + 1);
+		assertThat(lines.get(1)).contains(giant.toString(), "dominant: ");
+	}
+
+	@Test
+	void disabledByDefault(@TempDir final Path baseDir) {
+		try (MigrationRunner runner = MigrationRunner.composite()) {
+			runner.run(baseDir, Corpus.generate(baseDir, 2, 2));
+			assertThat(runner.getHotSpots()).isNull();
+		}
+	}
+}
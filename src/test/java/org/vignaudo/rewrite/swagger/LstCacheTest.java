@@ -0,0 +1,126 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.SourceFile;
+import org.openrewrite.internal.InMemoryLargeSourceSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+class LstCacheTest {
+	private static final Logger LOG = LoggerFactory.getLogger(LstCacheTest.class);
+	private static final int FILES = 100;
+	private static final int METHODS = 5;
+
+	@Test
+	void warmRunSkipsParser(@TempDir final Path baseDir, @TempDir final Path cacheDir) {
+		final List<Path> sources = Corpus.generate(baseDir, FILES, METHODS);
+		final LstCache cache = new LstCache(cacheDir, MigrationRunner.defaultClasspathKey());
+		try (MigrationRunner runner = MigrationRunner.composite().lstCache(cache)) {
+			final long coldStart = System.nanoTime();
+			final List<SourceFile> cold = runner.parse(baseDir, sources, new InMemoryExecutionContext());
+			final long coldNanos = System.nanoTime() - coldStart;
+			final long warmStart = System.nanoTime();
+			final List<SourceFile> warm = runner.parse(baseDir, sources, new InMemoryExecutionContext());
+			final long warmNanos = System.nanoTime() - warmStart;
+			LOG.info("{} files: parsed in {} ms, loaded from cache in {} ms ({}x).", FILES, coldNanos / 1_000_000, warmNanos / 1_000_000,
+					String.format("%.1f", (double) coldNanos / warmNanos));
+			assertThat(cache.getMisses()).isEqualTo(FILES);
+			assertThat(cache.getHits()).isEqualTo(FILES);
+			assertThat(warm).map(SourceFile::getSourcePath).isEqualTo(cold.stream().map(SourceFile::getSourcePath).toList());
+			assertThat(warm).map(SourceFile::printAll).isEqualTo(cold.stream().map(SourceFile::printAll).toList());
+			// Cached trees keep their types, so the recipes still match them.
+			final List<String> migrated = runner.getRecipe()
+					.run(new InMemoryLargeSourceSet(warm), new InMemoryExecutionContext())
+					.getChangeset()
+					.getAllResults()
+					.stream()
+					.map(x -> x.getAfter().printAll())
+					.toList();
+			assertThat(migrated).hasSize(FILES).allSatisfy(x -> assertThat(x).contains("@Operation("));
+		}
+	}
+
+	@Test
+	void classpathKeyFollowsTheJars(@TempDir final Path dir) throws Exception {
+		final Path jar = dir.resolve("swagger-annotations-1.6.11.jar");
+		Files.write(jar, new byte[] { 1, 2, 3 });
+		final String key = LstCache.classpathKey(List.of(jar));
+		assertThat(LstCache.classpathKey(List.of(jar))).isEqualTo(key);
+		Files.write(jar, new byte[] { 1, 2, 4 });
+		assertThat(LstCache.classpathKey(List.of(jar))).isNotEqualTo(key);
+		final Path other = dir.resolve("jboss-jaxrs-api_2.1_spec-2.0.1.Final.jar");
+		Files.write(other, new byte[] { 1, 2, 4 });
+		assertThat(LstCache.classpathKey(List.of(jar, other))).isNotEqualTo(LstCache.classpathKey(List.of(jar)));
+		assertThat(MigrationRunner.defaultClasspathKey()).hasSize(64);
+	}
+
+	@Test
+	void identicalFilesKeepTheirOwnIds(@TempDir final Path baseDir, @TempDir final Path cacheDir) {
+		final String source = Corpus.api("NsDescriptorsApi", METHODS);
+		final List<Path> sources = List.of(
+				Path.of("a").resolve(Corpus.write(baseDir.resolve("a"), "NsDescriptorsApi", source)),
+				Path.of("b").resolve(Corpus.write(baseDir.resolve("b"), "NsDescriptorsApi", source)));
+		final LstCache cache = new LstCache(cacheDir, MigrationRunner.defaultClasspathKey());
+		try (MigrationRunner runner = MigrationRunner.composite().lstCache(cache)) {
+			runner.parse(baseDir, sources, new InMemoryExecutionContext());
+			final List<SourceFile> warm = runner.parse(baseDir, sources, new InMemoryExecutionContext());
+			assertThat(cache.getMisses()).isEqualTo(2);
+			assertThat(cache.getHits()).isEqualTo(2);
+			assertThat(warm.get(0).getId()).isNotEqualTo(warm.get(1).getId());
+			assertThat(warm).allSatisfy(x -> assertThat(x.getFileAttributes()).isNotNull());
+		}
+	}
+
+	@Test
+	void readOnlyCacheDoesNotStopTheRun(@TempDir final Path baseDir, @TempDir final Path cacheDir) throws Exception {
+		Files.setPosixFilePermissions(cacheDir, PosixFilePermissions.fromString("r-xr-xr-x"));
+		try {
+			Assumptions.assumeFalse(Files.isWritable(cacheDir), "The cache directory is writable by this user.");
+			assertRunWithoutCache(baseDir, cacheDir);
+		} finally {
+			Files.setPosixFilePermissions(cacheDir, PosixFilePermissions.fromString("rwxr-xr-x"));
+		}
+	}
+
+	@Test
+	void unwritableCacheDoesNotStopTheRun(@TempDir final Path baseDir, @TempDir final Path dir) throws Exception {
+		final Path file = Files.writeString(dir.resolve("not-a-directory"), "");
+		assertRunWithoutCache(baseDir, file.resolve("cache"));
+	}
+
+	private static void assertRunWithoutCache(final Path baseDir, final Path cacheDir) {
+		final List<Path> sources = Corpus.generate(baseDir, 2, METHODS);
+		final LstCache cache = new LstCache(cacheDir, MigrationRunner.defaultClasspathKey());
+		try (MigrationRunner runner = MigrationRunner.composite().lstCache(cache)) {
+			assertThat(runner.run(baseDir, sources).changed()).isEqualTo(2);
+		}
+		assertThat(cache.getHits()).isZero();
+		assertThat(Corpus.snapshot(baseDir).values()).allMatch(x -> x.contains("@Operation("));
+	}
+}
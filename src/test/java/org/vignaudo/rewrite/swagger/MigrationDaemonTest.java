@@ -0,0 +1,98 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vignaudo.rewrite.swagger.MigrationRunner.RunSummary;
+
+/**
+ * Startup plus first request and later requests of a warm daemon, each on a
+ * small change set as produced by a pull request; the timings are only
+ * logged.
+ */
+class MigrationDaemonTest {
+	private static final Logger LOG = LoggerFactory.getLogger(MigrationDaemonTest.class);
+	private static final int FILES = 5;
+	private static final int METHODS = 5;
+	private static final int WARM_REQUESTS = 5;
+
+	@Test
+	void warmRequests(@TempDir final Path work) throws Exception {
+		final Path socket = work.resolve("daemon.sock");
+		final long coldStart = System.nanoTime();
+		try (MigrationDaemon daemon = MigrationDaemon.start(socket, MigrationRunner.composite())) {
+			final RunSummary first = MigrationDaemon.migrate(socket, work.resolve("cold"), Corpus.generate(work.resolve("cold"), FILES, METHODS));
+			final long coldNanos = System.nanoTime() - coldStart;
+			assertThat(first.changed()).isEqualTo(FILES);
+			long warmNanos = Long.MAX_VALUE;
+			for (int i = 0; i < WARM_REQUESTS; i++) {
+				final Path baseDir = work.resolve("warm" + i);
+				final List<Path> sources = Corpus.generate(baseDir, FILES, METHODS);
+				final long start = System.nanoTime();
+				final RunSummary summary = MigrationDaemon.migrate(socket, baseDir, sources);
+				warmNanos = Math.min(warmNanos, System.nanoTime() - start);
+				assertThat(summary.changed()).isEqualTo(FILES);
+				assertThat(Files.readString(baseDir.resolve(sources.get(0)))).contains("@Operation(");
+			}
+			LOG.info("{} files: startup and first request {} ms, warm request {} ms.", FILES, coldNanos / 1_000_000, warmNanos / 1_000_000);
+			MigrationDaemon.shutdown(socket);
+		}
+		assertThat(socket).doesNotExist();
+	}
+
+	@Test
+	void socketIsOwnerOnly(@TempDir final Path work) throws Exception {
+		final Path socket = work.resolve("daemon.sock");
+		try (MigrationDaemon daemon = MigrationDaemon.start(socket, MigrationRunner.composite())) {
+			assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(socket))).isEqualTo("rw-------");
+		}
+	}
+
+	@Test
+	void pathsOutsideBaseDirAreRefused(@TempDir final Path work) throws Exception {
+		final Path socket = work.resolve("daemon.sock");
+		final Path root = Files.createDirectories(work.resolve("root"));
+		final Path baseDir = root.resolve("project");
+		final List<Path> sources = Corpus.generate(baseDir, 1, 1);
+		final Path outside = Corpus.write(work, "Outside", Corpus.api("Outside", 1));
+		try (MigrationDaemon daemon = MigrationDaemon.start(socket, MigrationRunner.composite(), root)) {
+			assertThatThrownBy(() -> MigrationDaemon.migrate(socket, baseDir, List.of(Path.of("..", "..").resolve(outside))))
+					.hasMessageContaining("ERROR Source is outside of the base directory");
+			assertThatThrownBy(() -> MigrationDaemon.migrate(socket, work, List.of(outside)))
+					.hasMessageContaining("ERROR Base directory is outside of");
+			assertThat(Files.readString(work.resolve(outside))).doesNotContain("@Operation(");
+			assertThat(MigrationDaemon.migrate(socket, baseDir, sources).changed()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	void errorsAreSingleLine() {
+		assertThat(MigrationDaemon.message(new IllegalStateException("first\nsecond"))).isEqualTo("first\\nsecond");
+		assertThat(MigrationDaemon.message(new NullPointerException())).isEqualTo(NullPointerException.class.getName());
+	}
+}
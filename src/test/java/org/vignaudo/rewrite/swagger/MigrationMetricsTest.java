@@ -0,0 +1,64 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MigrationMetricsTest {
+	private static final int FILES = 20;
+	private static final int METHODS = 3;
+
+	@Test
+	void runnerPublishesMetrics(@TempDir final Path baseDir, @TempDir final Path metricsDir) throws Exception {
+		final List<Path> sources = Corpus.generate(baseDir, FILES, METHODS);
+		final Path metricsFile = metricsDir.resolve("migration.prom");
+		final ObjectName name = new ObjectName("org.vignaudo.rewrite.swagger:type=MigrationMetrics,name=" + ObjectName.quote("test"));
+		try (MigrationRunner runner = MigrationRunner.composite().metricsFile(metricsFile, Duration.ofMillis(50)).registerMBean("test")) {
+			runner.run(baseDir, sources);
+			final MigrationMetrics metrics = runner.getMetrics();
+			assertThat(metrics.getConversions())
+					.containsEntry("Api", (long) FILES)
+					.containsEntry("ApiOperation", (long) FILES * METHODS)
+					.containsEntry("ApiResponse", (long) FILES * METHODS * 5)
+					.containsEntry("ApiParam", (long) FILES * METHODS * 2);
+			assertThat(metrics.getFiles()).isEqualTo(FILES);
+			assertThat(metrics.getFilesChanged()).isEqualTo(FILES);
+			assertThat(metrics.getFilesChangedByRecipe()).containsEntry("Sw3ResponseRecipe", (long) FILES);
+			assertThat(metrics.getFilesSkippedByRecipe()).containsEntry("SwaggerModelRecipe", (long) FILES);
+			assertThat(metrics.getPhaseMillis()).containsKeys("parse", "visit", "format", "print");
+			assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "FilesChanged")).isEqualTo(metrics.getFilesChanged());
+			assertThat(Files.readString(metricsFile))
+					.contains("swagger_migration_run_files_total{outcome=\"changed\"} " + FILES)
+					.contains("swagger_migration_files_total{recipe=\"Sw3ResponseRecipe\",outcome=\"changed\"} " + FILES)
+					.contains("swagger_migration_files_total{recipe=\"SwaggerModelRecipe\",outcome=\"skipped\"} " + FILES)
+					.contains("swagger_migration_conversions_total{annotation=\"ApiResponse\"} " + FILES * METHODS * 5)
+					.contains("swagger_migration_phase_seconds_count{phase=\"parse\"} " + FILES);
+		}
+		assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(name)).isFalse();
+	}
+}
@@ -0,0 +1,78 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vignaudo.rewrite.swagger.MigrationRunner.ExecutionMode;
+import org.vignaudo.rewrite.swagger.MigrationRunner.RunSummary;
+
+class MigrationRunnerTest {
+	private static final Logger LOG = LoggerFactory.getLogger(MigrationRunnerTest.class);
+	private static final int FILES = 200;
+	private static final int METHODS = 5;
+	private static final int PATCH_FILES = 20;
+
+	@Test
+	void virtualThreadsMatchSequential(@TempDir final Path sequentialDir, @TempDir final Path virtualDir) {
+		final List<Path> sequentialSources = Corpus.generate(sequentialDir, FILES, METHODS);
+		final List<Path> virtualSources = Corpus.generate(virtualDir, FILES, METHODS);
+		final RunSummary sequential;
+		try (MigrationRunner runner = MigrationRunner.composite().executionMode(ExecutionMode.SEQUENTIAL)) {
+			sequential = runner.run(sequentialDir, sequentialSources);
+		}
+		final RunSummary virtual;
+		try (MigrationRunner runner = MigrationRunner.composite().executionMode(ExecutionMode.VIRTUAL_THREADS)) {
+			virtual = runner.run(virtualDir, virtualSources);
+		}
+		LOG.info("{} files: sequential {} ms, virtual threads {} ms.", FILES, sequential.wallTime().toMillis(), virtual.wallTime().toMillis());
+		assertEquals(FILES, sequential.changed());
+		assertEquals(sequential.changed(), virtual.changed());
+		assertEquals(Corpus.snapshot(sequentialDir), Corpus.snapshot(virtualDir));
+	}
+
+	@Test
+	void patchMatchesInPlace(@TempDir final Path inPlaceDir, @TempDir final Path patchDir, @TempDir final Path work) throws Exception {
+		final List<Path> inPlaceSources = Corpus.generate(inPlaceDir, PATCH_FILES, METHODS);
+		final List<Path> patchSources = Corpus.generate(patchDir, PATCH_FILES, METHODS);
+		final Map<Path, String> before = Corpus.snapshot(patchDir);
+		final Path patch = work.resolve("migration.patch");
+		try (MigrationRunner runner = MigrationRunner.composite()) {
+			runner.run(inPlaceDir, inPlaceSources);
+		}
+		final RunSummary summary;
+		try (MigrationRunner runner = MigrationRunner.composite().patch(patch)) {
+			summary = runner.run(patchDir, patchSources);
+		}
+		assertEquals(PATCH_FILES, summary.changed());
+		assertEquals(before, Corpus.snapshot(patchDir));
+		final Process git = new ProcessBuilder("git", "apply", patch.toString())
+				.directory(patchDir.toFile())
+				.inheritIO()
+				.start();
+		assertEquals(0, git.waitFor());
+		assertEquals(Corpus.snapshot(inPlaceDir), Corpus.snapshot(patchDir));
+	}
+}
@@ -0,0 +1,254 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.openrewrite.java.Assertions.java;
+import static org.openrewrite.yaml.Assertions.yaml;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+class OpenApiSpecRecipeTest implements RewriteTest {
+
+	@Override
+	public void defaults(final RecipeSpec spec) {
+		spec.recipe(new OpenApiSpecRecipe())
+				.parser(JavaParser.fromJavaVersion()
+						.logCompilationWarningsAndErrors(true)
+						.classpath("swagger-annotations-jakarta", "javax.ws.rs-api"));
+	}
+
+	@Test
+	void testName() {
+		rewriteRun(
+				java(
+						"""
+								package com.yourorg;
+								import javax.ws.rs.GET;
+								import javax.ws.rs.Path;
+								import javax.ws.rs.PathParam;
+								import io.swagger.v3.oas.annotations.Operation;
+								import io.swagger.v3.oas.annotations.Parameter;
+								import io.swagger.v3.oas.annotations.enums.ParameterIn;
+								import io.swagger.v3.oas.annotations.media.ArraySchema;
+								import io.swagger.v3.oas.annotations.media.Content;
+								import io.swagger.v3.oas.annotations.media.Schema;
+								import io.swagger.v3.oas.annotations.responses.ApiResponse;
+								import io.swagger.v3.oas.annotations.responses.ApiResponses;
+								import io.swagger.v3.oas.annotations.tags.Tag;
+
+								@Tag(name = "ns_descriptors", description = "the ns_descriptors API")
+								@Path("/nsd/v2")
+								public interface NsDescriptorsApi {
+									@GET
+									@Path("ns_descriptors/{nsdInfoId}")
+									@Operation(description = "Read an NS descriptor.")
+									@ApiResponses(value = {
+											@ApiResponse(responseCode = "200", description = "200 OK", content = @Content(array = @ArraySchema(schema = @Schema(implementation = NsdInfo.class)))),
+											@ApiResponse(responseCode = "404", description = "404 NOT FOUND") })
+									NsdInfo[] nsDescriptorGet(@Parameter(in = ParameterIn.PATH, description = "Identifier of the NSD.", required = true) @PathParam("nsdInfoId") String nsdInfoId);
+								}
+								"""),
+				java(
+						"""
+								package com.yourorg;
+								import io.swagger.v3.oas.annotations.media.Schema;
+
+								@Schema(description = "NSD info")
+								public class NsdInfo {
+									@Schema(description = "Identifier.", required = true)
+									private String id;
+									private int version;
+								}
+								"""),
+				yaml(
+						null,
+						"""
+								openapi: 3.0.1
+								info:
+								  title: "api"
+								  version: "1.0.0"
+								tags:
+								  - name: "ns_descriptors"
+								    description: "the ns_descriptors API"
+								paths:
+								  "/nsd/v2/ns_descriptors/{nsdInfoId}":
+								    get:
+								      tags:
+								        - "ns_descriptors"
+								      description: "Read an NS descriptor."
+								      operationId: "nsDescriptorGet"
+								      parameters:
+								        - name: "nsdInfoId"
+								          in: path
+								          description: "Identifier of the NSD."
+								          required: true
+								          schema:
+								            type: string
+								      responses:
+								        "200":
+								          description: "200 OK"
+								          content:
+								            '*/*':
+								              schema:
+								                type: array
+								                items:
+								                  $ref: "#/components/schemas/NsdInfo"
+								        "404":
+								          description: "404 NOT FOUND"
+								components:
+								  schemas:
+								    NsdInfo:
+								      type: object
+								      description: "NSD info"
+								      required:
+								        - "id"
+								      properties:
+								        id:
+								          type: string
+								          description: "Identifier."
+								        version:
+								          type: integer
+								          format: "int32"
+								""",
+						spec -> spec.path("openapi.yaml")));
+	}
+
+
+	@Test
+	void nestedArraysAndUnannotatedReferences() {
+		rewriteRun(
+				java(
+						"""
+								package com.yourorg;
+								import java.util.List;
+								import io.swagger.v3.oas.annotations.media.Schema;
+
+								@Schema(description = "VNF package")
+								public class VnfPkgInfo {
+									private List<List<String>> checksums;
+									private Link self;
+									private Link[][] links;
+								}
+								"""),
+				java(
+						"""
+								package com.yourorg;
+
+								public class Link {
+									private String href;
+								}
+								"""),
+				yaml(
+						null,
+						"""
+								openapi: 3.0.1
+								info:
+								  title: "api"
+								  version: "1.0.0"
+								paths: {}
+								components:
+								  schemas:
+								    Link:
+								      type: object
+								    VnfPkgInfo:
+								      type: object
+								      description: "VNF package"
+								      properties:
+								        checksums:
+								          type: array
+								          items:
+								            type: array
+								            items:
+								              type: string
+								        self:
+								          $ref: "#/components/schemas/Link"
+								        links:
+								          type: array
+								          items:
+								            type: array
+								            items:
+								              $ref: "#/components/schemas/Link"
+								""",
+						spec -> spec.path("openapi.yaml")));
+	}
+
+	@Test
+	void documentsSourcesMigratedInTheSameRun() {
+		rewriteRun(
+				spec -> spec.recipeFromResources("org.vignaudo.Swagger3OpenApiSpec")
+						.parser(MigrationRunner.defaultParser())
+						.cycles(3)
+						.expectedCyclesThatMakeChanges(2),
+				java(
+						"""
+								package com.yourorg;
+								import javax.ws.rs.GET;
+								import javax.ws.rs.Path;
+								import io.swagger.annotations.Api;
+								import io.swagger.annotations.ApiOperation;
+
+								@Api(tags = "ns_descriptors")
+								@Path("/nsd/v2")
+								public interface NsDescriptorsApi {
+								    @GET
+								    @Path("ns_descriptors")
+								    @ApiOperation(value = "Query NS descriptors.", nickname = "nsDescriptorsGet")
+								    void nsDescriptorsGet();
+								}
+								""",
+						"""
+								package com.yourorg;
+								import javax.ws.rs.GET;
+								import javax.ws.rs.Path;
+								import io.swagger.v3.oas.annotations.Operation;
+								import io.swagger.v3.oas.annotations.tags.Tag;
+
+								@Tag(name = "ns_descriptors")
+								@Path("/nsd/v2")
+								public interface NsDescriptorsApi {
+								    @GET
+								    @Path("ns_descriptors")
+								    @Operation(description = "Query NS descriptors.", operationId = "nsDescriptorsGet")
+								    void nsDescriptorsGet();
+								}
+								"""),
+				yaml(
+						null,
+						"""
+								openapi: 3.0.1
+								info:
+								  title: "api"
+								  version: "1.0.0"
+								tags:
+								  - name: "ns_descriptors"
+								paths:
+								  "/nsd/v2/ns_descriptors":
+								    get:
+								      tags:
+								        - "ns_descriptors"
+								      description: "Query NS descriptors."
+								      operationId: "nsDescriptorsGet"
+								      responses:
+								        default:
+								          description: default response
+								""",
+						spec -> spec.path("openapi.yaml")));
+	}
+}
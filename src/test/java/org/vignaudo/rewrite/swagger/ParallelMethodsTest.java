@@ -0,0 +1,81 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Result;
+import org.openrewrite.SourceFile;
+import org.openrewrite.internal.InMemoryLargeSourceSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single generated interface of more than 20k lines, converted with and
+ * without parallel method visits.
+ */
+class ParallelMethodsTest {
+	private static final Logger LOG = LoggerFactory.getLogger(ParallelMethodsTest.class);
+	private static final int METHODS = 1500;
+
+	private final List<SourceFile> sources = MigrationRunner.defaultParser().build()
+			.parse(new InMemoryExecutionContext(), Corpus.api("GiantApi", METHODS))
+			.toList();
+
+	@Test
+	void sameOutputAsSequential() {
+		final long sequentialStart = System.nanoTime();
+		final String sequential = migrate(newContext());
+		final long sequentialNanos = System.nanoTime() - sequentialStart;
+		final ExecutionContext ctx = newContext();
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		DeclarationVisitor.parallelMethodThreshold(ctx, 100, executor);
+		final long parallelStart = System.nanoTime();
+		final String parallel;
+		try {
+			parallel = migrate(ctx);
+		} finally {
+			executor.shutdown();
+		}
+		final long parallelNanos = System.nanoTime() - parallelStart;
+		LOG.info("{} lines: sequential {} ms, parallel {} ms.", sequential.lines().count(), sequentialNanos / 1_000_000, parallelNanos / 1_000_000);
+		assertThat(sequential).contains("@Operation(").doesNotContain("io.swagger.annotations");
+		assertThat(parallel).isEqualTo(sequential);
+	}
+
+	private String migrate(final ExecutionContext ctx) {
+		final List<Result> results = MigrationRunner.compositeRecipe()
+				.run(new InMemoryLargeSourceSet(sources), ctx)
+				.getChangeset()
+				.getAllResults();
+		assertThat(results).hasSize(1);
+		return results.get(0).getAfter().printAll();
+	}
+
+	private static ExecutionContext newContext() {
+		return new InMemoryExecutionContext(t -> {
+			throw new AssertionError(t);
+		});
+	}
+}
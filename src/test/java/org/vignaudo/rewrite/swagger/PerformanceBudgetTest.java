@@ -0,0 +1,211 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Recipe;
+import org.openrewrite.SourceFile;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.InMemoryLargeSourceSet;
+import org.openrewrite.java.JavaIsoVisitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs each recipe over a fixed generated corpus and fails when the allocated
+ * bytes or the latency per file exceed the budgets of
+ * {@code perf-budget.properties} by more than {@code -Dperf.margin} (0.25 by
+ * default). The latency is budgeted as the ratio of the median time per file
+ * to the median time of a plain traversal of the same files, measured in the
+ * same run, so that it does not depend on the speed of the host. With
+ * {@code -Dperf.record=<file>} the measures are written to {@code file}
+ * instead of being checked.
+ */
+class PerformanceBudgetTest {
+	private static final Logger LOG = LoggerFactory.getLogger(PerformanceBudgetTest.class);
+	private static final String BUDGET = "/perf-budget.properties";
+	private static final String HEADER = """
+			# Per file budgets of PerformanceBudgetTest, measured on the generated
+			# corpus (40 interfaces of 5 operations). Refresh with
+			#   mvn test -Dtest=PerformanceBudgetTest -Dperf.record=src/test/resources/perf-budget.properties
+			# at the tip of any change to the recipes, the caches or the metrics, and
+			# review the difference before committing it. latencyRatio is the median
+			# time per file over the median time of a plain traversal of the file.
+			""";
+	private static final int FILES = 40;
+	private static final int METHODS = 5;
+	private static final int WARMUP = 3;
+	private static final int ROUNDS = 7;
+	private static final Properties MEASURED = new Properties();
+
+	private final List<SourceFile> sources = MigrationRunner.defaultParser().build()
+			.parse(new InMemoryExecutionContext(), IntStream.range(0, FILES)
+					.mapToObj(i -> Corpus.api("NsDescriptors" + i + "Api", METHODS))
+					.toArray(String[]::new))
+			.toList();
+
+	@TestFactory
+	Stream<DynamicTest> withinBudget() {
+		final Map<String, Supplier<Recipe>> recipes = Map.of(
+				"Sw3ResponseRecipe", Sw3ResponseRecipe::new,
+				"SwaggerModelRecipe", SwaggerModelRecipe::new,
+				"SwaggerUpgrade3Recipe", SwaggerUpgrade3Recipe::new,
+				"composite", MigrationRunner::compositeRecipe);
+		final Properties budget = loadBudget();
+		return recipes.entrySet().stream()
+				.sorted(Map.Entry.comparingByKey())
+				.map(x -> DynamicTest.dynamicTest(x.getKey(), () -> check(x.getKey(), x.getValue().get(), budget)));
+	}
+
+	@AfterAll
+	static void record() {
+		final String target = System.getProperty("perf.record");
+		if (target == null || MEASURED.isEmpty()) {
+			return;
+		}
+		final StringBuilder sb = new StringBuilder(HEADER);
+		MEASURED.stringPropertyNames().stream().sorted().forEach(x -> sb.append(x).append('=').append(MEASURED.getProperty(x)).append('\n'));
+		try {
+			Files.writeString(Path.of(target), sb);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		LOG.info("Budgets recorded in {}.", target);
+	}
+
+	private void check(final String name, final Recipe recipe, final Properties budget) {
+		final long[] bytes = new long[ROUNDS * FILES];
+		final long[] nanos = new long[ROUNDS * FILES];
+		final long[] baseline = new long[ROUNDS * FILES];
+		final Recipe traversal = new Traversal();
+		for (int i = 0; i < WARMUP; i++) {
+			sources.forEach(x -> {
+				run(recipe, x);
+				run(traversal, x);
+			});
+		}
+		for (int i = 0; i < ROUNDS; i++) {
+			for (int j = 0; j < FILES; j++) {
+				final long allocated = allocatedBytes();
+				final long start = System.nanoTime();
+				run(recipe, sources.get(j));
+				nanos[(i * FILES) + j] = System.nanoTime() - start;
+				bytes[(i * FILES) + j] = allocatedBytes() - allocated;
+				final long traversalStart = System.nanoTime();
+				run(traversal, sources.get(j));
+				baseline[(i * FILES) + j] = System.nanoTime() - traversalStart;
+			}
+		}
+		final long medianBytes = median(bytes);
+		final double latencyRatio = (double) median(nanos) / median(baseline);
+		LOG.info("{}: {} bytes and {} us per file, {} times a traversal.", name, medianBytes, median(nanos) / 1_000, String.format(Locale.ROOT, "%.2f", latencyRatio));
+		if (System.getProperty("perf.record") != null) {
+			MEASURED.setProperty(name + ".allocatedBytes", Long.toString(medianBytes));
+			MEASURED.setProperty(name + ".latencyRatio", String.format(Locale.ROOT, "%.2f", latencyRatio));
+			return;
+		}
+		final double margin = margin();
+		assertThat(medianBytes).as("%s allocated bytes per file", name)
+				.isLessThanOrEqualTo((long) (Long.parseLong(budget.getProperty(name + ".allocatedBytes")) * margin));
+		assertThat(latencyRatio).as("%s median time per file over the one of a traversal", name)
+				.isLessThanOrEqualTo(Double.parseDouble(budget.getProperty(name + ".latencyRatio")) * margin);
+	}
+
+	/**
+	 * Visits every node of a file without changing it; the baseline of the
+	 * latency budgets.
+	 */
+	private static final class Traversal extends Recipe {
+		@Override
+		public String getDisplayName() {
+			return "Traversal";
+		}
+
+		@Override
+		public String getDescription() {
+			return "Visit every node without changing it.";
+		}
+
+		@Override
+		public TreeVisitor<?, ExecutionContext> getVisitor() {
+			return new JavaIsoVisitor<>();
+		}
+	}
+
+	/**
+	 * Each file is run on its own so that the median is taken over files
+	 * rather than over the mean of whole runs.
+	 */
+	private static void run(final Recipe recipe, final SourceFile source) {
+		recipe.run(new InMemoryLargeSourceSet(List.of(source)), new InMemoryExecutionContext(t -> {
+			throw new AssertionError(t);
+		})).getChangeset().getAllResults();
+	}
+
+	/**
+	 * Recipes run on the caller thread, so its allocation counter covers the
+	 * whole run.
+	 */
+	private static long allocatedBytes() {
+		final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static double margin() {
+		return 1 + Double.parseDouble(System.getProperty("perf.margin", "0.25"));
+	}
+
+	private static long median(final long[] values) {
+		final long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+
+	private static Properties loadBudget() {
+		final Properties ret = new Properties();
+		try (InputStream in = PerformanceBudgetTest.class.getResourceAsStream(BUDGET)) {
+			if (in == null) {
+				throw new IllegalStateException("Missing " + BUDGET);
+			}
+			ret.load(in);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return ret;
+	}
+}
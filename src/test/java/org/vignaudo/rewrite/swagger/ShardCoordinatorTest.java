@@ -0,0 +1,131 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.vignaudo.rewrite.swagger.MigrationRunner.RunSummary;
+
+/**
+ * Several service modules migrated by worker JVMs and in process.
+ */
+class ShardCoordinatorTest {
+	private static final int MODULES = 5;
+	private static final int FILES = 4;
+	private static final int METHODS = 5;
+
+	@Test
+	void shardsMatchInProcess(@TempDir final Path shardedDir, @TempDir final Path inProcessDir, @TempDir final Path work) {
+		final List<Path> sharded = writeModules(shardedDir);
+		final List<Path> inProcess = writeModules(inProcessDir);
+		final Path reportFile = work.resolve("report.jsonl");
+		final ShardReport report = new ShardCoordinator(3).report(reportFile).run(shardedDir, sharded);
+		final RunSummary summary;
+		try (MigrationRunner runner = MigrationRunner.composite()) {
+			summary = runner.run(inProcessDir, inProcess);
+		}
+		assertThat(report.shards()).isEqualTo(3);
+		assertThat(report.files()).isEqualTo(summary.files());
+		assertThat(report.changed()).isEqualTo(summary.changed());
+		assertThat(report.conversions()).containsKey("ApiOperation");
+		assertThat(report.dataTables()).containsKey("org.openrewrite.table.SourcesFileResults");
+		assertThat(ShardReport.read(reportFile)).usingRecursiveComparison().ignoringFields("wallTime").isEqualTo(report);
+		assertThat(Corpus.snapshot(shardedDir)).isEqualTo(Corpus.snapshot(inProcessDir));
+	}
+
+	@Test
+	void partitionKeepsModulesTogether(@TempDir final Path baseDir) {
+		final List<Path> sources = writeModules(baseDir);
+		final List<List<Path>> partition = ShardCoordinator.partition(baseDir, sources, 2);
+		assertThat(partition).hasSize(2);
+		assertThat(partition.stream().mapToInt(List::size).sum()).isEqualTo(sources.size());
+		for (int i = 0; i < MODULES; i++) {
+			final Path module = Path.of("ns-" + i);
+			assertThat(partition).filteredOn(x -> x.stream().anyMatch(y -> y.startsWith(module))).hasSize(1);
+		}
+		assertThat(ShardCoordinator.partition(baseDir, sources, 10)).hasSize(MODULES);
+	}
+
+	@Test
+	void partitionFollowsModelReferences(@TempDir final Path baseDir) {
+		final List<Path> sources = writeModules(baseDir);
+		final Path models = Path.of("models");
+		sources.add(models.resolve(Corpus.write(baseDir.resolve(models), "NsdInfo", """
+				package com.yourorg.gen;
+
+				import io.swagger.annotations.ApiModel;
+
+				@ApiModel(description = "NS descriptor information.")
+				public class NsdInfo {
+				}
+				""")));
+		final Path user = Path.of("ns-0");
+		sources.add(user.resolve(Corpus.write(baseDir.resolve(user), "NsdInfoApi", Corpus.api("NsdInfoApi", 1).replace("Void.class", "NsdInfo.class"))));
+		for (int shards = 1; shards <= MODULES + 1; shards++) {
+			assertThat(ShardCoordinator.partition(baseDir, sources, shards))
+					.filteredOn(x -> x.stream().anyMatch(y -> y.startsWith(models)))
+					.singleElement()
+					.satisfies(x -> assertThat(x).anyMatch(y -> y.startsWith(user)));
+		}
+	}
+
+	@Test
+	void failedShardLetsTheOthersFinish(@TempDir final Path baseDir) {
+		final List<Path> sources = writeModules(baseDir);
+		final List<Path> workDirs = new ArrayList<>();
+		final ShardCoordinator coordinator = new ShardCoordinator(MODULES) {
+			@Override
+			protected List<String> command(final Path dir, final Path shardFile, final Path reportFile) {
+				workDirs.add(shardFile.getParent());
+				final List<String> ret = new ArrayList<>(super.command(dir, shardFile, reportFile));
+				if (shardFile.getFileName().toString().equals("shard-0.txt")) {
+					ret.set(ret.indexOf(ShardWorker.class.getName()), "org.vignaudo.rewrite.swagger.NoSuchWorker");
+				}
+				return ret;
+			}
+		};
+		final List<List<Path>> partition = ShardCoordinator.partition(baseDir, sources, MODULES);
+		assertThatThrownBy(() -> coordinator.run(baseDir, sources))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("Shard 0 failed");
+		for (int i = 1; i < partition.size(); i++) {
+			for (final Path source : partition.get(i)) {
+				assertThat(Corpus.snapshot(baseDir).get(source)).as(source.toString()).contains("@Operation(");
+			}
+		}
+		assertThat(workDirs).isNotEmpty().allSatisfy(x -> assertThat(x).doesNotExist());
+	}
+
+	private static List<Path> writeModules(final Path baseDir) {
+		final List<Path> ret = new ArrayList<>();
+		for (int i = 0; i < MODULES; i++) {
+			final Path module = Path.of("ns-" + i);
+			for (int j = 0; j < FILES; j++) {
+				final String className = "Ns" + i + "Descriptors" + j + "Api";
+				ret.add(module.resolve(Corpus.write(baseDir.resolve(module), className, Corpus.api(className, METHODS))));
+			}
+		}
+		return ret;
+	}
+}
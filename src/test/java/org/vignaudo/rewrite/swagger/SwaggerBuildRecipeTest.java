@@ -0,0 +1,427 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.openrewrite.java.Assertions.java;
+import static org.openrewrite.properties.Assertions.properties;
+import static org.openrewrite.xml.Assertions.xml;
+import static org.openrewrite.yaml.Assertions.yaml;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+import org.openrewrite.test.TypeValidation;
+
+class SwaggerBuildRecipeTest implements RewriteTest {
+	private static final String POM = """
+			<project>
+				<groupId>com.yourorg</groupId>
+				<artifactId>%s</artifactId>
+				<version>1.0.0</version>
+				<properties>
+					<swagger.version>1.6.11</swagger.version>
+				</properties>
+				<dependencies>
+					<dependency>
+						<groupId>io.swagger</groupId>
+						<artifactId>swagger-annotations</artifactId>
+						<version>${swagger.version}</version>
+					</dependency>
+					<dependency>
+						<groupId>io.springfox</groupId>
+						<artifactId>springfox-swagger2</artifactId>
+						<version>2.9.2</version>
+					</dependency>
+					<dependency>
+						<groupId>io.springfox</groupId>
+						<artifactId>springfox-swagger-ui</artifactId>
+						<version>2.9.2</version>
+					</dependency>
+				</dependencies>
+			</project>
+			""";
+
+	private static final String API = """
+			package com.yourorg;
+			import io.swagger.annotations.Api;
+
+			@Api
+			public interface NsApi {
+			}
+			""";
+
+	@Override
+	public void defaults(final RecipeSpec spec) {
+		spec.recipe(new SwaggerBuildRecipe())
+				.parser(JavaParser.fromJavaVersion()
+						.logCompilationWarningsAndErrors(true)
+						.classpathFromResources(new InMemoryExecutionContext(), "swagger-annotations"));
+	}
+
+	@Test
+	void migratesOnlyModulesWithSwagger2Sources() {
+		rewriteRun(
+				java(
+						"""
+								package com.yourorg;
+								import io.swagger.annotations.Api;
+
+								@Api
+								public interface NsApi {
+								}
+								""",
+						spec -> spec.path("ns/src/main/java/com/yourorg/NsApi.java")),
+				java(
+						"""
+								package com.yourorg;
+
+								public interface VnfApi {
+								}
+								""",
+						spec -> spec.path("vnf/src/main/java/com/yourorg/VnfApi.java")),
+				xml(
+						POM.formatted("ns"),
+						"""
+								<project>
+									<groupId>com.yourorg</groupId>
+									<artifactId>ns</artifactId>
+									<version>1.0.0</version>
+									<properties>
+										<swagger.version>2.2.11</swagger.version>
+									</properties>
+									<dependencies>
+										<dependency>
+											<groupId>io.swagger.core.v3</groupId>
+											<artifactId>swagger-annotations-jakarta</artifactId>
+											<version>${swagger.version}</version>
+										</dependency>
+										<dependency>
+											<groupId>org.springdoc</groupId>
+											<artifactId>springdoc-openapi-starter-webmvc-ui</artifactId>
+											<version>2.1.0</version>
+										</dependency>
+									</dependencies>
+								</project>
+								""",
+						spec -> spec.path("ns/pom.xml")),
+				xml(POM.formatted("vnf"), spec -> spec.path("vnf/pom.xml")));
+	}
+
+	@Test
+	void sharedVersionPropertyIsLeftAlone() {
+		rewriteRun(
+				java(API, spec -> spec.path("src/main/java/com/yourorg/NsApi.java")),
+				xml(
+						"""
+								<project>
+									<groupId>com.yourorg</groupId>
+									<artifactId>ns</artifactId>
+									<version>1.0.0</version>
+									<properties>
+										<swagger.version>1.6.11</swagger.version>
+									</properties>
+									<dependencies>
+										<dependency>
+											<groupId>io.swagger</groupId>
+											<artifactId>swagger-annotations</artifactId>
+											<version>${swagger.version}</version>
+										</dependency>
+										<dependency>
+											<groupId>io.swagger</groupId>
+											<artifactId>swagger-models</artifactId>
+											<version>${swagger.version}</version>
+										</dependency>
+									</dependencies>
+								</project>
+								""",
+						"""
+								<project>
+									<groupId>com.yourorg</groupId>
+									<artifactId>ns</artifactId>
+									<version>1.0.0</version>
+									<properties>
+										<swagger.version>1.6.11</swagger.version>
+									</properties>
+									<dependencies>
+										<dependency>
+											<groupId>io.swagger.core.v3</groupId>
+											<artifactId>swagger-annotations-jakarta</artifactId>
+											<version>2.2.11</version>
+										</dependency>
+										<dependency>
+											<groupId>io.swagger</groupId>
+											<artifactId>swagger-models</artifactId>
+											<version>${swagger.version}</version>
+										</dependency>
+									</dependencies>
+								</project>
+								""",
+						spec -> spec.path("pom.xml")));
+	}
+
+	@Test
+	void inheritedVersionPropertyGetsALiteralVersion() {
+		rewriteRun(
+				java(API, spec -> spec.path("src/main/java/com/yourorg/NsApi.java")),
+				xml(
+						"""
+								<project>
+									<parent>
+										<groupId>com.yourorg</groupId>
+										<artifactId>parent</artifactId>
+										<version>1.0.0</version>
+									</parent>
+									<artifactId>ns</artifactId>
+									<dependencies>
+										<dependency>
+											<groupId>io.swagger</groupId>
+											<artifactId>swagger-annotations</artifactId>
+											<version>${swagger.version}</version>
+										</dependency>
+									</dependencies>
+								</project>
+								""",
+						"""
+								<project>
+									<parent>
+										<groupId>com.yourorg</groupId>
+										<artifactId>parent</artifactId>
+										<version>1.0.0</version>
+									</parent>
+									<artifactId>ns</artifactId>
+									<dependencies>
+										<dependency>
+											<groupId>io.swagger.core.v3</groupId>
+											<artifactId>swagger-annotations-jakarta</artifactId>
+											<version>2.2.11</version>
+										</dependency>
+									</dependencies>
+								</project>
+								""",
+						spec -> spec.path("pom.xml")));
+	}
+
+	@Test
+	void springBoot2GetsSpringdoc1() {
+		rewriteRun(
+				java(API, spec -> spec.path("src/main/java/com/yourorg/NsApi.java")),
+				xml(
+						"""
+								<project>
+									<parent>
+										<groupId>org.springframework.boot</groupId>
+										<artifactId>spring-boot-starter-parent</artifactId>
+										<version>2.7.18</version>
+									</parent>
+									<artifactId>ns</artifactId>
+									<dependencies>
+										<dependency>
+											<groupId>io.swagger</groupId>
+											<artifactId>swagger-annotations</artifactId>
+											<version>1.6.11</version>
+										</dependency>
+										<dependency>
+											<groupId>io.springfox</groupId>
+											<artifactId>springfox-boot-starter</artifactId>
+											<version>3.0.0</version>
+										</dependency>
+									</dependencies>
+								</project>
+								""",
+						"""
+								<project>
+									<parent>
+										<groupId>org.springframework.boot</groupId>
+										<artifactId>spring-boot-starter-parent</artifactId>
+										<version>2.7.18</version>
+									</parent>
+									<artifactId>ns</artifactId>
+									<dependencies>
+										<dependency>
+											<groupId>io.swagger.core.v3</groupId>
+											<artifactId>swagger-annotations</artifactId>
+											<version>2.2.11</version>
+										</dependency>
+										<dependency>
+											<groupId>org.springdoc</groupId>
+											<artifactId>springdoc-openapi-ui</artifactId>
+											<version>1.7.0</version>
+										</dependency>
+									</dependencies>
+								</project>
+								""",
+						spec -> spec.path("pom.xml")));
+	}
+
+	@Test
+	void javaxImportsGetSpringdoc1WithoutABootVersion() {
+		rewriteRun(
+				spec -> spec.typeValidationOptions(TypeValidation.none()),
+				java(
+						"""
+								package com.yourorg;
+								import javax.validation.Valid;
+								import io.swagger.annotations.Api;
+
+								@Api
+								public interface NsApi {
+									void create(@Valid String body);
+								}
+								""",
+						spec -> spec.path("src/main/java/com/yourorg/NsApi.java")),
+				xml(
+						POM.formatted("ns"),
+						"""
+								<project>
+									<groupId>com.yourorg</groupId>
+									<artifactId>ns</artifactId>
+									<version>1.0.0</version>
+									<properties>
+										<swagger.version>2.2.11</swagger.version>
+									</properties>
+									<dependencies>
+										<dependency>
+											<groupId>io.swagger.core.v3</groupId>
+											<artifactId>swagger-annotations</artifactId>
+											<version>${swagger.version}</version>
+										</dependency>
+										<dependency>
+											<groupId>org.springdoc</groupId>
+											<artifactId>springdoc-openapi-ui</artifactId>
+											<version>1.7.0</version>
+										</dependency>
+									</dependencies>
+								</project>
+								""",
+						spec -> spec.path("pom.xml")));
+	}
+
+	@Test
+	void springBoot3PropertyKeepsTheStarter() {
+		rewriteRun(
+				spec -> spec.typeValidationOptions(TypeValidation.none()),
+				java(
+						"""
+								package com.yourorg;
+								import javax.annotation.Generated;
+								import io.swagger.annotations.Api;
+
+								@Generated("swagger-codegen")
+								@Api
+								public interface NsApi {
+								}
+								""",
+						spec -> spec.path("src/main/java/com/yourorg/NsApi.java")),
+				xml(
+						"""
+								<project>
+									<artifactId>ns</artifactId>
+									<properties>
+										<boot.version>3.1.5</boot.version>
+									</properties>
+									<dependencyManagement>
+										<dependencies>
+											<dependency>
+												<groupId>org.springframework.boot</groupId>
+												<artifactId>spring-boot-dependencies</artifactId>
+												<version>${boot.version}</version>
+												<type>pom</type>
+												<scope>import</scope>
+											</dependency>
+										</dependencies>
+									</dependencyManagement>
+									<dependencies>
+										<dependency>
+											<groupId>io.springfox</groupId>
+											<artifactId>springfox-boot-starter</artifactId>
+											<version>3.0.0</version>
+										</dependency>
+									</dependencies>
+								</project>
+								""",
+						"""
+								<project>
+									<artifactId>ns</artifactId>
+									<properties>
+										<boot.version>3.1.5</boot.version>
+									</properties>
+									<dependencyManagement>
+										<dependencies>
+											<dependency>
+												<groupId>org.springframework.boot</groupId>
+												<artifactId>spring-boot-dependencies</artifactId>
+												<version>${boot.version}</version>
+												<type>pom</type>
+												<scope>import</scope>
+											</dependency>
+										</dependencies>
+									</dependencyManagement>
+									<dependencies>
+										<dependency>
+											<groupId>org.springdoc</groupId>
+											<artifactId>springdoc-openapi-starter-webmvc-ui</artifactId>
+											<version>2.1.0</version>
+										</dependency>
+									</dependencies>
+								</project>
+								""",
+						spec -> spec.path("pom.xml")));
+	}
+
+	@Test
+	void springfoxProperties() {
+		rewriteRun(
+				java(
+						"""
+								package com.yourorg;
+								import io.swagger.annotations.Api;
+
+								@Api
+								public interface NsApi {
+								}
+								""",
+						spec -> spec.path("src/main/java/com/yourorg/NsApi.java")),
+				yaml(
+						"""
+								springfox:
+								  documentation:
+								    swagger-ui:
+								      enabled: false
+								server:
+								  port: 8080
+								""",
+						// Merged as a nested mapping, after the keys left in place.
+						"""
+								server:
+								  port: 8080
+								springdoc:
+								  swagger-ui:
+								    enabled: false
+								""",
+						spec -> spec.path("src/main/resources/application.yml")),
+				properties(
+						"""
+								springfox.documentation.swagger.v2.path=/api-docs
+								""",
+						"""
+								springdoc.api-docs.path=/api-docs
+								""",
+						spec -> spec.path("src/main/resources/application-dev.properties")));
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.SourceFile;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.java.search.FindImports;
+import org.openrewrite.java.search.UsesType;
+import org.openrewrite.java.tree.J;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the {@code UsesType}/{@code FindImports} preconditions of the
+ * composite with the index, on files that do and do not use Swagger 2.
+ */
+class TypeUsageIndexTest {
+	private static final Logger LOG = LoggerFactory.getLogger(TypeUsageIndexTest.class);
+	private static final int FILES = 100;
+	private static final int ROUNDS = 5;
+	private static final List<String> PATTERNS = List.of("io.swagger.annotations.*", "io.swagger.annotations.ApiModel", "io.swagger.annotations.*");
+
+	private final List<J.CompilationUnit> sources = MigrationRunner.defaultParser().build()
+			.parse(new InMemoryExecutionContext(), Stream.concat(
+					IntStream.range(0, FILES).mapToObj(i -> Corpus.api("NsDescriptors" + i + "Api", 5)),
+					IntStream.range(0, FILES).mapToObj(i -> Corpus.plain("VnfPackages" + i + "Api", 5)))
+					.toArray(String[]::new))
+			.map(J.CompilationUnit.class::cast)
+			.toList();
+
+	@Test
+	void sameAnswersAsUsesTypeAndFindImports() {
+		final ExecutionContext ctx = new InMemoryExecutionContext();
+		for (final J.CompilationUnit cu : sources) {
+			for (final String pattern : PATTERNS) {
+				final boolean expected = matches(new UsesType<>(pattern, false), cu, ctx) || matches(new FindImports(pattern, false).getVisitor(), cu, ctx);
+				assertThat(matches(TypeUsageIndex.precondition(pattern), cu, ctx)).as("%s in %s", pattern, cu.getSourcePath()).isEqualTo(expected);
+			}
+		}
+		assertThat(sources.stream().filter(x -> TypeUsageIndex.get(x, ctx).uses("io.swagger.annotations.*"))).hasSize(FILES);
+	}
+
+	@Test
+	void instancesSharingIdAndImportsAreIndexedApart() {
+		final ExecutionContext ctx = new InMemoryExecutionContext();
+		final J.CompilationUnit plain = sources.get(FILES);
+		final J.CompilationUnit changed = plain.withClasses(sources.get(0).getClasses());
+		assertThat(changed.getId()).isEqualTo(plain.getId());
+		assertThat(changed.getImports()).isEqualTo(plain.getImports());
+		assertThat(TypeUsageIndex.get(plain, ctx).uses("io.swagger.annotations.*")).isFalse();
+		assertThat(TypeUsageIndex.get(changed, ctx).uses("io.swagger.annotations.*")).isTrue();
+		assertThat(TypeUsageIndex.get(plain, ctx).uses("io.swagger.annotations.*")).isFalse();
+	}
+
+	@Test
+	void timings() {
+		final long walking = time(cu -> PATTERNS.stream().anyMatch(p -> {
+			final ExecutionContext ctx = new InMemoryExecutionContext();
+			return matches(new UsesType<>(p, false), cu, ctx) | matches(new FindImports(p, false).getVisitor(), cu, ctx);
+		}));
+		final ExecutionContext shared = new InMemoryExecutionContext();
+		final long indexed = time(cu -> PATTERNS.stream().anyMatch(p -> matches(TypeUsageIndex.precondition(p), cu, shared)));
+		LOG.info("{} files, {} preconditions: walking {} ms, indexed {} ms.", sources.size(), PATTERNS.size() * 2, walking / 1_000_000, indexed / 1_000_000);
+	}
+
+	private long time(final Predicate<J.CompilationUnit> precondition) {
+		final long start = System.nanoTime();
+		int matched = 0;
+		for (int i = 0; i < ROUNDS; i++) {
+			for (final J.CompilationUnit cu : sources) {
+				matched += precondition.test(cu) ? 1 : 0;
+			}
+		}
+		assertThat(matched).isEqualTo(FILES * ROUNDS);
+		return System.nanoTime() - start;
+	}
+
+	private static boolean matches(final TreeVisitor<?, ExecutionContext> precondition, final SourceFile cu, final ExecutionContext ctx) {
+		return precondition.visit(cu, ctx) != cu;
+	}
+}
@@ -0,0 +1,149 @@
+/**
+ *     Copyright (C) 2019-2023 Ubiqube.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.vignaudo.rewrite.swagger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.SourceFile;
+import org.openrewrite.java.JavaParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vignaudo.rewrite.swagger.MigrationRunner.ExecutionMode;
+import org.vignaudo.rewrite.swagger.MigrationRunner.RunSummary;
+import org.vignaudo.rewrite.swagger.WorkScheduler.Order;
+import org.vignaudo.rewrite.swagger.WorkScheduler.Report;
+import org.vignaudo.rewrite.swagger.WorkScheduler.Worker;
+
+/**
+ * Skewed corpus of many small interfaces followed by a few giant ones, parsed
+ * in submission order and largest first; the reports are only logged.
+ */
+class WorkSchedulerTest {
+	private static final Logger LOG = LoggerFactory.getLogger(WorkSchedulerTest.class);
+	private static final int WORKERS = 4;
+	private static final int SMALL_FILES = 120;
+	private static final int SMALL_METHODS = 10;
+	private static final int GIANT_FILES = 2;
+	private static final int GIANT_METHODS = 600;
+
+	private final List<String> corpus = skewed();
+	private final ThreadLocal<JavaParser> parsers = ThreadLocal.withInitial(() -> MigrationRunner.defaultParser().build());
+
+	@Test
+	void largestFirstReports() {
+		final ExecutorService executor = Executors.newFixedThreadPool(WORKERS);
+		try {
+			schedule(executor, Order.LARGEST_FIRST);
+			final Report submission = schedule(executor, Order.SUBMISSION);
+			final Report largestFirst = schedule(executor, Order.LARGEST_FIRST);
+			LOG.info("Submission order: {}.", submission);
+			LOG.info("Largest first: {}.", largestFirst);
+			assertThat(submission.workers()).hasSize(WORKERS);
+			assertThat(largestFirst.workers()).hasSize(WORKERS);
+			assertThat(largestFirst.workers().stream().mapToInt(Worker::tasks).sum()).isEqualTo(corpus.size());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void largestFirstDispatchOrder() {
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final List<Integer> started = new CopyOnWriteArrayList<>();
+			final List<Integer> items = List.of(3, 9, 1, 7, 5);
+			final WorkScheduler.Run<Integer> run = WorkScheduler.run(executor, 1, items, x -> x, Order.LARGEST_FIRST, x -> {
+				started.add(x);
+				return x * 2;
+			});
+			assertThat(started).containsExactly(9, 7, 5, 3, 1);
+			assertThat(run.results()).containsExactly(6, 18, 2, 14, 10);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void estimateCountsSwaggerAnnotations() {
+		final byte[] api = Corpus.api("NsDescriptors0Api", 1).getBytes(StandardCharsets.UTF_8);
+		assertThat(WorkScheduler.annotations(api)).isEqualTo(10);
+		assertThat(WorkScheduler.estimate(api)).isEqualTo(api.length + (10 * WorkScheduler.ANNOTATION_WEIGHT));
+		assertThat(WorkScheduler.annotations(Corpus.plain("VnfPackagesApi", 5).getBytes(StandardCharsets.UTF_8))).isZero();
+	}
+
+	@Test
+	void runnerKeepsSubmissionOrder(@TempDir final Path sizeAwareDir, @TempDir final Path sequentialDir) {
+		final List<Path> sizeAware = writeSkewed(sizeAwareDir);
+		final List<Path> sequential = writeSkewed(sequentialDir);
+		final RunSummary summary;
+		try (MigrationRunner runner = MigrationRunner.composite().executionMode(ExecutionMode.SIZE_AWARE).parallelism(WORKERS)) {
+			summary = runner.run(sizeAwareDir, sizeAware);
+		}
+		try (MigrationRunner runner = MigrationRunner.composite()) {
+			runner.run(sequentialDir, sequential);
+		}
+		assertThat(summary.changed()).isEqualTo(sizeAware.size());
+		assertThat(Corpus.snapshot(sizeAwareDir)).isEqualTo(Corpus.snapshot(sequentialDir));
+	}
+
+	private Report schedule(final ExecutorService executor, final Order order) {
+		final WorkScheduler.Run<SourceFile> run = WorkScheduler.run(executor, WORKERS, corpus,
+				x -> WorkScheduler.estimate(x.getBytes(StandardCharsets.UTF_8)), order, this::parse);
+		assertThat(run.results()).hasSize(corpus.size()).doesNotContainNull();
+		return run.report();
+	}
+
+	private SourceFile parse(final String source) {
+		final JavaParser parser = parsers.get();
+		try {
+			return parser.parse(new InMemoryExecutionContext(), source).findFirst().orElseThrow();
+		} finally {
+			parser.reset();
+		}
+	}
+
+	private static List<String> skewed() {
+		final List<String> ret = new ArrayList<>();
+		for (int i = 0; i < SMALL_FILES; i++) {
+			ret.add(Corpus.api("NsDescriptors" + i + "Api", SMALL_METHODS));
+		}
+		for (int i = 0; i < GIANT_FILES; i++) {
+			ret.add(Corpus.api("Giant" + i + "Api", GIANT_METHODS));
+		}
+		return ret;
+	}
+
+	private List<Path> writeSkewed(final Path baseDir) {
+		final List<Path> ret = new ArrayList<>();
+		for (int i = 0; i < SMALL_FILES; i += 10) {
+			ret.add(Corpus.write(baseDir, "NsDescriptors" + i + "Api", corpus.get(i)));
+		}
+		ret.add(Corpus.write(baseDir, "Giant0Api", corpus.get(SMALL_FILES)));
+		return ret;
+	}
+}